@@ -0,0 +1,126 @@
+package com.asmath;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.filecache.DistributedCache;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.InputFormat;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.OutputFormat;
+import org.apache.hadoop.mapreduce.lib.input.MultipleInputs;
+import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.LazyOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+import org.apache.hadoop.util.GenericOptionsParser;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+
+import com.asmath.mapreduce.*;
+import com.asmath.stld.StldItemRecord;
+import com.mcd.gdw.daas.util.HDFSUtil;
+
+/**
+ * Runs MenuItemParser, AsterExtractSTLDDriver and AsterExtractSTLDMenuItemDriver
+ * as one map only job: AsterExtractCombinedDriver &lt;menu input&gt; &lt;stld input&gt; &lt;output&gt;
+ *
+ * The menu files are parsed once for MenuItemPrice and shipped as the menu
+ * cache of the STLD mapper, which parses each TLD once for both STLDItem and
+ * STLDMenuItem. Each named output lands in its own directory under the output.
+ */
+@SuppressWarnings("rawtypes")
+public class AsterExtractCombinedDriver extends Configured implements Tool {
+
+	public static void main(String[] args) throws Exception {Configuration conf1 = new Configuration();
+
+		int retval = ToolRunner.run(conf1,new AsterExtractCombinedDriver(), args);
+
+		System.out.println(" return value : " + retval);
+		// InputMenuItem InputAsterExtractSTLDMapper Output
+
+	}
+
+	@Override
+	public int run(String[] argsAll) throws Exception {
+
+		try{
+			GenericOptionsParser gop = new GenericOptionsParser(argsAll);
+			String[] args = gop.getRemainingArgs();
+
+			Configuration conf = this.getConf();
+			conf.setBoolean(StldNamedOutputs.ENABLED, true);
+			Job job = new Job(conf,"Aster Extract Menu and STLD");
+			FileSystem fileSystem = FileSystem.get(conf);
+
+			job.setJarByClass(AsterExtractCombinedDriver.class);
+
+			job.setNumReduceTasks(0);
+
+			Path menuPath = new Path(args[0]);
+			Path stldPath = new Path(args[1]);
+
+			Class<? extends InputFormat> menuInputFormat = TextInputFormat.class;
+			Class<? extends InputFormat> stldInputFormat = TextInputFormat.class;
+
+			if ( XmlInputFormat.isEnabled(job.getConfiguration()) ) {
+				menuInputFormat = XmlInputFormat.MenuItem.class;
+				stldInputFormat = XmlInputFormat.Tld.class;
+			}
+
+			MultipleInputs.addInputPath(job, menuPath, menuInputFormat, MenuItemParser.MenuItemMapper.class);
+			MultipleInputs.addInputPath(job, stldPath, stldInputFormat, AsterExtractSTLDMenuItemMapper.class);
+
+			// everything goes to named outputs, so no empty part files for the default one
+			LazyOutputFormat.setOutputFormatClass(job, TextOutputFormat.class);
+			job.setOutputKeyClass(NullWritable.class);
+			job.setOutputValueClass(Text.class);
+
+			Class<? extends OutputFormat> itemOutputFormat = TextOutputFormat.class;
+			Class<?> itemValueClass = Text.class;
+
+			if ( StldItemRecord.isBinaryOutput(job.getConfiguration()) ) {
+				itemOutputFormat = SequenceFileOutputFormat.class;
+				itemValueClass = StldItemRecord.class;
+			} else if ( StldItemRecord.isAvroOutput(job.getConfiguration()) ) {
+				itemOutputFormat = StldAvroOutputFormat.class;
+				itemValueClass = StldItemRecord.class;
+			} else if ( StldItemRecord.isOrcOutput(job.getConfiguration()) ) {
+				itemOutputFormat = StldOrcOutputFormat.class;
+				itemValueClass = StldItemRecord.class;
+			}
+
+			MultipleOutputs.addNamedOutput(job, StldNamedOutputs.MENU_ITEM_PRICE, TextOutputFormat.class, NullWritable.class, Text.class);
+			MultipleOutputs.addNamedOutput(job, StldNamedOutputs.STLD_ITEM, itemOutputFormat, Text.class, itemValueClass);
+			MultipleOutputs.addNamedOutput(job, StldNamedOutputs.STLD_MENU_ITEM, itemOutputFormat, NullWritable.class, itemValueClass);
+
+			for ( FileStatus menuFile : fileSystem.listStatus(menuPath) ) {
+				if ( !menuFile.isDir() ) {
+					DistributedCache.addCacheFile(menuFile.getPath().toUri(), job.getConfiguration());
+				}
+			}
+
+			ReferenceData.configure(job);
+
+			HDFSUtil.removeHdfsSubDirIfExists(fileSystem, new Path(args[2]), true);
+			FileOutputFormat.setOutputPath(job, new Path(args[2]));
+
+			job.waitForCompletion(true);
+
+
+		}catch(Exception ex){
+			ex.printStackTrace();
+		}
+
+
+
+		return 0;
+	}
+
+
+}
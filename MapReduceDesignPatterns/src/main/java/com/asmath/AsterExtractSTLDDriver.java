@@ -13,12 +13,14 @@ import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 import org.apache.hadoop.mapreduce.lib.output.LazyOutputFormat;
 import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
 import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
 import org.apache.hadoop.util.GenericOptionsParser;
 import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
 
 import com.asmath.mapreduce.*;
+import com.asmath.stld.StldItemRecord;
 import com.mcd.gdw.daas.util.HDFSUtil;
 
 public class AsterExtractSTLDDriver extends Configured implements Tool {
@@ -49,11 +51,52 @@ public class AsterExtractSTLDDriver extends Configured implements Tool {
 			
 			job.setMapperClass(AsterExtractSTLDMapper.class);
 			
+			if ( StldMenuFilter.checkThreads(job.getConfiguration()) != null ) {
+				System.err.println("Error in AsterExtractSTLDDriver.run: " + StldMenuFilter.checkThreads(job.getConfiguration()));
+				return 8;
+			}
+			
+			if ( MultithreadedStldMapper.getThreads(job.getConfiguration()) > 1 ) {
+				MultithreadedStldMapper.setMapperClass(job, AsterExtractSTLDMapper.class);
+				job.setMapperClass(MultithreadedStldMapper.class);
+			}
+			
 			job.setOutputKeyClass(NullWritable.class);
 			job.setOutputValueClass(Text.class);
 			
+			if ( StldItemRecord.isBinaryOutput(job.getConfiguration()) ) {
+				job.setOutputKeyClass(Text.class);
+				job.setOutputValueClass(StldItemRecord.class);
+				job.setOutputFormatClass(SequenceFileOutputFormat.class);
+			} else if ( StldItemRecord.isAvroOutput(job.getConfiguration()) ) {
+				job.setOutputKeyClass(Text.class);
+				job.setOutputValueClass(StldItemRecord.class);
+				job.setOutputFormatClass(StldAvroOutputFormat.class);
+			} else if ( StldItemRecord.isOrcOutput(job.getConfiguration()) ) {
+				job.setOutputKeyClass(Text.class);
+				job.setOutputValueClass(StldItemRecord.class);
+				job.setOutputFormatClass(StldOrcOutputFormat.class);
+			}
+			
+			if ( StldMenuFilter.isEnabled(job.getConfiguration()) ) {
+				StldMenuFilter.configure(job);
+			}
+			
+			ReferenceData.configure(job);
+			
 			job.setNumReduceTasks(0);
 			
+			if ( XmlInputFormat.isEnabled(job.getConfiguration()) ) {
+				job.setInputFormatClass(XmlInputFormat.class);
+				XmlInputFormat.setRecordTag(job, XmlInputFormat.TLD_TAG);
+			} else if ( StldStreamInputFormat.isEnabled(job.getConfiguration()) ) {
+				if ( StldStreamInputFormat.checkThreads(job.getConfiguration()) != null ) {
+					System.err.println("Error in AsterExtractSTLDDriver.run: " + StldStreamInputFormat.checkThreads(job.getConfiguration()));
+					return 8;
+				}
+				job.setInputFormatClass(StldStreamInputFormat.class);
+			}
+			
 			FileInputFormat.addInputPath(job, new Path(args[0]));
 			HDFSUtil.removeHdfsSubDirIfExists(fileSystem, new Path(args[1]), true);
 			FileOutputFormat.setOutputPath(job, new Path(args[1]));
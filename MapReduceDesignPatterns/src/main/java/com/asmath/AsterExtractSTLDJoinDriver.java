@@ -0,0 +1,179 @@
+package com.asmath;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.filecache.DistributedCache;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.InputFormat;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.MultipleInputs;
+import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+import org.apache.hadoop.util.GenericOptionsParser;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+
+import com.asmath.mapreduce.*;
+import com.asmath.stld.StldItemRecord;
+import com.mcd.gdw.daas.util.HDFSUtil;
+
+/**
+ * Writes the same extract as AsterExtractSTLDMenuItemDriver, choosing how the
+ * items are joined with the menu: AsterExtractSTLDJoinDriver &lt;stld input&gt; &lt;output&gt; &lt;menu input&gt;
+ *
+ * Map side ships the menu to every mapper as cache files, reduce side sends
+ * menu records and items through the shuffle keyed on StldJoinKey. With
+ * asmath.stld.join=auto (the default) the map side is used while the menu
+ * input is no larger than asmath.stld.join.mapside.max.bytes. A reduce side
+ * join given a menu Bloom filter (see StldMenuFilter) drops or routes the
+ * items without a menu record before the shuffle.
+ */
+@SuppressWarnings("rawtypes")
+public class AsterExtractSTLDJoinDriver extends Configured implements Tool {
+
+	public static final String JOIN = "asmath.stld.join";
+	public static final String AUTO = "auto";
+	public static final String MAP_SIDE = "map";
+	public static final String REDUCE_SIDE = "reduce";
+
+	public static final String MAP_SIDE_MAX_BYTES = "asmath.stld.join.mapside.max.bytes";
+	public static final long DEFAULT_MAP_SIDE_MAX_BYTES = 256L * 1024 * 1024;
+
+	public static void main(String[] args) throws Exception {Configuration conf1 = new Configuration();
+
+		int retval = ToolRunner.run(conf1,new AsterExtractSTLDJoinDriver(), args);
+
+		System.out.println(" return value : " + retval);
+		// InputAsterExtractSTLDMapper Output InputAsterExtractMenuItem
+
+	}
+
+	public static boolean isMapSide(Configuration conf, long menuBytes) {
+
+		String join = conf.get(JOIN, AUTO);
+		if ( join.equalsIgnoreCase(MAP_SIDE) ) {
+			return true;
+		}
+		if ( join.equalsIgnoreCase(REDUCE_SIDE) ) {
+			return false;
+		}
+		return menuBytes <= conf.getLong(MAP_SIDE_MAX_BYTES, DEFAULT_MAP_SIDE_MAX_BYTES);
+	}
+
+	@Override
+	public int run(String[] argsAll) throws Exception {
+
+		try{
+			GenericOptionsParser gop = new GenericOptionsParser(argsAll);
+			String[] args = gop.getRemainingArgs();
+
+			Configuration conf = this.getConf();
+			Job job = new Job(conf,"Aster Extract Join");
+			FileSystem fileSystem = FileSystem.get(conf);
+
+			job.setJarByClass(AsterExtractSTLDJoinDriver.class);
+
+			Path stldPath = new Path(args[0]);
+			Path menuPath = new Path(args[2]);
+
+			long menuBytes = fileSystem.getContentSummary(menuPath).getLength();
+			boolean mapSide = isMapSide(job.getConfiguration(), menuBytes);
+			System.out.println("menu input " + menuBytes + " bytes, " + (mapSide ? "map side" : "reduce side") + " join");
+
+			if ( mapSide ) {
+				setupMapSide(job, fileSystem, stldPath, menuPath);
+			} else {
+				setupReduceSide(job, stldPath, menuPath);
+			}
+
+			job.setOutputKeyClass(NullWritable.class);
+			job.setOutputValueClass(Text.class);
+
+			if ( StldItemRecord.isBinaryOutput(job.getConfiguration()) ) {
+				job.setOutputValueClass(StldItemRecord.class);
+				job.setOutputFormatClass(SequenceFileOutputFormat.class);
+			} else if ( StldItemRecord.isAvroOutput(job.getConfiguration()) ) {
+				job.setOutputValueClass(StldItemRecord.class);
+				job.setOutputFormatClass(StldAvroOutputFormat.class);
+			} else if ( StldItemRecord.isOrcOutput(job.getConfiguration()) ) {
+				job.setOutputValueClass(StldItemRecord.class);
+				job.setOutputFormatClass(StldOrcOutputFormat.class);
+			}
+
+			// only the reduce side shuffles the items the menu Bloom filter can rule out
+			if ( !mapSide && StldMenuFilter.isEnabled(job.getConfiguration()) ) {
+				StldMenuFilter.configure(job);
+			}
+
+			ReferenceData.configure(job);
+
+			HDFSUtil.removeHdfsSubDirIfExists(fileSystem, new Path(args[1]), true);
+			FileOutputFormat.setOutputPath(job, new Path(args[1]));
+
+			job.waitForCompletion(true);
+
+
+		}catch(Exception ex){
+			ex.printStackTrace();
+		}
+
+
+
+		return 0;
+	}
+
+	private void setupMapSide(Job job, FileSystem fileSystem, Path stldPath, Path menuPath) throws Exception {
+
+		job.setMapperClass(AsterExtractSTLDMenuItemMapper.class);
+
+		if ( MultithreadedStldMapper.getThreads(job.getConfiguration()) > 1 ) {
+			MultithreadedStldMapper.setMapperClass(job, AsterExtractSTLDMenuItemMapper.class);
+			job.setMapperClass(MultithreadedStldMapper.class);
+		}
+
+		job.setNumReduceTasks(0);
+
+		if ( XmlInputFormat.isEnabled(job.getConfiguration()) ) {
+			job.setInputFormatClass(XmlInputFormat.Tld.class);
+		}
+		FileInputFormat.addInputPath(job, stldPath);
+
+		for ( FileStatus menuFile : fileSystem.listStatus(menuPath) ) {
+			if ( !menuFile.isDir() ) {
+				DistributedCache.addCacheFile(menuFile.getPath().toUri(), job.getConfiguration());
+			}
+		}
+	}
+
+	private void setupReduceSide(Job job, Path stldPath, Path menuPath) {
+
+		Class<? extends InputFormat> menuInputFormat = TextInputFormat.class;
+		Class<? extends InputFormat> stldInputFormat = TextInputFormat.class;
+
+		if ( XmlInputFormat.isEnabled(job.getConfiguration()) ) {
+			menuInputFormat = XmlInputFormat.MenuItem.class;
+			stldInputFormat = XmlInputFormat.Tld.class;
+		}
+
+		MultipleInputs.addInputPath(job, menuPath, menuInputFormat, StldJoinMapper.Menu.class);
+		MultipleInputs.addInputPath(job, stldPath, stldInputFormat, StldJoinMapper.Stld.class);
+
+		job.setMapOutputKeyClass(StldJoinKey.class);
+		job.setMapOutputValueClass(StldJoinValue.class);
+
+		// menu record first within each storeId|itemCode, all of it in one reduce call
+		job.setPartitionerClass(StldJoinKey.KeyPartitioner.class);
+		job.setSortComparatorClass(StldJoinKey.Comparator.class);
+		job.setGroupingComparatorClass(StldJoinKey.GroupingComparator.class);
+
+		job.setReducerClass(StldJoinReducer.class);
+	}
+
+
+}
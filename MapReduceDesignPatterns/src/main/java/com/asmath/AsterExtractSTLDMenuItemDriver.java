@@ -13,12 +13,14 @@ import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 import org.apache.hadoop.mapreduce.lib.output.LazyOutputFormat;
 import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
 import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
 import org.apache.hadoop.util.GenericOptionsParser;
 import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
 
 import com.asmath.mapreduce.*;
+import com.asmath.stld.StldItemRecord;
 import com.mcd.gdw.daas.util.HDFSUtil;
 
 public class AsterExtractSTLDMenuItemDriver extends Configured implements Tool {
@@ -49,11 +51,35 @@ public class AsterExtractSTLDMenuItemDriver extends Configured implements Tool {
 			
 			job.setMapperClass(AsterExtractSTLDMenuItemMapper.class);
 			
+			if ( MultithreadedStldMapper.getThreads(job.getConfiguration()) > 1 ) {
+				MultithreadedStldMapper.setMapperClass(job, AsterExtractSTLDMenuItemMapper.class);
+				job.setMapperClass(MultithreadedStldMapper.class);
+			}
+			
 			job.setOutputKeyClass(NullWritable.class);
 			job.setOutputValueClass(Text.class);
 			
+			if ( StldItemRecord.isBinaryOutput(job.getConfiguration()) ) {
+				job.setOutputKeyClass(NullWritable.class);
+				job.setOutputValueClass(StldItemRecord.class);
+				job.setOutputFormatClass(SequenceFileOutputFormat.class);
+			} else if ( StldItemRecord.isAvroOutput(job.getConfiguration()) ) {
+				job.setOutputKeyClass(NullWritable.class);
+				job.setOutputValueClass(StldItemRecord.class);
+				job.setOutputFormatClass(StldAvroOutputFormat.class);
+			} else if ( StldItemRecord.isOrcOutput(job.getConfiguration()) ) {
+				job.setOutputKeyClass(NullWritable.class);
+				job.setOutputValueClass(StldItemRecord.class);
+				job.setOutputFormatClass(StldOrcOutputFormat.class);
+			}
+			
 			job.setNumReduceTasks(0);
 			
+			if ( XmlInputFormat.isEnabled(job.getConfiguration()) ) {
+				job.setInputFormatClass(XmlInputFormat.class);
+				XmlInputFormat.setRecordTag(job, XmlInputFormat.TLD_TAG);
+			}
+			
 			FileInputFormat.addInputPath(job, new Path(args[0]));
 			HDFSUtil.removeHdfsSubDirIfExists(fileSystem, new Path(args[1]), true);
 			FileOutputFormat.setOutputPath(job, new Path(args[1]));
@@ -61,6 +87,8 @@ public class AsterExtractSTLDMenuItemDriver extends Configured implements Tool {
 			String cacheMenuItemFile = args[2];
 			DistributedCache.addCacheFile(new Path(cacheMenuItemFile).toUri(),job.getConfiguration());
 			
+			ReferenceData.configure(job);
+			
 			job.waitForCompletion(true);
 		
 		
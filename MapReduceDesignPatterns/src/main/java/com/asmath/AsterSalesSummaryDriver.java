@@ -0,0 +1,80 @@
+package com.asmath;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.util.GenericOptionsParser;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+
+import com.asmath.mapreduce.*;
+import com.asmath.stld.StldSalesSummary;
+import com.mcd.gdw.daas.util.HDFSUtil;
+
+/**
+ * Store/day sales summary straight from the STLD: AsterSalesSummaryDriver &lt;stld input&gt; &lt;output&gt;
+ *
+ * One row per storeId, businessDate, POD and saleType with the transaction
+ * count and net amount, summed in the mappers, the combiner and the reducer.
+ */
+public class AsterSalesSummaryDriver extends Configured implements Tool {
+
+	public static void main(String[] args) throws Exception {Configuration conf1 = new Configuration();
+
+		int retval = ToolRunner.run(conf1,new AsterSalesSummaryDriver(), args);
+
+		System.out.println(" return value : " + retval);
+		// InputAsterExtractSTLDMapper Output
+
+	}
+
+	@Override
+	public int run(String[] argsAll) throws Exception {
+
+		try{
+			GenericOptionsParser gop = new GenericOptionsParser(argsAll);
+			String[] args = gop.getRemainingArgs();
+
+			Configuration conf = this.getConf();
+			Job job = new Job(conf,"Aster Sales Summary");
+			FileSystem fileSystem = FileSystem.get(conf);
+
+			job.setJarByClass(AsterSalesSummaryDriver.class);
+
+			job.setMapperClass(StldSalesSummaryMapper.class);
+			job.setCombinerClass(StldSalesSummaryReducer.Combiner.class);
+			job.setReducerClass(StldSalesSummaryReducer.class);
+
+			job.setMapOutputKeyClass(Text.class);
+			job.setMapOutputValueClass(StldSalesSummary.class);
+			job.setOutputKeyClass(NullWritable.class);
+			job.setOutputValueClass(Text.class);
+
+			if ( XmlInputFormat.isEnabled(job.getConfiguration()) ) {
+				job.setInputFormatClass(XmlInputFormat.Tld.class);
+			}
+
+			FileInputFormat.addInputPath(job, new Path(args[0]));
+			HDFSUtil.removeHdfsSubDirIfExists(fileSystem, new Path(args[1]), true);
+			FileOutputFormat.setOutputPath(job, new Path(args[1]));
+
+			job.waitForCompletion(true);
+
+
+		}catch(Exception ex){
+			ex.printStackTrace();
+		}
+
+
+
+		return 0;
+	}
+
+
+}
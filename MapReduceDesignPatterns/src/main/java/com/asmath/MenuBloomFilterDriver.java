@@ -0,0 +1,129 @@
+package com.asmath;
+
+import java.util.Arrays;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+import org.apache.hadoop.util.GenericOptionsParser;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+import org.apache.hadoop.util.bloom.BloomFilter;
+import org.apache.hadoop.util.bloom.Key;
+
+import com.asmath.mapreduce.AsterMenuItemMapper;
+import com.asmath.mapreduce.StldMenuFilter;
+import com.asmath.mapreduce.XmlInputFormat;
+import com.mcd.gdw.daas.util.HDFSUtil;
+
+/**
+ * Builds the Bloom filter StldMenuFilter reads: runs AsterMenuItemMapper over
+ * the menu input, then adds every storeId|productId key it wrote to a filter
+ * sized for that many keys at asmath.stld.bloom.fp.rate.
+ *
+ * <pre>
+ * hadoop jar ... com.asmath.MenuBloomFilterDriver &lt;menu input&gt; &lt;filter file&gt;
+ * </pre>
+ */
+public class MenuBloomFilterDriver extends Configured implements Tool {
+
+	public static void main(String[] args) throws Exception {
+
+		int retval = ToolRunner.run(new Configuration(), new MenuBloomFilterDriver(), args);
+
+		System.out.println(" return value : " + retval);
+	}
+
+	@Override
+	public int run(String[] argsAll) throws Exception {
+
+		try {
+			GenericOptionsParser gop = new GenericOptionsParser(argsAll);
+			String[] args = gop.getRemainingArgs();
+
+			Configuration conf = this.getConf();
+			FileSystem fileSystem = FileSystem.get(conf);
+			Path filterPath = new Path(args[1]);
+			Path keysPath = new Path(args[1] + "_keys");
+
+			Job job = new Job(conf, "Menu Bloom Filter");
+			job.setJarByClass(MenuBloomFilterDriver.class);
+			job.setMapperClass(AsterMenuItemMapper.class);
+			job.setNumReduceTasks(0);
+			job.setOutputKeyClass(Text.class);
+			job.setOutputValueClass(Text.class);
+			job.setOutputFormatClass(SequenceFileOutputFormat.class);
+
+			if (XmlInputFormat.isEnabled(job.getConfiguration())) {
+				job.setInputFormatClass(XmlInputFormat.MenuItem.class);
+			}
+
+			FileInputFormat.addInputPath(job, new Path(args[0]));
+			HDFSUtil.removeHdfsSubDirIfExists(fileSystem, keysPath, true);
+			FileOutputFormat.setOutputPath(job, keysPath);
+
+			if (!job.waitForCompletion(true)) {
+				return 8;
+			}
+
+			long keys = addKeys(conf, fileSystem, keysPath, null);
+			BloomFilter filter = StldMenuFilter.newFilter(conf, keys);
+			addKeys(conf, fileSystem, keysPath, filter);
+
+			FSDataOutputStream out = fileSystem.create(filterPath, true);
+			try {
+				filter.write(out);
+			} finally {
+				out.close();
+			}
+			HDFSUtil.removeHdfsSubDirIfExists(fileSystem, keysPath, true);
+
+			System.out.println("menu bloom filter " + filterPath + ": " + keys + " keys, " + filter.getVectorSize()
+					+ " bits, fp rate " + conf.getFloat(StldMenuFilter.FP_RATE, StldMenuFilter.DEFAULT_FP_RATE));
+
+		} catch (Exception ex) {
+			System.err.println("Error in MenuBloomFilterDriver.run:");
+			ex.printStackTrace(System.err);
+			return 8;
+		}
+
+		return 0;
+	}
+
+	// counts the keys, and adds them to the filter when there is one
+	private long addKeys(Configuration conf, FileSystem fileSystem, Path keysPath, BloomFilter filter)
+			throws Exception {
+
+		long keys = 0;
+		Text key = new Text();
+
+		for (FileStatus keysFile : fileSystem.listStatus(keysPath)) {
+			if (keysFile.isDir() || !keysFile.getPath().getName().startsWith("part-")) {
+				continue;
+			}
+
+			SequenceFile.Reader reader = new SequenceFile.Reader(fileSystem, keysFile.getPath(), conf);
+			try {
+				while (reader.next(key)) {
+					if (filter != null) {
+						filter.add(new Key(Arrays.copyOf(key.getBytes(), key.getLength())));
+					}
+					keys++;
+				}
+			} finally {
+				reader.close();
+			}
+		}
+		return keys;
+	}
+
+}
@@ -1,10 +1,10 @@
 package com.asmath;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.StringReader;
-import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.net.URI;
 import java.text.SimpleDateFormat;
@@ -45,11 +45,18 @@ import org.w3c.dom.NodeList;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
+import com.asmath.mapreduce.StldNamedOutputs;
+import com.asmath.mapreduce.XmlInputFormat;
+import com.asmath.menu.MenuProduct;
+import com.asmath.menu.MenuProductHandler;
+import com.asmath.menu.MenuProductParser;
+import com.asmath.util.ByteSlice;
+
 @SuppressWarnings("deprecation")
 public class MenuItemParser extends Configured implements Tool {
 
 	public static class MenuItemMapper extends
-			Mapper<LongWritable, Text, NullWritable, Text> {
+			Mapper<LongWritable, Text, NullWritable, Text> implements MenuProductHandler {
 		String storeId = "";
 		String productId = "";
 		String takePrice = "";
@@ -57,27 +64,43 @@ public class MenuItemParser extends Configured implements Tool {
 		String longName = "";
 		//private NullWritable mapKeyPmenu = new NullWritable();
 		private Text mapValuePmenu = new Text();
+		private MultipleOutputs<NullWritable, Text> namedOutputs = null;
+		private DocumentBuilder builder = null;
+		// with asmath.menu.parser.engine=stax, products are written as they are read
+		private MenuProductParser menuParser = null;
+		private Context taskContext = null;
 
 		public void setup(Context context) throws IOException,
 				InterruptedException {
+			if (StldNamedOutputs.isEnabled(context.getConfiguration())) {
+				namedOutputs = new MultipleOutputs<NullWritable, Text>(context);
+			}
+			if (MenuProductParser.isStreaming(context.getConfiguration().get(MenuProductParser.ENGINE))) {
+				menuParser = new MenuProductParser();
+			}
+			taskContext = context;
 		}
 
 		@Override
 		public void map(LongWritable key, Text value, Context context)
 				throws IOException, InterruptedException {
 
-			String menuXML = value.toString().substring(
-					value.toString().indexOf("<"));
+			// parse the UTF-8 bytes in place, starting at the first '<'
+			int xmlStart = ByteSlice.indexOf(value.getBytes(), 0, value.getLength(), (byte) '<');
 
-			DocumentBuilderFactory factory = DocumentBuilderFactory
-					.newInstance();
-			DocumentBuilder builder;
 			try {
-				builder = factory.newDocumentBuilder();
+				if (menuParser != null) {
+					menuParser.parse(value.getBytes(), xmlStart, value.getLength() - xmlStart, this);
+					return;
+				}
+				// one builder for the task, parse resets it
+				if (builder == null) {
+					builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+				}
 
 				Document doc;
 
-				doc = builder.parse(new InputSource(new StringReader(menuXML)));
+				doc = builder.parse(new ByteArrayInputStream(value.getBytes(), xmlStart, value.getLength() - xmlStart));
 
 				doc.getDocumentElement().normalize();
 
@@ -106,13 +129,7 @@ public class MenuItemParser extends Configured implements Tool {
 
 						//mapKeyPmenu.clear();
 						//mapKeyPmenu.set(NullWritable.get());
-						mapValuePmenu.clear();
-						mapValuePmenu.set((new StringBuffer(storeId)
-								.append("|").append(productId).append("|")
-								.append(takePrice).append("|")
-								.append(eatInPrice).append("|")
-								.append(longName)).toString());
-						context.write(NullWritable.get(),mapValuePmenu);
+						writeProduct(context, storeId, productId, takePrice, eatInPrice, longName);
 
 					}
 
@@ -123,9 +140,34 @@ public class MenuItemParser extends Configured implements Tool {
 			}
 		}
 		
+		@Override
+		public void product(MenuProduct product) throws IOException, InterruptedException {
+
+			writeProduct(taskContext, product.storeId, product.productId, product.takeoutPrice, product.eatinPrice,
+					product.longName);
+		}
+
+		private void writeProduct(Context context, String storeId, String productId, String takePrice,
+				String eatInPrice, String longName) throws IOException, InterruptedException {
+
+			mapValuePmenu.clear();
+			mapValuePmenu.set((new StringBuffer(storeId)
+					.append("|").append(productId).append("|")
+					.append(takePrice).append("|")
+					.append(eatInPrice).append("|")
+					.append(longName)).toString());
+			if (namedOutputs != null) {
+				StldNamedOutputs.write(namedOutputs, StldNamedOutputs.MENU_ITEM_PRICE, NullWritable.get(), mapValuePmenu);
+			} else {
+				context.write(NullWritable.get(),mapValuePmenu);
+			}
+		}
+
 		public void cleanup(Context context) throws IOException,
 		InterruptedException {
-	
+			if (namedOutputs != null) {
+				namedOutputs.close();
+			}
 }
 
 	}
@@ -152,7 +194,12 @@ public class MenuItemParser extends Configured implements Tool {
 		//job.setReducerClass(STLDSaleMetricReducer.class);
 	//job.setNumReduceTasks(0);
 		System.out.println("inside");
-		job.setInputFormatClass(TextInputFormat.class);
+		if (XmlInputFormat.isEnabled(job.getConfiguration())) {
+			job.setInputFormatClass(XmlInputFormat.class);
+			XmlInputFormat.setRecordTag(job, XmlInputFormat.MENU_ITEM_TAG);
+		} else {
+			job.setInputFormatClass(TextInputFormat.class);
+		}
 		job.setOutputFormatClass(TextOutputFormat.class);
 		Path outPath = new Path(args[1]);
 		outPath.getFileSystem(conf).delete(outPath, true);
@@ -0,0 +1,134 @@
+package com.asmath;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.util.GenericOptionsParser;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+
+import com.asmath.menu.MenuSnapshot;
+import com.asmath.menu.MenuSnapshotWriter;
+
+/**
+ * Parses the POS_MenuItem XML files once and writes them as one
+ * {@link MenuSnapshot}. Ship the snapshot as the menu cache file of
+ * AsterExtractSTLDMenuItemDriver instead of the XML and the mappers map it
+ * rather than parsing the menu in every task.
+ *
+ * <pre>
+ * hadoop jar ... com.asmath.MenuSnapshotCompiler &lt;menu input&gt; &lt;snapshot file&gt;
+ * </pre>
+ */
+public class MenuSnapshotCompiler extends Configured implements Tool {
+
+	private DocumentBuilder builder;
+	private final MenuSnapshotWriter writer = new MenuSnapshotWriter();
+
+	public static void main(String[] args) throws Exception {
+
+		int retval = ToolRunner.run(new Configuration(), new MenuSnapshotCompiler(), args);
+
+		System.out.println(" return value : " + retval);
+	}
+
+	@Override
+	public int run(String[] argsAll) throws Exception {
+
+		try {
+			GenericOptionsParser gop = new GenericOptionsParser(argsAll);
+			String[] args = gop.getRemainingArgs();
+
+			Configuration conf = this.getConf();
+			FileSystem fileSystem = FileSystem.get(conf);
+			builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+
+			for (FileStatus menuFile : fileSystem.listStatus(new Path(args[0]))) {
+				if (!menuFile.isDir()) {
+					System.out.println(menuFile.getPath().toString());
+					addMenuFile(fileSystem, menuFile.getPath());
+				}
+			}
+
+			FSDataOutputStream out = fileSystem.create(new Path(args[1]), true);
+			try {
+				writer.write(out);
+			} finally {
+				out.close();
+			}
+			System.out.println("menu snapshot " + args[1] + ": " + writer.size() + " products");
+
+		} catch (Exception ex) {
+			System.err.println("Error in MenuSnapshotCompiler.run:");
+			ex.printStackTrace(System.err);
+			return 8;
+		}
+
+		return 0;
+	}
+
+	// line by line as AsterExtractSTLDMenuItemMapper.setup reads the cache file
+	private void addMenuFile(FileSystem fileSystem, Path path) throws Exception {
+
+		BufferedReader br = new BufferedReader(new InputStreamReader(fileSystem.open(path), "UTF-8"));
+		try {
+			String line;
+			while ((line = br.readLine()) != null) {
+				if (!line.isEmpty()) {
+					addMenuItems(line.substring(line.indexOf("<")));
+				}
+			}
+		} finally {
+			br.close();
+		}
+	}
+
+	private void addMenuItems(String menuXML) throws Exception {
+
+		Document doc = builder.parse(new InputSource(new StringReader(menuXML)));
+		doc.getDocumentElement().normalize();
+
+		NodeList menuNodeList = doc.getElementsByTagName("MenuItem");
+		for (int i = 0; i < menuNodeList.getLength(); i++) {
+			Element menuNodeElm = (Element) menuNodeList.item(i);
+			String storeId = menuNodeElm.getAttribute("storeId");
+
+			NodeList productNodeList = menuNodeElm.getElementsByTagName("ProductInfo");
+			for (int product = 0; product < productNodeList.getLength(); product++) {
+				Element productNodeElm = (Element) productNodeList.item(product);
+
+				String productId = productNodeElm.getAttribute("id");
+				String takePrice = productNodeElm.getAttribute("takeoutPrice");
+				String eatInPrice = productNodeElm.getAttribute("eatinPrice");
+
+				writer.add(storeId, productId, productName(storeId, productId, takePrice, eatInPrice,
+						productNodeElm.getAttribute("longName")), productNodeElm.getAttribute("familyGroup"),
+						takePrice, eatInPrice);
+			}
+		}
+	}
+
+	// the name the extracts report: field 4 of the comma separated menu row, so a comma cuts the longName short
+	private static String productName(String storeId, String productId, String takePrice, String eatInPrice,
+			String longName) {
+
+		String[] fields = new StringBuffer(storeId).append(',').append(productId).append(',').append(takePrice)
+				.append(',').append(eatInPrice).append(',').append(longName).toString().split(",");
+		return fields.length > 4 ? fields[4] : "";
+	}
+
+}
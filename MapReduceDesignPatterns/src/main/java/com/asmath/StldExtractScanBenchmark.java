@@ -0,0 +1,216 @@
+package com.asmath;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.ql.io.orc.OrcFile;
+import org.apache.hadoop.hive.ql.io.orc.Reader;
+import org.apache.hadoop.hive.ql.io.orc.RecordReader;
+import org.apache.hadoop.hive.ql.io.sarg.SearchArgument;
+import org.apache.hadoop.hive.serde2.objectinspector.StructField;
+import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.util.GenericOptionsParser;
+import org.apache.hadoop.util.LineReader;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+
+import com.asmath.mapreduce.StldOrcOutputFormat;
+import com.asmath.stld.StldItemRecord;
+import com.asmath.util.ByteSlice;
+import com.asmath.util.Money;
+
+/**
+ * Compares the CSV and ORC STLD extracts of the same input on the query
+ * <code>select count(*), sum(item_total_price) where store_id = ?</code>.
+ * The CSV side reads every byte, the ORC side reads the two columns and skips
+ * row groups whose store_id statistics exclude the store. Prints bytes read
+ * and elapsed time for both.
+ *
+ * <pre>
+ * hadoop jar ... com.asmath.StldExtractScanBenchmark &lt;csv output dir&gt; &lt;orc output dir&gt; &lt;storeId&gt;
+ * </pre>
+ */
+public class StldExtractScanBenchmark extends Configured implements Tool {
+
+	private static final int STORE_ID_FIELD = 2;
+	private static final int ITEM_TOTAL_PRICE_FIELD = 13;
+
+	private long rows;
+	// at StldItemRecord.TYPED_AMOUNT_SCALE, the scale of the ORC amounts
+	private long totalAmount;
+
+	public static void main(String[] args) throws Exception {
+
+		int retval = ToolRunner.run(new Configuration(), new StldExtractScanBenchmark(), args);
+
+		System.out.println(" return value : " + retval);
+	}
+
+	@Override
+	public int run(String[] argsAll) throws Exception {
+
+		try {
+			GenericOptionsParser gop = new GenericOptionsParser(argsAll);
+			String[] args = gop.getRemainingArgs();
+
+			Configuration conf = this.getConf();
+			int storeId = Integer.parseInt(args[2]);
+
+			long bytesRead = bytesRead();
+			long start = System.currentTimeMillis();
+			scanCsv(conf, new Path(args[0]), storeId);
+			report("csv", bytesRead, start);
+
+			bytesRead = bytesRead();
+			start = System.currentTimeMillis();
+			scanOrc(conf, new Path(args[1]), storeId);
+			report("orc", bytesRead, start);
+
+		} catch (Exception ex) {
+			System.err.println("Error in StldExtractScanBenchmark.run:");
+			ex.printStackTrace(System.err);
+			return 8;
+		}
+
+		return 0;
+	}
+
+	private void scanCsv(Configuration conf, Path dir, int storeId) throws Exception {
+
+		rows = 0;
+		totalAmount = 0;
+
+		Text line = new Text();
+		int[] fieldStart = new int[ITEM_TOTAL_PRICE_FIELD + 2];
+
+		for (Path file : dataFiles(conf, dir)) {
+			FSDataInputStream in = file.getFileSystem(conf).open(file);
+			LineReader reader = new LineReader(in, conf);
+
+			try {
+				while (reader.readLine(line) > 0) {
+					byte[] bytes = line.getBytes();
+					int length = line.getLength();
+
+					// AsterExtractSTLDDriver writes storeId|itemCode<TAB> before the row
+					int rowStart = ByteSlice.indexOf(bytes, 0, length, (byte) '\t') + 1;
+					int fields = 0;
+
+					fieldStart[fields++] = rowStart;
+					for (int idx = rowStart; idx < length && fields < fieldStart.length; idx++) {
+						if (bytes[idx] == ',') {
+							fieldStart[fields++] = idx + 1;
+						}
+					}
+					// item_total_price is the last field unless the row carries a product name
+					if (fields == fieldStart.length - 1) {
+						fieldStart[fields++] = length + 1;
+					}
+					if (fields < fieldStart.length) {
+						continue;
+					}
+
+					int storeStart = fieldStart[STORE_ID_FIELD];
+					if (ByteSlice.parseInt(bytes, storeStart, fieldStart[STORE_ID_FIELD + 1] - storeStart - 1) == storeId) {
+						int priceStart = fieldStart[ITEM_TOTAL_PRICE_FIELD];
+						rows++;
+						totalAmount += Money.parse(bytes, priceStart, fieldStart[ITEM_TOTAL_PRICE_FIELD + 1]
+								- priceStart - 1, StldItemRecord.TYPED_AMOUNT_SCALE);
+					}
+				}
+			} finally {
+				reader.close();
+			}
+		}
+	}
+
+	private void scanOrc(Configuration conf, Path dir, int storeId) throws Exception {
+
+		rows = 0;
+		totalAmount = 0;
+
+		List<String> columns = StldOrcOutputFormat.COLUMN_NAMES;
+		int storeColumn = columns.indexOf("store_id");
+		int priceColumn = columns.indexOf("item_total_price");
+
+		// column ids are 1 based, 0 is the row struct
+		boolean[] include = new boolean[columns.size() + 1];
+		include[0] = true;
+		include[storeColumn + 1] = true;
+		include[priceColumn + 1] = true;
+
+		String[] sargColumns = new String[columns.size() + 1];
+		sargColumns[0] = "";
+		for (int idx = 0; idx < columns.size(); idx++) {
+			sargColumns[idx + 1] = columns.get(idx);
+		}
+
+		SearchArgument sarg = SearchArgument.FACTORY.newBuilder().startAnd().equals("store_id", Long.valueOf(storeId))
+				.end().build();
+
+		for (Path file : dataFiles(conf, dir)) {
+			Reader reader = OrcFile.createReader(file, OrcFile.readerOptions(conf));
+			StructObjectInspector inspector = (StructObjectInspector) reader.getObjectInspector();
+			StructField storeField = inspector.getAllStructFieldRefs().get(storeColumn);
+			StructField priceField = inspector.getAllStructFieldRefs().get(priceColumn);
+
+			RecordReader rowReader = reader.rowsOptions(new Reader.Options().include(include).searchArgument(sarg,
+					sargColumns));
+			Object row = null;
+
+			try {
+				while (rowReader.hasNext()) {
+					row = rowReader.next(row);
+					IntWritable store = (IntWritable) inspector.getStructFieldData(row, storeField);
+
+					if (store != null && store.get() == storeId) {
+						rows++;
+						totalAmount += ((LongWritable) inspector.getStructFieldData(row, priceField)).get();
+					}
+				}
+			} finally {
+				rowReader.close();
+			}
+		}
+	}
+
+	private void report(String format, long bytesReadBefore, long start) {
+
+		System.out.println(format + ": rows=" + rows + " item_total_price="
+				+ Money.toString(totalAmount, StldItemRecord.TYPED_AMOUNT_SCALE, StldItemRecord.AMOUNT_SCALE) + " bytesRead=" + (bytesRead() - bytesReadBefore)
+				+ " ms=" + (System.currentTimeMillis() - start));
+	}
+
+	private static List<Path> dataFiles(Configuration conf, Path dir) throws Exception {
+
+		List<Path> files = new ArrayList<Path>();
+		FileSystem fileSystem = dir.getFileSystem(conf);
+
+		for (FileStatus status : fileSystem.listStatus(dir)) {
+			String name = status.getPath().getName();
+			if (!status.isDir() && !name.startsWith("_") && !name.startsWith(".")) {
+				files.add(status.getPath());
+			}
+		}
+		return files;
+	}
+
+	private static long bytesRead() {
+
+		long total = 0;
+		for (FileSystem.Statistics statistics : FileSystem.getAllStatistics()) {
+			total += statistics.getBytesRead();
+		}
+		return total;
+	}
+
+}
@@ -2,10 +2,8 @@ package com.asmath.mapreduce;
 
 import java.io.IOException;
 import java.io.StringReader;
-import java.math.BigDecimal;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
-import java.util.Date;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -14,7 +12,9 @@ import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.NullWritable;
 //import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
 import org.apache.hadoop.mapreduce.lib.input.FileSplit;
 //import org.apache.hadoop.mapreduce.Mapper.Context;
 import org.w3c.dom.Document;
@@ -24,9 +24,17 @@ import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.xml.sax.InputSource;
 
-public class AsterExtractSTLDMapper extends Mapper<LongWritable, Text, Text, Text> {
-	
-	private static final BigDecimal DECIMAL_ZERO = new BigDecimal("0.00");
+import com.asmath.stld.StldItem;
+import com.asmath.stld.StldItemHandler;
+import com.asmath.stld.StldItemRecord;
+import com.asmath.stld.StldRowEncoder;
+import com.asmath.stld.StldParser;
+import com.asmath.stld.StldParsers;
+import com.asmath.stld.StldStreamParser;
+import com.asmath.util.Money;
+import com.asmath.util.StldDateFormatter;
+
+public class AsterExtractSTLDMapper extends Mapper<LongWritable, Text, Text, Writable> implements StldItemHandler {
 	
 	private static String[] parts = null;
 	private Text mapKey = new Text();
@@ -68,8 +76,9 @@ public class AsterExtractSTLDMapper extends Mapper<LongWritable, Text, Text, Tex
 	//2015022609025110
 	SimpleDateFormat format = new SimpleDateFormat(
 			"yyyy-MM-dd HH:mm:ss.00");
-	private BigDecimal tranTotalAmount = DECIMAL_ZERO;
-	private BigDecimal totalAmount = DECIMAL_ZERO;
+	// amounts at Money.CURRENCY_SCALE, which parses the amounts of every territory
+	private long tranTotalAmount = 0;
+	private long totalAmount = 0;
 	private int tranCount = 0;
 
 	private static FileSplit fileSplit = null;
@@ -81,7 +90,7 @@ public class AsterExtractSTLDMapper extends Mapper<LongWritable, Text, Text, Tex
 	private int itemQty = 0;
 	private int tenderKind = 0;
 	private int couponQuantity = 0;
-	private BigDecimal couponAmount = DECIMAL_ZERO;
+	private long couponAmount = 0;
 
 	private String itemQtyPromo = "";
 	private String itemLevel = "";
@@ -93,16 +102,47 @@ public class AsterExtractSTLDMapper extends Mapper<LongWritable, Text, Text, Tex
 	private String commaDelimiter=",";
 	private String pipeDelimiter="|";
 
+	private StldParser stldParser = null;
+	private StldDateFormatter dateFormatter = StldDateFormatter.getInstance();
+	private StldItemRecord itemRecord = new StldItemRecord();
+	private StldRowEncoder rowEncoder = new StldRowEncoder();
+	private boolean recordOutput = false;
+	private StldMenuFilter menuFilter = null;
+	private StldComboExpander comboExpander = null;
+	private StldItemNormalizer itemNormalizer = null;
+	private static final byte PIPE = '|';
+	private Context taskContext = null;
+	// a StldStreamInputFormat line read whole, for the engines that do not stream
+	private Text streamRecord = null;
+	private byte[] streamChunk = null;
+
 	@Override
 	public void setup(Context context) {
 
-        fileSplit = (FileSplit) context.getInputSplit();
+        fileSplit = FileSplits.getFileSplit(context.getInputSplit());
         fileName = fileSplit.getPath().getName();
 
 			try {
 			docFactory = DocumentBuilderFactory.newInstance();
 			docBuilder = docFactory.newDocumentBuilder();
 			
+			String engine = context.getConfiguration().get(StldParsers.ENGINE, StldParsers.DOM);
+			if ( !StldParsers.isDom(engine) ) {
+				stldParser = StldParsers.newParser(engine);
+			}
+			recordOutput = StldItemRecord.isRecordOutput(context.getConfiguration());
+			if ( StldMenuFilter.isEnabled(context.getConfiguration()) ) {
+				menuFilter = StldMenuFilter.open(context);
+			}
+			ReferenceData referenceData = ReferenceData.open(context);
+			if ( StldComboExpander.isEnabled(context.getConfiguration()) ) {
+				comboExpander = StldComboExpander.open(context, referenceData);
+			}
+			if ( StldItemNormalizer.isEnabled(context.getConfiguration()) ) {
+				itemNormalizer = StldItemNormalizer.open(context, referenceData);
+			}
+			taskContext = context;
+			
 		} catch (Exception ex) {
 			System.err.println("Error in initializing AsterExtractMapper:");
 			System.err.println(ex.toString());
@@ -116,7 +156,11 @@ public class AsterExtractSTLDMapper extends Mapper<LongWritable, Text, Text, Tex
 
 		try {
 			
-			getSalesSummary(value.toString(),context);
+			if ( stldParser != null ) {
+				getSalesSummary(value,context);
+			} else {
+				getSalesSummary(value.toString(),context);
+			}
 			
 	    } catch (Exception ex) {
 	    	System.err.println("Error in map NpSalesSummaryMapper:");
@@ -124,36 +168,199 @@ public class AsterExtractSTLDMapper extends Mapper<LongWritable, Text, Text, Tex
 	    }
 	}
 
+	/**
+	 * Same as Mapper.run for Text values. A {@link RecordInputStream} value, from
+	 * StldStreamInputFormat, goes to {@link #mapStream} instead.
+	 */
+	@Override
+	public void run(Context context) throws IOException, InterruptedException {
+
+		TaskInputOutputContext<?, ?, ?, ?> records = context;
+
+		setup(context);
+		while ( records.nextKeyValue() ) {
+			Object value = records.getCurrentValue();
+			if ( value instanceof RecordInputStream ) {
+				mapStream((LongWritable) records.getCurrentKey(), (RecordInputStream) value, context);
+			} else {
+				map((LongWritable) records.getCurrentKey(), (Text) value, context);
+			}
+		}
+		cleanup(context);
+	}
+
+	// a streaming engine parses the line while the record reader reads it
+	public void mapStream(LongWritable key, RecordInputStream value, Context context) throws IOException, InterruptedException {
+
+		if ( stldParser instanceof StldStreamParser ) {
+			tranTotalAmount = 0;
+			tranCount = 0;
+			try {
+				((StldStreamParser) stldParser).parse(value, this);
+			} catch (Exception ex) {
+				System.err.println("Error in AsterExtractMapper:");
+				ex.printStackTrace(System.err);
+				System.exit(8);
+			}
+			return;
+		}
+
+		if ( streamRecord == null ) {
+			streamRecord = new Text();
+			streamChunk = new byte[8192];
+		}
+		streamRecord.clear();
+		int len;
+		while ( (len = value.read(streamChunk, 0, streamChunk.length)) > 0 ) {
+			streamRecord.append(streamChunk, 0, len);
+		}
+		map(key, streamRecord, context);
+	}
+
+	@Override
+	public void cleanup(Context context) throws IOException, InterruptedException {
+
+		if ( menuFilter != null ) {
+			menuFilter.close();
+		}
+	}
+
 	public String getFormatedBusinessDate(String date) throws ParseException
 	{
-		 SimpleDateFormat inputDateFormat = 
-                 new SimpleDateFormat("yyyyMMdd");
-         
-         SimpleDateFormat expectedDateFormat = new SimpleDateFormat("yyyy-MM-dd");
-                     
-         Date parsed = inputDateFormat.parse(date);
-         date= expectedDateFormat.format(parsed);
-		
-		return date;
+		// yyyyMMdd -> yyyy-MM-dd, same result as the SimpleDateFormat pair it replaces
+		return dateFormatter.formatBusinessDate(date);
 	}
 	
 	public String getFormatedOrderDate(String date) throws ParseException
 	{
-		SimpleDateFormat inputDateFormat = 
-                new SimpleDateFormat("yyyyMMddHHmmssSSS");
-        
-        SimpleDateFormat expectedDateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
-                    
-        Date parsed = inputDateFormat.parse(date);
-        date= expectedDateFormat.format(parsed);
-		
-		return date;
+		// yyyyMMddHHmmssSSS -> yyyy-MM-dd HH:mm:ss.SSS
+		return dateFormatter.formatOrderDate(date);
 	}
 	
+	private void writeItem(Context context) throws IOException, InterruptedException {
+
+		itemRecord.tldBusinessDate.set(tldBusinessDate);
+		itemRecord.businessDate.set(businessDate);
+		itemRecord.storeId.set(storeID);
+		itemRecord.orderKey.set(orderKey);
+		itemRecord.saleType.set(orderSaleType);
+		itemRecord.pod.set(orderLocation);
+		itemRecord.kind.set(orderKind);
+		itemRecord.orderTimestamp.set(orderTimestamp);
+		itemRecord.orderTotalAmount.set(orderTotalAmount);
+		itemRecord.itemCode.set(itemCode);
+		itemRecord.itemType.set(itemType);
+		itemRecord.itemQty = itemQty;
+		itemRecord.itemLevel.set(itemLevel);
+		itemRecord.itemTotalPrice.set(itemTotalPrice);
+		writeExpanded(context);
+	}
+
+	// a combo is written as its components as well, or instead with asmath.stld.combo.parent=drop
+	private void writeExpanded(Context context) throws IOException, InterruptedException {
+
+		if ( itemNormalizer != null ) {
+			itemNormalizer.normalize(itemRecord);
+		}
+		if ( comboExpander == null || !comboExpander.start(itemRecord) ) {
+			writeRecord(context);
+			return;
+		}
+		if ( comboExpander.isParentKept() ) {
+			writeRecord(context);
+		}
+		while ( comboExpander.next(itemRecord) ) {
+			writeRecord(context);
+		}
+	}
+
+	private void writeRecord(Context context) throws IOException, InterruptedException {
+
+		// items no menu has are dropped before the row is built, or routed away from the map output
+		boolean matched = menuFilter == null || menuFilter.matches(itemRecord);
+		if ( !matched && !menuFilter.isRouted() ) {
+			return;
+		}
+
+		rowEncoder.reset().append(itemRecord.storeId).append(PIPE).append(itemRecord.itemCode);
+		rowEncoder.copyTo(mapKey);
+
+		Writable value = itemRecord;
+		if ( !recordOutput ) {
+			//Output Fields in excel:  Business Date, StoreId, OrderKey, OderSaleType, OrderLocation, OrderTimeStamp, OrderTotalAmount, ItemCode, ItemType, ItemQuantity, ItemLevel, ItemTotalPrice.
+			itemRecord.writeCsv(rowEncoder.reset());
+			rowEncoder.copyTo(mapValue);
+			value = mapValue;
+		}
+
+		if ( matched ) {
+			context.write(mapKey, value);
+		} else {
+			menuFilter.route(mapKey, value);
+		}
+	}
+
+	// Streaming engines (-D asmath.stld.parser.engine=stax|bytes) call back into tld/order/item below
+	// and produce the same rows as the DOM walk in getSalesSummary(String, Context).
+	private void getSalesSummary(Text value
+			                    ,Context context) {
+
+		tranTotalAmount = 0;
+		tranCount = 0;
+		try {
+			stldParser.parse(value.getBytes(), 0, value.getLength(), this);
+		}catch (Exception ex) {
+			System.err.println("Error in AsterExtractMapper:");
+			ex.printStackTrace(System.err);
+			System.exit(8);
+		}
+	}
+
+	// The streaming callbacks copy byte slices straight into itemRecord, no Strings per row.
+	@Override
+	public void tld(StldItem item) throws IOException, InterruptedException {
+
+		itemRecord.storeId.set(item.storeId);
+		itemRecord.tldBusinessDate.set(item.businessDate);
+		try {
+			dateFormatter.formatBusinessDate(item.businessDate, itemRecord.businessDate);
+		} catch (ParseException ex) {
+			throw new IOException(ex);
+		}
+	}
+
+	@Override
+	public void order(StldItem item) throws IOException, InterruptedException {
+
+		totalAmount = Money.subtract(Money.parse(item.totalAmount, Money.CURRENCY_SCALE),
+				Money.parse(item.nonProductAmount, Money.CURRENCY_SCALE));
+		itemRecord.orderKey.set(item.orderKey);
+		itemRecord.saleType.set(item.saleType);
+		itemRecord.pod.set(item.pod);
+		itemRecord.kind.set(item.kind);
+		try {
+			dateFormatter.formatOrderDate(item.timestamp, itemRecord.orderTimestamp);
+		} catch (ParseException ex) {
+			throw new IOException(ex);
+		}
+		itemRecord.orderTotalAmount.set(item.totalAmount);
+	}
+
+	@Override
+	public void item(StldItem item) throws IOException, InterruptedException {
+
+		itemRecord.itemCode.set(item.itemCode);
+		itemRecord.itemType.set(item.itemType);
+		itemRecord.itemQty = item.itemQty;
+		itemRecord.itemLevel.set(item.itemLevel);
+		itemRecord.itemTotalPrice.set(item.itemTotalPrice);
+		writeExpanded(taskContext);
+	}
+
 	private void getSalesSummary(String xmlText
 			                    ,Context context) {
 
-		tranTotalAmount = DECIMAL_ZERO;
+		tranTotalAmount = 0;
 		tranCount = 0;
 		StringReader strReader = null;
 		try {
@@ -235,11 +442,9 @@ public class AsterExtractSTLDMapper extends Mapper<LongWritable, Text, Text, Tex
 															idxOrder++;
 														}
 
-														totalAmount = new BigDecimal(
-																eleOrder.getAttribute("totalAmount"));
-														totalAmount = totalAmount
-																.subtract(new BigDecimal(
-																		eleOrder.getAttribute("nonProductAmount")));
+														totalAmount = Money.subtract(
+																Money.parse(eleOrder.getAttribute("totalAmount"), Money.CURRENCY_SCALE),
+																Money.parse(eleOrder.getAttribute("nonProductAmount"), Money.CURRENCY_SCALE));
 														
 														orderKey = eleOrder
 																.getAttribute("key");
@@ -270,16 +475,15 @@ public class AsterExtractSTLDMapper extends Mapper<LongWritable, Text, Text, Tex
 
 															if (orderKind.contains("Manager")
 																	|| orderKind.contains("Crew")) {
-																if (totalAmount
-																		.compareTo(DECIMAL_ZERO) != 0) {
+																if (totalAmount != 0) {
 																	tranCount++;
 																}
 															} else {
 																tranCount++;
 															}
 
-															tranTotalAmount = tranTotalAmount
-																	.add(totalAmount);
+															tranTotalAmount = Money.add(tranTotalAmount,
+																	totalAmount);
 														}*/
 														if (eventType
 																.equals("TRX_Sale") && orderKind.contains("Sale")) {
@@ -363,15 +567,7 @@ public class AsterExtractSTLDMapper extends Mapper<LongWritable, Text, Text, Tex
 																					/*if(!itemType.equalsIgnoreCase("NON_FOOD_PRODUCT") && itemQty!=0)
 																					{*/
 
-																					mapKey.clear();
-																					mapKey.set((new StringBuffer(storeID)
-																					.append(pipeDelimiter).append(itemCode).toString()));
-																					mapValue.clear();
-																					mapValue.set(tldBusinessDate + commaDelimiter + businessDate+commaDelimiter +storeID + commaDelimiter+
-																							orderKey + commaDelimiter + orderSaleType + commaDelimiter + orderLocation+ commaDelimiter +  orderKind + commaDelimiter + orderTimestamp + commaDelimiter + orderTotalAmount+commaDelimiter+
-																							itemCode+ commaDelimiter+itemType+ commaDelimiter+itemQty+ commaDelimiter+itemLevel+ commaDelimiter+itemTotalPrice);
-																					//Output Fields in excel:  Business Date, StoreId, OrderKey, OderSaleType, OrderLocation, OrderTimeStamp, OrderTotalAmount, ItemCode, ItemType, ItemQuantity, ItemLevel, ItemTotalPrice.
-																					context.write(mapKey, mapValue);
+																					writeItem(context);
 																						
 																					//}
 																				}
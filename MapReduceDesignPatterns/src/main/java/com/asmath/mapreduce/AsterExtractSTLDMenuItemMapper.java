@@ -1,15 +1,20 @@
 package com.asmath.mapreduce;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.StringReader;
-import java.math.BigDecimal;
 import java.net.URI;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -21,9 +26,11 @@ import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.NullWritable;
 //import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.hadoop.mapreduce.Mapper.Context;
 import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
 //import org.apache.hadoop.mapreduce.Mapper.Context;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -32,9 +39,25 @@ import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.xml.sax.InputSource;
 
-public class AsterExtractSTLDMenuItemMapper extends Mapper<LongWritable, Text, NullWritable, Text> {
-	
-	private static final BigDecimal DECIMAL_ZERO = new BigDecimal("0.00");
+import com.asmath.menu.MenuDictionary;
+import com.asmath.menu.MenuSnapshot;
+import com.asmath.stld.StldItem;
+import com.asmath.stld.StldItemHandler;
+import com.asmath.stld.StldItemRecord;
+import com.asmath.stld.StldRowEncoder;
+import com.asmath.stld.StldParser;
+import com.asmath.stld.StldParsers;
+import com.asmath.util.ByteSlice;
+import com.asmath.util.Money;
+import com.asmath.util.ProductNameMap;
+import com.asmath.util.StldDateFormatter;
+
+public class AsterExtractSTLDMenuItemMapper extends Mapper<LongWritable, Text, NullWritable, Writable> implements StldItemHandler {
+
+	/** Threads parsing the menu cache files in setup, the number of cores by default. */
+	public static final String MENU_LOAD_THREADS = "asmath.menu.load.threads";
+	/** Holds the menus in a MenuDictionary, product definitions shared by the stores. */
+	public static final String MENU_DICTIONARY = "asmath.menu.dictionary";
 	
 	private static String[] parts = null;
 	private Text mapKey = new Text();
@@ -69,21 +92,8 @@ public class AsterExtractSTLDMenuItemMapper extends Mapper<LongWritable, Text, N
 	private String orderKey="";
 	private String orderTotalAmount="";
 	
-	//
-	String storeId = "";
-	String productId = "";
-	String takePrice = "";
-	String eatInPrice = "";
-	String longName = "";
-	
 	DocumentBuilder builder;
 	DocumentBuilderFactory factory;
-	Document doc;
-	
-	NodeList MenuNodeList;
-	Element MenuNodeElm;
-	Element ProductNodeElm;
-	NodeList ProductNodeList;
 	
 	//private NullWritable mapKeyPmenu = new NullWritable();
 		private Text mapValuePmenu = new Text();
@@ -96,8 +106,9 @@ public class AsterExtractSTLDMenuItemMapper extends Mapper<LongWritable, Text, N
 	//2015022609025110
 	SimpleDateFormat format = new SimpleDateFormat(
 			"yyyy-MM-dd HH:mm:ss.00");
-	private BigDecimal tranTotalAmount = DECIMAL_ZERO;
-	private BigDecimal totalAmount = DECIMAL_ZERO;
+	// amounts at Money.CURRENCY_SCALE, which parses the amounts of every territory
+	private long tranTotalAmount = 0;
+	private long totalAmount = 0;
 	private int tranCount = 0;
 
 	private static FileSplit fileSplit = null;
@@ -109,7 +120,7 @@ public class AsterExtractSTLDMenuItemMapper extends Mapper<LongWritable, Text, N
 	private int itemQty = 0;
 	private int tenderKind = 0;
 	private int couponQuantity = 0;
-	private BigDecimal couponAmount = DECIMAL_ZERO;
+	private long couponAmount = 0;
 
 	private String itemQtyPromo = "";
 	private String itemLevel = "";
@@ -121,14 +132,31 @@ public class AsterExtractSTLDMenuItemMapper extends Mapper<LongWritable, Text, N
 	private String delimiter=",";
 	private String pipeDelimiter="|";
 	private String commaDelimiter=",";
-	 HashMap<String,String> itemCodeMenuItemMap = new HashMap<String,String>();
+	// storeId|productId -> longName, without the per item key String and split
+	ProductNameMap menuItemNames = new ProductNameMap();
+	// a cache file compiled by MenuSnapshotCompiler is mapped instead of parsed
+	MenuSnapshot menuSnapshot = null;
+	// with asmath.menu.lazy, the menus of stores named in the file names, read when a store is seen
+	StldMenuStores menuStores = null;
+	// with asmath.menu.dictionary, the menu files' products with numeric ids
+	MenuDictionary menuDictionary = null;
+
+	private StldParser stldParser = null;
+	private StldDateFormatter dateFormatter = StldDateFormatter.getInstance();
+	private StldItemRecord itemRecord = new StldItemRecord();
+	private StldRowEncoder rowEncoder = new StldRowEncoder();
+	private boolean recordOutput = false;
+	private MultipleOutputs<NullWritable, Writable> namedOutputs = null;
+	private StldComboExpander comboExpander = null;
+	private StldItemNormalizer itemNormalizer = null;
+	private static final byte PIPE = '|';
+	private Context taskContext = null;
 
 	@Override
-	public void setup(Context context) {
+	public void setup(final Context context) {
 
-        fileSplit = (FileSplit) context.getInputSplit();
+        fileSplit = FileSplits.getFileSplit(context.getInputSplit());
         fileName = fileSplit.getPath().getName();
-        BufferedReader br = null;
 
 			try {
 			docFactory = DocumentBuilderFactory.newInstance();
@@ -138,38 +166,81 @@ public class AsterExtractSTLDMenuItemMapper extends Mapper<LongWritable, Text, N
 			builder = factory.newDocumentBuilder();
 		
 			Configuration conf = context.getConfiguration();
+			String engine = conf.get(StldParsers.ENGINE, StldParsers.DOM);
+			if ( !StldParsers.isDom(engine) ) {
+				stldParser = StldParsers.newParser(engine);
+			}
+			recordOutput = StldItemRecord.isRecordOutput(conf);
+			if ( StldNamedOutputs.isEnabled(conf) ) {
+				namedOutputs = new MultipleOutputs<NullWritable, Writable>(context);
+			}
+			ReferenceData referenceData = ReferenceData.open(context);
+			if ( StldComboExpander.isEnabled(conf) ) {
+				comboExpander = StldComboExpander.open(context, referenceData);
+			}
+			if ( StldItemNormalizer.isEnabled(conf) ) {
+				itemNormalizer = StldItemNormalizer.open(context, referenceData);
+			}
+			itemRecord.hasProductName = true;
+			taskContext = context;
 			URI[] cacheFiles = DistributedCache.getCacheFiles(conf);
-			String line = "";
+			final List<URI> menuFiles = new ArrayList<URI>();
+			StringBuilder menuKey = new StringBuilder(conf.getBoolean(MENU_DICTIONARY, false) ? "dictionary" : "menu");
+			StringBuilder menuVersion = new StringBuilder();
 			
+			if ( StldMenuStores.isEnabled(conf) ) {
+				menuStores = StldMenuStores.open(context, new StldMenuStores.MenuParser() {
+					@Override
+					public void parse(File menuFile, ProductNameMap names) throws Exception {
+						loadMenuFile(menuFile, names, null);
+					}
+				});
+			}
 			for (int i = 0; i < cacheFiles.length; i++) {
+				File cacheFile = new File(new Path(cacheFiles[i].getPath()).toString());
+				if ( ReferenceData.isReferenceFile(conf, new Path(cacheFiles[i].getPath())) ) {
+					continue;
+				}
+				if ( menuStores != null && !MenuSnapshot.isSnapshot(cacheFile) && menuStores.add(cacheFiles[i]) ) {
+					continue;
+				}
+				menuFiles.add(cacheFiles[i]);
+				menuKey.append('|').append(cacheFiles[i]);
+				menuVersion.append('|').append(JvmCache.version(conf, cacheFiles[i], cacheFile));
+			}
+			
+			// a reused JVM keeps the menu of its first task while the cache files are unchanged
+			Object[] menu = JvmCache.get(context, menuKey.toString(), menuVersion.toString(), new JvmCache.Loader<Object[]>() {
 				
-
-				br = new BufferedReader(new FileReader(new Path(
-						cacheFiles[i].getPath()).toString()));
-				System.out.println(new Path(
-						cacheFiles[i].getPath()).toString());
-				while ((line = br.readLine()) != null) {
-	    		    	  	
- 	  			
-		    	  			
-		    	  				if (line != null && !line.isEmpty()) {	
-		    	  					System.out.println("line"+line);
-		    	  					//getting Menu Item values							
-		    	  					getProductMenuItems(line);
-		    	  					
-		    	  				
-		    	  					
-		    	  				}
-		    	  				
-		    	  				
-		    	  			
-	    		      
-	    		      
-	    		      
-	    	      }
-
+				@Override
+				public Object[] load() throws IOException {
+					try {
+						loadMenu(context.getConfiguration(), menuFiles);
+					} catch (IOException ex) {
+						throw ex;
+					} catch (Exception ex) {
+						throw new IOException("Error loading the menu cache files", ex);
+					}
+					return new Object[] { menuItemNames, menuSnapshot, menuDictionary };
+				}
+				
+				@Override
+				public long sizeInBytes(Object[] menu) {
+					// the snapshot is mapped, not on the heap
+					return ((ProductNameMap) menu[0]).sizeInBytes()
+							+ (menu[2] == null ? 0 : ((MenuDictionary) menu[2]).sizeInBytes());
+				}
+			});
+			menuItemNames = (ProductNameMap) menu[0];
+			menuSnapshot = (MenuSnapshot) menu[1];
+			menuDictionary = (MenuDictionary) menu[2];
 			
-		} }catch (Exception ex) {
+			// the split's own store is read now, other stores on their first record
+			if ( menuStores != null && StldMenuStores.storeOf(fileName) != null ) {
+				menuStores.get(StldMenuStores.storeOf(fileName));
+			}
+
+		} catch (Exception ex) {
 			System.err.println("Error in initializing AsterExtractMapper:");
 			System.err.println(ex.toString());
 			System.exit(8);
@@ -177,12 +248,105 @@ public class AsterExtractSTLDMenuItemMapper extends Mapper<LongWritable, Text, N
 		
 	}
 
+	private void loadMenu(Configuration conf, List<URI> cacheFiles) throws Exception {
+
+		List<File> menuFiles = new ArrayList<File>();
+		MenuDictionary.Builder dictionary = conf.getBoolean(MENU_DICTIONARY, false) ? new MenuDictionary.Builder() : null;
+		
+		menuItemNames = new ProductNameMap();
+		menuSnapshot = null;
+		menuDictionary = null;
+		for (int i = 0; i < cacheFiles.size(); i++) {
+			
+			File cacheFile = new File(new Path(cacheFiles.get(i).getPath()).toString());
+			if ( MenuSnapshot.isSnapshot(cacheFile) ) {
+				if ( menuSnapshot != null ) {
+					throw new IOException("More than one menu snapshot in the cache files");
+				}
+				menuSnapshot = MenuSnapshot.open(cacheFile);
+				System.out.println(cacheFile + ": menu snapshot of " + menuSnapshot.size() + " products");
+				continue;
+			}
+			menuFiles.add(cacheFile);
+		}
+		if ( menuFiles.size() == 1 ) {
+			loadMenuFile(menuFiles.get(0), menuItemNames, dictionary);
+		} else if ( menuFiles.size() > 1 ) {
+			loadMenuFiles(conf, menuFiles, dictionary);
+		}
+		if ( dictionary != null ) {
+			menuDictionary = dictionary.build();
+			System.out.println("menu dictionary: " + menuDictionary.storeCount() + " stores, "
+					+ menuDictionary.rowCount() + " products, " + menuDictionary.definitionCount() + " definitions, "
+					+ menuDictionary.overrideCount() + " store prices");
+		}
+	}
+
+	private void loadMenuFiles(Configuration conf, List<File> menuFiles, final MenuDictionary.Builder dictionary) throws Exception {
+
+		// each file is parsed into its own map and the maps merged in file order, so a
+		// product in several files keeps the name of the last one as when read in turn
+		List<Callable<Object[]>> loads = new ArrayList<Callable<Object[]>>();
+		for (final File menuFile : menuFiles) {
+			loads.add(new Callable<Object[]>() {
+				@Override
+				public Object[] call() throws Exception {
+					ProductNameMap names = new ProductNameMap();
+					MenuDictionary.Builder products = dictionary == null ? null : new MenuDictionary.Builder();
+					loadMenuFile(menuFile, names, products);
+					return new Object[] { names, products };
+				}
+			});
+		}
+
+		int threads = Math.min(menuFiles.size(), conf.getInt(MENU_LOAD_THREADS, Runtime.getRuntime().availableProcessors()));
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(threads, 1));
+		try {
+			for (Future<Object[]> part : pool.invokeAll(loads)) {
+				try {
+					menuItemNames.putAll((ProductNameMap) part.get()[0]);
+					if ( dictionary != null ) {
+						dictionary.addAll((MenuDictionary.Builder) part.get()[1]);
+					}
+				} catch (ExecutionException ex) {
+					throw ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex;
+				}
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+		System.out.println(menuFiles.size() + " menu files on " + threads + " threads: " + menuItemNames.size()
+				+ " products");
+	}
+
+	private void loadMenuFile(File menuFile, ProductNameMap names, MenuDictionary.Builder dictionary) throws Exception {
+
+		BufferedReader br = new BufferedReader(new FileReader(menuFile));
+		String line = "";
+		
+		System.out.println(menuFile);
+		try {
+			while ((line = br.readLine()) != null) {
+				if (line != null && !line.isEmpty()) {	
+					//getting Menu Item values							
+					getProductMenuItems(line, names, dictionary);
+				}
+			}
+		} finally {
+			br.close();
+		}
+	}
+
 	@Override
 	public void map(LongWritable key, Text value,Context context) throws IOException, InterruptedException {
 
 		try {
 			
-			getSalesSummary(value.toString(),context);
+			if ( stldParser != null ) {
+				getSalesSummary(value,context);
+			} else {
+				getSalesSummary(value.toString(),context);
+			}
 			
 	    } catch (Exception ex) {
 	    	System.err.println("Error in map NpSalesSummaryMapper:");
@@ -190,112 +354,289 @@ public class AsterExtractSTLDMenuItemMapper extends Mapper<LongWritable, Text, N
 	    }
 	}
 
+	@Override
+	public void cleanup(Context context) throws IOException, InterruptedException {
+
+		if ( namedOutputs != null ) {
+			namedOutputs.close();
+		}
+	}
+
 	public String getFormatedBusinessDate(String date) throws ParseException
 	{
-		 SimpleDateFormat inputDateFormat = 
-                 new SimpleDateFormat("yyyyMMdd");
-         
-         SimpleDateFormat expectedDateFormat = new SimpleDateFormat("yyyy-MM-dd");
-                     
-         Date parsed = inputDateFormat.parse(date);
-         date= expectedDateFormat.format(parsed);
-		
-		return date;
+		// yyyyMMdd -> yyyy-MM-dd, same result as the SimpleDateFormat pair it replaces
+		return dateFormatter.formatBusinessDate(date);
 	}
 	
 	public String getFormatedOrderDate(String date) throws ParseException
 	{
-		SimpleDateFormat inputDateFormat = 
-                new SimpleDateFormat("yyyyMMddHHmmssSSS");
-        
-        SimpleDateFormat expectedDateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
-                    
-        Date parsed = inputDateFormat.parse(date);
-        date= expectedDateFormat.format(parsed);
-		
-		return date;
+		// yyyyMMddHHmmssSSS -> yyyy-MM-dd HH:mm:ss.SSS
+		return dateFormatter.formatOrderDate(date);
 	}
 	
 	public void getProductMenuItems(String value)
 			throws Exception {
+		getProductMenuItems(value, menuItemNames, null);
+	}
+
+	// local parser state only, menu files are read on several threads; products go
+	// to the dictionary when there is one, to the names when their ids are not ints
+	public void getProductMenuItems(String value, ProductNameMap names, MenuDictionary.Builder dictionary)
+			throws Exception {
 
 		String menuXML = value.toString().substring(
 				value.toString().indexOf("<"));
 		
 
-		factory = DocumentBuilderFactory
+		DocumentBuilderFactory factory = DocumentBuilderFactory
 				.newInstance();
 		
-		try {
-			builder = factory.newDocumentBuilder();
+		DocumentBuilder builder = factory.newDocumentBuilder();
 
-			
+		
 
-			doc = builder.parse(new InputSource(new StringReader(menuXML)));
+		Document doc = builder.parse(new InputSource(new StringReader(menuXML)));
 
-			doc.getDocumentElement().normalize();
+		doc.getDocumentElement().normalize();
 
-			MenuNodeList = doc.getElementsByTagName("MenuItem");
-			for (int i = 0; i < MenuNodeList.getLength(); i++) {
-				MenuNodeElm = (Element) MenuNodeList.item(i);
+		NodeList MenuNodeList = doc.getElementsByTagName("MenuItem");
+		for (int i = 0; i < MenuNodeList.getLength(); i++) {
+			Element MenuNodeElm = (Element) MenuNodeList.item(i);
 
-				storeId = MenuNodeElm.getAttribute("storeId");
-				
-				ProductNodeList = MenuNodeElm ==null?null: MenuNodeElm.getElementsByTagName("ProductInfo");
-				
+			String storeId = MenuNodeElm.getAttribute("storeId");
+			
+			NodeList ProductNodeList = MenuNodeElm ==null?null: MenuNodeElm.getElementsByTagName("ProductInfo");
+			
+			
+			for (int product = 0; product < ProductNodeList.getLength(); product++) {
+				Element ProductNodeElm = (Element) ProductNodeList.item(product);
 				
-				for (int product = 0; product < ProductNodeList.getLength(); product++) {
-					ProductNodeElm = (Element) ProductNodeList.item(product);
-					
+			
+				String productId = ProductNodeElm.getAttribute("id");
+				String takePrice = ProductNodeElm.getAttribute("takeoutPrice");
+				String eatInPrice = ProductNodeElm.getAttribute("eatinPrice");
+				String longName = ProductNodeElm.getAttribute("longName");
 				
-					productId = ProductNodeElm.getAttribute("id");
-					takePrice = ProductNodeElm.getAttribute("takeoutPrice");
-					eatInPrice = ProductNodeElm.getAttribute("eatinPrice");
-					longName = ProductNodeElm.getAttribute("longName");
-					
-					String hashMapkey=new StringBuffer(storeId)
-					.append(pipeDelimiter).append(productId).toString();
-  					String hashMapvalue=new StringBuffer(storeId)
-					.append(commaDelimiter).append(productId).append(commaDelimiter)
-					.append(takePrice).append(commaDelimiter)
-					.append(eatInPrice).append(commaDelimiter)
-					.append(longName).toString();
-  					System.out.println("hashkey"+hashMapkey);
-  					System.out.println("hashmapvalue"+hashMapvalue);
-  					
-  					itemCodeMenuItemMap.put(hashMapkey,hashMapvalue );
-  					
-					/*System.out.println(productId);
-					System.out.println(takePrice);
-					System.out.println(eatInPrice);
-					System.out.println(longName);
-					*/
-
-					/*mapKeyPmenu.clear();
-					mapKeyPmenu.set((new StringBuffer(storeId)
-					.append(pipeDelimiter).append(productId).toString()));
-					mapValuePmenu.clear();
-					mapValuePmenu.set((new StringBuffer(storeId)
-							.append(commaDelimiter).append(productId).append(commaDelimiter)
-							.append(takePrice).append(commaDelimiter)
-							.append(eatInPrice).append(commaDelimiter)
-							.append(longName)).toString());
-					context.write(mapKeyPmenu,mapValuePmenu);*/
-
-				}
+  				String hashMapvalue=new StringBuffer(storeId)
+				.append(commaDelimiter).append(productId).append(commaDelimiter)
+				.append(takePrice).append(commaDelimiter)
+				.append(eatInPrice).append(commaDelimiter)
+				.append(longName).toString();
+  				
+  				// the name is what split(",")[4] of the value gives, so a name with a comma is cut short as before
+  				String[] hashMapfields = hashMapvalue.split(",");
+  				String name = hashMapfields.length > 4 ? hashMapfields[4] : "";
+  				if ( dictionary == null || !dictionary.add(storeId, productId, name, ProductNodeElm.getAttribute("shortName"),
+  						ProductNodeElm.getAttribute("familyGroup"), ProductNodeElm.getAttribute("class"), eatInPrice, takePrice) ) {
+  					names.put(storeId, productId, name);
+  				}
+  				
+				/*System.out.println(productId);
+				System.out.println(takePrice);
+				System.out.println(eatInPrice);
+				System.out.println(longName);
+				*/
+
+				/*mapKeyPmenu.clear();
+				mapKeyPmenu.set((new StringBuffer(storeId)
+				.append(pipeDelimiter).append(productId).toString()));
+				mapValuePmenu.clear();
+				mapValuePmenu.set((new StringBuffer(storeId)
+						.append(commaDelimiter).append(productId).append(commaDelimiter)
+						.append(takePrice).append(commaDelimiter)
+						.append(eatInPrice).append(commaDelimiter)
+						.append(longName)).toString());
+				context.write(mapKeyPmenu,mapValuePmenu);*/
 
 			}
-		} catch (Exception e) {
-			// TODO Auto-generated catch block
-			System.err.println("Error in AsterMenuItemMapper:");
-			e.printStackTrace(System.err);
+
+		}
+	}
+	private String getProductName(String storeId, String productId) throws IOException {
+
+		String productName = menuStores == null ? null : menuStores.getName(storeId, productId);
+		if ( productName == null && menuDictionary != null ) {
+			int row = menuDictionary.find(storeId, productId);
+			productName = row < 0 ? null : menuDictionary.getName(row);
+		}
+		if ( productName == null ) {
+			productName = menuItemNames.get(storeId, productId);
+		}
+		if ( productName == null && menuSnapshot != null ) {
+			int entry = menuSnapshot.find(storeId, productId);
+			productName = entry < 0 ? null : menuSnapshot.getName(entry);
+		}
+		return productName == null ? "" : productName;
+	}
+
+	private String getProductName(ByteSlice storeId, ByteSlice productId) throws IOException {
+
+		String productName = menuStores == null ? null : menuStores.getName(storeId, productId);
+		if ( productName == null && menuDictionary != null ) {
+			int row = menuDictionary.find(storeId, productId);
+			productName = row < 0 ? null : menuDictionary.getName(row);
+		}
+		if ( productName == null ) {
+			productName = menuItemNames.get(storeId, productId);
+		}
+		if ( productName == null && menuSnapshot != null ) {
+			int entry = menuSnapshot.find(storeId, productId);
+			productName = entry < 0 ? null : menuSnapshot.getName(entry);
+		}
+		return productName;
+	}
+
+	private void writeItem(Context context) throws IOException, InterruptedException {
+
+		itemRecord.tldBusinessDate.set(tldBusinessDate);
+		itemRecord.businessDate.set(businessDate);
+		itemRecord.storeId.set(storeID);
+		itemRecord.orderKey.set(orderKey);
+		itemRecord.saleType.set(orderSaleType);
+		itemRecord.pod.set(orderLocation);
+		itemRecord.kind.set(orderKind);
+		itemRecord.orderTimestamp.set(orderTimestamp);
+		itemRecord.orderTotalAmount.set(orderTotalAmount);
+		itemRecord.itemCode.set(itemCode);
+		itemRecord.itemType.set(itemType);
+		itemRecord.itemQty = itemQty;
+		itemRecord.itemLevel.set(itemLevel);
+		itemRecord.itemTotalPrice.set(itemTotalPrice);
+		itemRecord.productName.set(getProductName(storeID, itemCode));
+		writeExpanded(context);
+	}
+
+	// a combo is written as its components as well, each with its own product name
+	private void writeExpanded(Context context) throws IOException, InterruptedException {
+
+		if ( itemNormalizer != null && itemNormalizer.normalize(itemRecord) ) {
+			setProductName();
+		}
+		if ( comboExpander == null || !comboExpander.start(itemRecord) ) {
+			writeRecord(context);
+			return;
+		}
+		if ( comboExpander.isParentKept() ) {
+			writeRecord(context);
+		}
+		while ( comboExpander.next(itemRecord) ) {
+			setProductName();
+			writeRecord(context);
+		}
+		setProductName();
+	}
+
+	private void setProductName() throws IOException {
+
+		String productName = getProductName(itemRecord.storeId, itemRecord.itemCode);
+		if ( productName == null ) {
+			itemRecord.productName.clear();
+		} else {
+			itemRecord.productName.set(productName);
+		}
+	}
+
+	private void writeRecord(Context context) throws IOException, InterruptedException {
+
+		if ( namedOutputs != null ) {
+			writeNamedOutputs();
+		} else if ( recordOutput ) {
+			context.write(NullWritable.get(), itemRecord);
+		} else {
+			//Output Fields in excel:  Business Date, StoreId, OrderKey, OderSaleType, OrderLocation, OrderTimeStamp, OrderTotalAmount, ItemCode, ItemType, ItemQuantity, ItemLevel, ItemTotalPrice, ProductName.
+			itemRecord.writeCsv(rowEncoder.reset());
+			rowEncoder.copyTo(mapValue);
+			context.write(NullWritable.get(), mapValue);
+		}
+	}
+
+	// one parse feeds both the plain STLD extract and the one with product names
+	private void writeNamedOutputs() throws IOException, InterruptedException {
+
+		rowEncoder.reset().append(itemRecord.storeId).append(PIPE).append(itemRecord.itemCode);
+		rowEncoder.copyTo(mapKey);
+
+		itemRecord.hasProductName = false;
+		if ( recordOutput ) {
+			StldNamedOutputs.write(namedOutputs, StldNamedOutputs.STLD_ITEM, mapKey, itemRecord);
+		} else {
+			itemRecord.writeCsv(rowEncoder.reset());
+			rowEncoder.copyTo(mapValue);
+			StldNamedOutputs.write(namedOutputs, StldNamedOutputs.STLD_ITEM, mapKey, mapValue);
+		}
+
+		itemRecord.hasProductName = true;
+		if ( recordOutput ) {
+			StldNamedOutputs.write(namedOutputs, StldNamedOutputs.STLD_MENU_ITEM, NullWritable.get(), itemRecord);
+		} else {
+			itemRecord.writeCsv(rowEncoder.reset());
+			rowEncoder.copyTo(mapValue);
+			StldNamedOutputs.write(namedOutputs, StldNamedOutputs.STLD_MENU_ITEM, NullWritable.get(), mapValue);
+		}
+	}
+
+	// Streaming engines (-D asmath.stld.parser.engine=stax|bytes) call back into tld/order/item below
+	// and produce the same rows as the DOM walk in getSalesSummary(String, Context).
+	private void getSalesSummary(Text value
+			                    ,Context context) {
+
+		tranTotalAmount = 0;
+		tranCount = 0;
+		try {
+			stldParser.parse(value.getBytes(), 0, value.getLength(), this);
+		}catch (Exception ex) {
+			System.err.println("Error in AsterExtractMapper:");
+			ex.printStackTrace(System.err);
 			System.exit(8);
 		}
 	}
+
+	// The streaming callbacks copy byte slices straight into itemRecord, no Strings per row.
+	@Override
+	public void tld(StldItem item) throws IOException, InterruptedException {
+
+		itemRecord.storeId.set(item.storeId);
+		itemRecord.tldBusinessDate.set(item.businessDate);
+		try {
+			dateFormatter.formatBusinessDate(item.businessDate, itemRecord.businessDate);
+		} catch (ParseException ex) {
+			throw new IOException(ex);
+		}
+	}
+
+	@Override
+	public void order(StldItem item) throws IOException, InterruptedException {
+
+		totalAmount = Money.subtract(Money.parse(item.totalAmount, Money.CURRENCY_SCALE),
+				Money.parse(item.nonProductAmount, Money.CURRENCY_SCALE));
+		itemRecord.orderKey.set(item.orderKey);
+		itemRecord.saleType.set(item.saleType);
+		itemRecord.pod.set(item.pod);
+		itemRecord.kind.set(item.kind);
+		try {
+			dateFormatter.formatOrderDate(item.timestamp, itemRecord.orderTimestamp);
+		} catch (ParseException ex) {
+			throw new IOException(ex);
+		}
+		itemRecord.orderTotalAmount.set(item.totalAmount);
+	}
+
+	@Override
+	public void item(StldItem item) throws IOException, InterruptedException {
+
+		itemRecord.itemCode.set(item.itemCode);
+		itemRecord.itemType.set(item.itemType);
+		itemRecord.itemQty = item.itemQty;
+		itemRecord.itemLevel.set(item.itemLevel);
+		itemRecord.itemTotalPrice.set(item.itemTotalPrice);
+		setProductName();
+		writeExpanded(taskContext);
+	}
+
 	private void getSalesSummary(String xmlText
 			                    ,Context context) {
 
-		tranTotalAmount = DECIMAL_ZERO;
+		tranTotalAmount = 0;
 		tranCount = 0;
 		StringReader strReader = null;
 		try {
@@ -377,11 +718,9 @@ public class AsterExtractSTLDMenuItemMapper extends Mapper<LongWritable, Text, N
 															idxOrder++;
 														}
 
-														totalAmount = new BigDecimal(
-																eleOrder.getAttribute("totalAmount"));
-														totalAmount = totalAmount
-																.subtract(new BigDecimal(
-																		eleOrder.getAttribute("nonProductAmount")));
+														totalAmount = Money.subtract(
+																Money.parse(eleOrder.getAttribute("totalAmount"), Money.CURRENCY_SCALE),
+																Money.parse(eleOrder.getAttribute("nonProductAmount"), Money.CURRENCY_SCALE));
 														
 														orderKey = eleOrder
 																.getAttribute("key");
@@ -410,16 +749,15 @@ public class AsterExtractSTLDMenuItemMapper extends Mapper<LongWritable, Text, N
 
 															if (orderKind.contains("Manager")
 																	|| orderKind.contains("Crew")) {
-																if (totalAmount
-																		.compareTo(DECIMAL_ZERO) != 0) {
+																if (totalAmount != 0) {
 																	tranCount++;
 																}
 															} else {
 																tranCount++;
 															}
 
-															tranTotalAmount = tranTotalAmount
-																	.add(totalAmount);
+															tranTotalAmount = Money.add(tranTotalAmount,
+																	totalAmount);
 														}*/
 														if (eventType
 																.equals("TRX_Sale") && orderKind.contains("Sale")) {
@@ -506,17 +844,7 @@ public class AsterExtractSTLDMenuItemMapper extends Mapper<LongWritable, Text, N
 																					.println(orderKey + pipeDelimiter+itemCode);
 																					
 																					
-																					String productName="";
-																					if(itemCodeMenuItemMap.containsKey(storeID + pipeDelimiter+itemCode))
-																					{
-																						productName=itemCodeMenuItemMap.get(storeID + pipeDelimiter+itemCode).split(",")[4];
-																					}
-																					mapValue.clear();
-																					mapValue.set(tldBusinessDate + delimiter + businessDate+delimiter +storeID + delimiter+
-																							orderKey + delimiter + orderSaleType + delimiter + orderLocation+ delimiter +  orderKind + delimiter + orderTimestamp + delimiter + orderTotalAmount+delimiter+
-																							itemCode+ delimiter+itemType+ delimiter+itemQty+ delimiter+itemLevel+ delimiter+itemTotalPrice+delimiter+productName);
-																					//Output Fields in excel:  Business Date, StoreId, OrderKey, OderSaleType, OrderLocation, OrderTimeStamp, OrderTotalAmount, ItemCode, ItemType, ItemQuantity, ItemLevel, ItemTotalPrice.
-																					context.write(NullWritable.get(), mapValue);
+																					writeItem(context);
 																						
 																					//}
 																				}
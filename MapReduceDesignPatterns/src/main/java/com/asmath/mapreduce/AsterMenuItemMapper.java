@@ -1,7 +1,7 @@
 package com.asmath.mapreduce;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.StringReader;
-import java.math.BigDecimal;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
@@ -25,7 +25,12 @@ import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
-public class AsterMenuItemMapper extends Mapper<LongWritable, Text, Text, Text> {
+
+import com.asmath.menu.MenuProduct;
+import com.asmath.menu.MenuProductHandler;
+import com.asmath.menu.MenuProductParser;
+import com.asmath.util.ByteSlice;
+public class AsterMenuItemMapper extends Mapper<LongWritable, Text, Text, Text> implements MenuProductHandler {
 
 	String storeId = "";
 	String productId = "";
@@ -48,6 +53,10 @@ public class AsterMenuItemMapper extends Mapper<LongWritable, Text, Text, Text>
 	//private NullWritable mapKeyPmenu = new NullWritable();
 	private Text mapValuePmenu = new Text();
 	private Text mapKeyPmenu = new Text();
+	
+	// with asmath.menu.parser.engine=stax, products are written as they are read
+	private MenuProductParser menuParser = null;
+	private Context taskContext = null;
 
 	public void setup(Context context) throws IOException,
 			InterruptedException {
@@ -56,6 +65,10 @@ public class AsterMenuItemMapper extends Mapper<LongWritable, Text, Text, Text>
 			factory = DocumentBuilderFactory
 					.newInstance();
 			builder = factory.newDocumentBuilder();
+			if ( MenuProductParser.isStreaming(context.getConfiguration().get(MenuProductParser.ENGINE)) ) {
+				menuParser = new MenuProductParser();
+			}
+			taskContext = context;
 			
 		} catch (Exception ex) {
 			System.err.println("Error in initializing AsterMenuItemMapper:");
@@ -68,18 +81,17 @@ public class AsterMenuItemMapper extends Mapper<LongWritable, Text, Text, Text>
 	public void map(LongWritable key, Text value, Context context)
 			throws IOException, InterruptedException {
 
-		String menuXML = value.toString().substring(
-				value.toString().indexOf("<"));
+		// parse the UTF-8 bytes in place, starting at the first '<'
+		int xmlStart = ByteSlice.indexOf(value.getBytes(), 0, value.getLength(), (byte) '<');
 
-		factory = DocumentBuilderFactory
-				.newInstance();
-		
 		try {
-			builder = factory.newDocumentBuilder();
-
-			
+			if ( menuParser != null ) {
+				menuParser.parse(value.getBytes(), xmlStart, value.getLength() - xmlStart, this);
+				return;
+			}
 
-			doc = builder.parse(new InputSource(new StringReader(menuXML)));
+			// the builder of setup is reused, parse resets it
+			doc = builder.parse(new ByteArrayInputStream(value.getBytes(), xmlStart, value.getLength() - xmlStart));
 
 			doc.getDocumentElement().normalize();
 
@@ -106,16 +118,7 @@ public class AsterMenuItemMapper extends Mapper<LongWritable, Text, Text, Text>
 					System.out.println(longName);
 					*/
 
-					mapKeyPmenu.clear();
-					mapKeyPmenu.set((new StringBuffer(storeId)
-					.append(pipeDelimiter).append(productId).toString()));
-					mapValuePmenu.clear();
-					mapValuePmenu.set((new StringBuffer(storeId)
-							.append(commaDelimiter).append(productId).append(commaDelimiter)
-							.append(takePrice).append(commaDelimiter)
-							.append(eatInPrice).append(commaDelimiter)
-							.append(longName)).toString());
-					context.write(mapKeyPmenu,mapValuePmenu);
+					writeProduct(context, storeId, productId, takePrice, eatInPrice, longName);
 
 				}
 
@@ -128,6 +131,28 @@ public class AsterMenuItemMapper extends Mapper<LongWritable, Text, Text, Text>
 		}
 	}
 	
+	@Override
+	public void product(MenuProduct product) throws IOException, InterruptedException {
+
+		writeProduct(taskContext, product.storeId, product.productId, product.takeoutPrice, product.eatinPrice,
+				product.longName);
+	}
+
+	private void writeProduct(Context context, String storeId, String productId, String takePrice,
+			String eatInPrice, String longName) throws IOException, InterruptedException {
+
+		mapKeyPmenu.clear();
+		mapKeyPmenu.set((new StringBuffer(storeId)
+		.append(pipeDelimiter).append(productId).toString()));
+		mapValuePmenu.clear();
+		mapValuePmenu.set((new StringBuffer(storeId)
+				.append(commaDelimiter).append(productId).append(commaDelimiter)
+				.append(takePrice).append(commaDelimiter)
+				.append(eatInPrice).append(commaDelimiter)
+				.append(longName)).toString());
+		context.write(mapKeyPmenu,mapValuePmenu);
+	}
+	
 	public void cleanup(Context context) throws IOException,
 	InterruptedException {
 
@@ -0,0 +1,29 @@
+package com.asmath.mapreduce;
+
+import java.lang.reflect.Method;
+
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+
+/**
+ * Gets the FileSplit behind a map task's input split, including splits that
+ * MultipleInputs wraps in its package private TaggedInputSplit.
+ */
+public class FileSplits {
+
+	public static FileSplit getFileSplit(InputSplit split) {
+
+		if (split instanceof FileSplit) {
+			return (FileSplit) split;
+		}
+
+		try {
+			Method inputSplit = split.getClass().getDeclaredMethod("getInputSplit");
+			inputSplit.setAccessible(true);
+			return getFileSplit((InputSplit) inputSplit.invoke(split));
+		} catch (Exception ex) {
+			throw new IllegalArgumentException("Not a file split: " + split.getClass().getName(), ex);
+		}
+	}
+
+}
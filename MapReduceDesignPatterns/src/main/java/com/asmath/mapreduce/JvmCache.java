@@ -0,0 +1,209 @@
+package com.asmath.mapreduce;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.filecache.DistributedCache;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+
+/**
+ * Lookup structures built from cache files, kept in static memory so the
+ * later tasks of a reused JVM (mapred.job.reuse.jvm.num.tasks) and the
+ * threads of a MultithreadedStldMapper use the one the first task built. An
+ * entry is keyed by the cache file URI and valid for one version, the file's
+ * modification time: a task shipping a newer file replaces the entry, and a
+ * task still using the old structure keeps its reference until it is done.
+ * Entries are dropped least recently used first once their estimated bytes
+ * pass asmath.jvm.cache.max.bytes, a quarter of the heap by default, and
+ * asmath.jvm.cache=false turns the cache off. Values must not be changed
+ * after they are built.
+ */
+public class JvmCache {
+
+	public static final String ENABLED = "asmath.jvm.cache";
+	public static final String MAX_BYTES = "asmath.jvm.cache.max.bytes";
+
+	public static enum Counters {
+		CACHE_HITS, CACHE_MISSES, CACHE_INVALIDATIONS, CACHE_EVICTIONS, LOAD_MILLIS, LOAD_MILLIS_SAVED
+	}
+
+	/** Builds a value and estimates the heap it holds. */
+	public static abstract class Loader<T> {
+
+		public abstract T load() throws IOException;
+
+		public abstract long sizeInBytes(T value);
+	}
+
+	private static final class Entry {
+
+		final String version;
+		final FutureTask<Object> value;
+		long bytes = 0;
+		long loadMillis = 0;
+
+		Entry(String version, FutureTask<Object> value) {
+			this.version = version;
+			this.value = value;
+		}
+	}
+
+	// access ordered, the eldest entry is the least recently used
+	private static final LinkedHashMap<String, Entry> ENTRIES = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+	private static long totalBytes = 0;
+
+	/**
+	 * The value cached for the key and version, built with the loader when the
+	 * JVM has none. Concurrent callers for the same key wait for one load.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> T get(TaskInputOutputContext<?, ?, ?, ?> context, String key, String version,
+			final Loader<T> loader) throws IOException {
+
+		Configuration conf = context.getConfiguration();
+		if (!conf.getBoolean(ENABLED, true)) {
+			long start = System.currentTimeMillis();
+			T value = loader.load();
+			context.getCounter(Counters.LOAD_MILLIS).increment(System.currentTimeMillis() - start);
+			return value;
+		}
+
+		Entry entry;
+		boolean loading = false;
+		synchronized (ENTRIES) {
+			entry = ENTRIES.get(key);
+			if (entry != null && !entry.version.equals(version)) {
+				remove(key);
+				context.getCounter(Counters.CACHE_INVALIDATIONS).increment(1);
+				entry = null;
+			}
+			if (entry == null) {
+				entry = new Entry(version, new FutureTask<Object>(new Callable<Object>() {
+					public Object call() throws IOException {
+						return loader.load();
+					}
+				}));
+				ENTRIES.put(key, entry);
+				loading = true;
+			}
+		}
+
+		if (loading) {
+			long start = System.currentTimeMillis();
+			entry.value.run();
+			long millis = System.currentTimeMillis() - start;
+			T value = (T) value(key, entry);
+
+			long bytes = loader.sizeInBytes(value);
+			synchronized (ENTRIES) {
+				entry.loadMillis = millis;
+				if (ENTRIES.get(key) == entry) {
+					entry.bytes = bytes;
+					totalBytes += bytes;
+					evict(context, conf.getLong(MAX_BYTES, Runtime.getRuntime().maxMemory() / 4), key);
+				}
+			}
+			context.getCounter(Counters.CACHE_MISSES).increment(1);
+			context.getCounter(Counters.LOAD_MILLIS).increment(millis);
+			return value;
+		}
+
+		T value = (T) value(key, entry);
+		context.getCounter(Counters.CACHE_HITS).increment(1);
+		synchronized (ENTRIES) {
+			context.getCounter(Counters.LOAD_MILLIS_SAVED).increment(entry.loadMillis);
+		}
+		return value;
+	}
+
+	/**
+	 * Version of a cache file: the modification time the job recorded when it
+	 * shipped the file, or the local copy's when the job has none.
+	 */
+	public static String version(Configuration conf, URI cacheFile, File localFile) throws IOException {
+
+		URI[] cacheFiles = DistributedCache.getCacheFiles(conf);
+		long[] timestamps = DistributedCache.getFileTimestamps(conf);
+		for (int i = 0; cacheFiles != null && timestamps != null && i < Math.min(cacheFiles.length, timestamps.length); i++) {
+			if (cacheFiles[i].equals(cacheFile)) {
+				return Long.toString(timestamps[i]);
+			}
+		}
+		return Long.toString(localFile.lastModified());
+	}
+
+	/** Drops the entry of the key; tasks using the value keep it. */
+	public static void invalidate(String key) {
+
+		synchronized (ENTRIES) {
+			remove(key);
+		}
+	}
+
+	public static void clear() {
+
+		synchronized (ENTRIES) {
+			ENTRIES.clear();
+			totalBytes = 0;
+		}
+	}
+
+	/** Estimated bytes of the cached values. */
+	public static long sizeInBytes() {
+
+		synchronized (ENTRIES) {
+			return totalBytes;
+		}
+	}
+
+	private static Object value(String key, Entry entry) throws IOException {
+
+		try {
+			return entry.value.get();
+		} catch (InterruptedException ex) {
+			throw new IOException("Interrupted loading " + key, ex);
+		} catch (ExecutionException ex) {
+			// the next task tries again
+			synchronized (ENTRIES) {
+				if (ENTRIES.get(key) == entry) {
+					remove(key);
+				}
+			}
+			if (ex.getCause() instanceof IOException) {
+				throw (IOException) ex.getCause();
+			}
+			throw new IOException("Error loading " + key, ex.getCause());
+		}
+	}
+
+	private static void remove(String key) {
+
+		Entry entry = ENTRIES.remove(key);
+		if (entry != null) {
+			totalBytes -= entry.bytes;
+		}
+	}
+
+	private static void evict(TaskInputOutputContext<?, ?, ?, ?> context, long maxBytes, String keep) {
+
+		Iterator<Map.Entry<String, Entry>> entries = ENTRIES.entrySet().iterator();
+		while (totalBytes > maxBytes && entries.hasNext()) {
+			Map.Entry<String, Entry> eldest = entries.next();
+			if (eldest.getKey().equals(keep) || !eldest.getValue().value.isDone()) {
+				continue;
+			}
+			totalBytes -= eldest.getValue().bytes;
+			entries.remove();
+			context.getCounter(Counters.CACHE_EVICTIONS).increment(1);
+		}
+	}
+
+}
@@ -0,0 +1,356 @@
+package com.asmath.mapreduce;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.StatusReporter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.util.ReflectionUtils;
+
+/**
+ * Runs several instances of a mapper over the records of one split, each on
+ * its own thread with its own parser state. The main thread reads records and
+ * hands copies of them to the workers.
+ *
+ * By default workers write straight to the task as they finish. With
+ * asmath.stld.mapper.ordered=true the output of each record is held until
+ * every earlier record has been written, so rows come out in input order.
+ * That is the order of a single threaded run but not always its values: an
+ * Item missing an attribute takes it from the previous Item its worker
+ * parsed, which for the first Item of a record need not be the last Item of
+ * the previous record of the split.
+ *
+ * Each worker runs setup and cleanup, so per mapper caches such as the menu
+ * item map are loaded once per thread. The input must be copyable: the
+ * RecordInputStream values of StldStreamInputFormat are not.
+ */
+public class MultithreadedStldMapper<K1, V1, K2, V2> extends Mapper<K1, V1, K2, V2> {
+
+	public static final String THREADS = "asmath.stld.mapper.threads";
+	public static final String MAPPER_CLASS = "asmath.stld.mapper.class";
+	public static final String ORDERED = "asmath.stld.mapper.ordered";
+
+	// records waiting for a worker or for earlier records to be written, per thread
+	private static final int RECORDS_IN_FLIGHT = 4;
+
+	private final Object lock = new Object();
+	private volatile Throwable error = null;
+
+	private Context outer;
+	private Configuration conf;
+	private boolean ordered;
+	private BlockingQueue<Record> queue;
+	private final Record end = new Record();
+
+	public static int getThreads(Configuration conf) {
+		return conf.getInt(THREADS, 1);
+	}
+
+	@SuppressWarnings("rawtypes")
+	public static void setMapperClass(Job job, Class<? extends Mapper> mapperClass) {
+		job.getConfiguration().setClass(MAPPER_CLASS, mapperClass, Mapper.class);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public void run(Context context) throws IOException, InterruptedException {
+
+		outer = context;
+		conf = context.getConfiguration();
+		ordered = conf.getBoolean(ORDERED, false);
+
+		int threads = Math.max(getThreads(conf), 1);
+		Class<Mapper<K1, V1, K2, V2>> mapperClass = (Class<Mapper<K1, V1, K2, V2>>) conf.getClass(MAPPER_CLASS,
+				Mapper.class);
+
+		queue = new ArrayBlockingQueue<Record>(threads * RECORDS_IN_FLIGHT);
+		LinkedList<Record> pending = new LinkedList<Record>();
+
+		List<Worker> workers = new ArrayList<Worker>();
+		for (int idx = 0; idx < threads; idx++) {
+			Worker worker = new Worker(ReflectionUtils.newInstance(mapperClass, conf));
+			worker.setName("STLD map worker " + idx);
+			worker.setDaemon(true);
+			workers.add(worker);
+		}
+		for (Worker worker : workers) {
+			worker.start();
+		}
+
+		try {
+			while (context.nextKeyValue()) {
+				Record record = new Record();
+				record.key = copy(context.getCurrentKey());
+				record.value = copy(context.getCurrentValue());
+
+				if (ordered) {
+					pending.add(record);
+				}
+				put(record);
+
+				if (ordered) {
+					writeCompleted(pending, threads * RECORDS_IN_FLIGHT);
+				}
+			}
+
+			for (int idx = 0; idx < threads; idx++) {
+				put(end);
+			}
+			for (Worker worker : workers) {
+				while (worker.isAlive()) {
+					checkError();
+					worker.join(1000);
+				}
+			}
+			checkError();
+
+			if (ordered) {
+				writeCompleted(pending, 0);
+				for (Worker worker : workers) {
+					worker.cleanupOutput.writeTo(context);
+				}
+			}
+		} finally {
+			for (Worker worker : workers) {
+				worker.interrupt();
+			}
+		}
+	}
+
+	/** Writes the output of finished records in input order, waiting while more than maxPending remain. */
+	private void writeCompleted(LinkedList<Record> pending, int maxPending) throws IOException, InterruptedException {
+
+		while (!pending.isEmpty()) {
+			Record head = pending.getFirst();
+
+			synchronized (lock) {
+				while (!head.done && pending.size() > maxPending && error == null) {
+					lock.wait();
+				}
+			}
+			checkError();
+
+			if (!head.done) {
+				return;
+			}
+			pending.removeFirst().output.writeTo(outer);
+		}
+	}
+
+	private void put(Record record) throws IOException, InterruptedException {
+
+		while (!queue.offer(record, 1, TimeUnit.SECONDS)) {
+			checkError();
+		}
+	}
+
+	private void checkError() throws IOException {
+
+		if (error != null) {
+			if (error instanceof IOException) {
+				throw (IOException) error;
+			}
+			throw new IOException("STLD map worker failed", error);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> T copy(T value) throws IOException {
+
+		if (value == null || value instanceof NullWritable) {
+			return value;
+		}
+		if (value instanceof Text) {
+			return (T) new Text((Text) value);
+		}
+		if (value instanceof RecordInputStream) {
+			throw new IOException(StldStreamInputFormat.checkThreads(conf));
+		}
+		return ReflectionUtils.copy(conf, value, (T) ReflectionUtils.newInstance(value.getClass(), conf));
+	}
+
+	private class Record {
+
+		Object key;
+		Object value;
+		final Output output = new Output();
+		volatile boolean done = false;
+	}
+
+	/** Key/value pairs written for one record, kept until it is that record's turn. */
+	private class Output {
+
+		private final List<Object> keys = new ArrayList<Object>();
+		private final List<Object> values = new ArrayList<Object>();
+
+		void add(K2 key, V2 value) throws IOException {
+			keys.add(copy(key));
+			values.add(copy(value));
+		}
+
+		@SuppressWarnings("unchecked")
+		void writeTo(Context context) throws IOException, InterruptedException {
+
+			for (int idx = 0; idx < keys.size(); idx++) {
+				context.write((K2) keys.get(idx), (V2) values.get(idx));
+			}
+			keys.clear();
+			values.clear();
+		}
+	}
+
+	private class Worker extends Thread {
+
+		private final Mapper<K1, V1, K2, V2> mapper;
+		private final Output cleanupOutput = new Output();
+		private Record current = null;
+
+		Worker(Mapper<K1, V1, K2, V2> mapper) {
+			this.mapper = mapper;
+		}
+
+		@Override
+		public void run() {
+
+			try {
+				mapper.run(new Context(conf, outer.getTaskAttemptID(), new WorkerReader(this), new WorkerWriter(this),
+						outer.getOutputCommitter(), new WorkerReporter(), outer.getInputSplit()));
+			} catch (Throwable ex) {
+				error = ex;
+			} finally {
+				synchronized (lock) {
+					lock.notifyAll();
+				}
+			}
+		}
+
+		/** Marks the current record written out and takes the next one, null once the input is used up. */
+		Record next() throws InterruptedException {
+
+			if (current != null) {
+				current.done = true;
+				current.key = null;
+				current.value = null;
+				synchronized (lock) {
+					lock.notifyAll();
+				}
+			}
+			current = queue.take();
+			if (current == end) {
+				current = null;
+			}
+			return current;
+		}
+	}
+
+	private class WorkerReader extends RecordReader<K1, V1> {
+
+		private final Worker worker;
+		private Record record = null;
+
+		WorkerReader(Worker worker) {
+			this.worker = worker;
+		}
+
+		@Override
+		public void initialize(InputSplit split, TaskAttemptContext context) {
+		}
+
+		@Override
+		public boolean nextKeyValue() throws IOException, InterruptedException {
+
+			record = worker.next();
+			return record != null;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public K1 getCurrentKey() {
+			return (K1) record.key;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public V1 getCurrentValue() {
+			return (V1) record.value;
+		}
+
+		@Override
+		public float getProgress() throws IOException, InterruptedException {
+			return outer.getProgress();
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	private class WorkerWriter extends RecordWriter<K2, V2> {
+
+		private final Worker worker;
+
+		WorkerWriter(Worker worker) {
+			this.worker = worker;
+		}
+
+		@Override
+		public void write(K2 key, V2 value) throws IOException, InterruptedException {
+
+			if (!ordered) {
+				synchronized (outer) {
+					outer.write(key, value);
+				}
+			} else if (worker.current != null) {
+				worker.current.output.add(key, value);
+			} else {
+				worker.cleanupOutput.add(key, value);
+			}
+		}
+
+		@Override
+		public void close(TaskAttemptContext context) {
+		}
+	}
+
+	private class WorkerReporter extends StatusReporter {
+
+		@Override
+		public Counter getCounter(Enum<?> name) {
+			return outer.getCounter(name);
+		}
+
+		@Override
+		public Counter getCounter(String group, String name) {
+			return outer.getCounter(group, name);
+		}
+
+		@Override
+		public void progress() {
+			outer.progress();
+		}
+
+		public float getProgress() {
+			return outer.getProgress();
+		}
+
+		@Override
+		public void setStatus(String status) {
+			outer.setStatus(status);
+		}
+	}
+
+}
@@ -0,0 +1,42 @@
+package com.asmath.mapreduce;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Value of a {@link StldStreamInputFormat} record: the bytes of one line, read
+ * straight from the record reader's buffer up to the end of line, which is
+ * not returned. The stream is only valid until the next record is read; what
+ * the mapper leaves unread is skipped then.
+ */
+public class RecordInputStream extends InputStream {
+
+	private final StldStreamRecordReader reader;
+
+	RecordInputStream(StldStreamRecordReader reader) {
+		this.reader = reader;
+	}
+
+	@Override
+	public int read() throws IOException {
+		return reader.readRecord();
+	}
+
+	@Override
+	public int read(byte[] bytes, int offset, int length) throws IOException {
+		return reader.readRecord(bytes, offset, length);
+	}
+
+	/** Bytes that can be read without reading the file, at most what is left of the buffer. */
+	@Override
+	public int available() throws IOException {
+		return reader.availableInRecord();
+	}
+
+	/** Skips the rest of the record, the next record starts where it left off. */
+	@Override
+	public void close() throws IOException {
+		reader.skipRecord();
+	}
+
+}
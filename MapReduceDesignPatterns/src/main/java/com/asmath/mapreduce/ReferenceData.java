@@ -0,0 +1,206 @@
+package com.asmath.mapreduce;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.filecache.DistributedCache;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+
+import com.asmath.util.ComboItems;
+import com.asmath.util.IntTable;
+import com.asmath.util.PrimaryItems;
+import com.asmath.util.PsvReader;
+import com.asmath.util.TimeSegments;
+
+/**
+ * The reference files of a task. A job names the files it needs with the -D
+ * keys of {@link ReferenceFile}, the driver ships them with
+ * {@link #configure(Job)} and a mapper gets them all from
+ * {@link #open(TaskInputOutputContext)}, which reads the files on
+ * asmath.refdata.load.threads threads. Tables are kept in the JvmCache, so
+ * mapper threads and the tasks of a reused JVM read a file once.
+ */
+public class ReferenceData {
+
+	public static final String LOAD_THREADS = "asmath.refdata.load.threads";
+
+	private final EnumMap<ReferenceFile, Loaded> files = new EnumMap<ReferenceFile, Loaded>(ReferenceFile.class);
+
+	private static final class Loaded {
+
+		final IntTable table;
+		final Object view;
+
+		Loaded(IntTable table, Object view) {
+			this.table = table;
+			this.view = view;
+		}
+	}
+
+	private ReferenceData() {
+	}
+
+	/** Ships every reference file the job names to the mappers. */
+	public static void configure(Job job) {
+
+		Configuration conf = job.getConfiguration();
+		for (ReferenceFile file : ReferenceFile.values()) {
+			if (conf.get(file.getConfKey()) != null) {
+				DistributedCache.addCacheFile(new Path(conf.get(file.getConfKey())).toUri(), conf);
+			}
+		}
+	}
+
+	/** True for a cache file the job names as a reference file, which is not a menu file. */
+	public static boolean isReferenceFile(Configuration conf, Path cacheFile) {
+
+		for (ReferenceFile file : ReferenceFile.values()) {
+			if (conf.get(file.getConfKey()) != null
+					&& new Path(conf.get(file.getConfKey())).getName().equals(cacheFile.getName())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/** Loads the reference files the job names from the task's cache files, in parallel. */
+	public static ReferenceData open(TaskInputOutputContext<?, ?, ?, ?> context) throws IOException {
+
+		Configuration conf = context.getConfiguration();
+		URI[] cacheFiles = DistributedCache.getCacheFiles(conf);
+		ReferenceData referenceData = new ReferenceData();
+
+		List<ReferenceFile> named = new ArrayList<ReferenceFile>();
+		List<Callable<Loaded>> loads = new ArrayList<Callable<Loaded>>();
+
+		for (ReferenceFile file : ReferenceFile.values()) {
+			if (conf.get(file.getConfKey()) != null) {
+				named.add(file);
+				loads.add(new Load(context, findCacheFile(conf.get(file.getConfKey()), cacheFiles), file));
+			}
+		}
+		if (named.isEmpty()) {
+			return referenceData;
+		}
+
+		int threads = Math.min(named.size(), conf.getInt(LOAD_THREADS, Runtime.getRuntime().availableProcessors()));
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(threads, 1));
+		try {
+			List<Future<Loaded>> futures = pool.invokeAll(loads);
+			for (int idx = 0; idx < named.size(); idx++) {
+				referenceData.files.put(named.get(idx), futures.get(idx).get());
+			}
+		} catch (InterruptedException ex) {
+			throw new IOException("Interrupted loading the reference files", ex);
+		} catch (ExecutionException ex) {
+			if (ex.getCause() instanceof IOException) {
+				throw (IOException) ex.getCause();
+			}
+			throw new IOException("Error loading the reference files", ex.getCause());
+		} finally {
+			pool.shutdown();
+		}
+		return referenceData;
+	}
+
+	private static URI findCacheFile(String file, URI[] cacheFiles) throws IOException {
+
+		String name = new Path(file).getName();
+		for (int i = 0; cacheFiles != null && i < cacheFiles.length; i++) {
+			if (new Path(cacheFiles[i].getPath()).getName().equals(name)) {
+				return cacheFiles[i];
+			}
+		}
+		throw new IOException("Reference file " + name + " is not in the cache files");
+	}
+
+	// one file, through the JVM cache so a reused JVM does not read it again
+	private static final class Load implements Callable<Loaded> {
+
+		private final TaskInputOutputContext<?, ?, ?, ?> context;
+		private final URI cacheFile;
+		private final ReferenceFile file;
+
+		Load(TaskInputOutputContext<?, ?, ?, ?> context, URI cacheFile, ReferenceFile file) {
+			this.context = context;
+			this.cacheFile = cacheFile;
+			this.file = file;
+		}
+
+		@Override
+		public Loaded call() throws IOException {
+
+			final String localFile = new Path(cacheFile.getPath()).toString();
+			String version = JvmCache.version(context.getConfiguration(), cacheFile, new File(localFile));
+
+			return JvmCache.get(context, cacheFile + "#" + file, version, new JvmCache.Loader<Loaded>() {
+
+				@Override
+				public Loaded load() throws IOException {
+
+					IntTable table;
+					BufferedReader br = new BufferedReader(new FileReader(localFile));
+					try {
+						table = IntTable.load(new PsvReader(br), file.getSchema());
+					} finally {
+						br.close();
+					}
+					System.out.println(localFile + ": " + file + " of " + table.rowCount() + " rows, "
+							+ table.keyCount() + " keys");
+					return new Loaded(table, file.view(table));
+				}
+
+				@Override
+				public long sizeInBytes(Loaded loaded) {
+					return loaded.table.sizeInBytes();
+				}
+			});
+		}
+	}
+
+	public boolean has(ReferenceFile file) {
+		return files.containsKey(file);
+	}
+
+	/** Table of the file, also for the files with a typed view. */
+	public IntTable getTable(ReferenceFile file) {
+		return get(file).table;
+	}
+
+	public ComboItems getComboItems() {
+		return (ComboItems) get(ReferenceFile.COMBO_ITEMS).view;
+	}
+
+	public PrimaryItems getPrimaryItems() {
+		return (PrimaryItems) get(ReferenceFile.PRIMARY_ITEMS).view;
+	}
+
+	/** Segments of the given type, e.g. "Half Hourly". */
+	public TimeSegments getTimeSegments(String type) {
+		return new TimeSegments(get(ReferenceFile.TIME_SEGMENT).table, type);
+	}
+
+	private Loaded get(ReferenceFile file) {
+
+		Loaded loaded = files.get(file);
+		if (loaded == null) {
+			throw new IllegalStateException(file + " is not loaded, set -D " + file.getConfKey());
+		}
+		return loaded;
+	}
+
+}
@@ -0,0 +1,95 @@
+package com.asmath.mapreduce;
+
+import com.asmath.util.ComboItems;
+import com.asmath.util.IntTable;
+import com.asmath.util.PrimaryItems;
+import com.asmath.util.TimeSegments;
+
+/**
+ * The PSV reference files a job can ship to its mappers, each with the -D key
+ * naming it and its schema. ReferenceData loads the files a job names and
+ * hands the tables out; files with a typed view, such as COMBO_ITEMS, are
+ * handed out as that view. The column constants are the IntTable columns of
+ * the files listing them.
+ */
+public enum ReferenceFile {
+
+	/** Currency.psv, <code>numericCode|alphaCode|name</code> keyed by numeric code: columns ALPHA_CODE, NAME. */
+	CURRENCY("asmath.refdata.currency.file", new IntTable.Schema("currency", 0).column(1, IntTable.Type.STRING)
+			.column(2, IntTable.Type.STRING)),
+
+	/**
+	 * GiftItem.psv, <code>territory|itemId|name|shortName|posName</code> keyed by
+	 * item: columns TERRITORY, NAME, SHORT_NAME, POS_NAME.
+	 */
+	GIFT_ITEM("asmath.refdata.giftitem.file", new IntTable.Schema("gift item", 1).column(0, IntTable.Type.INT)
+			.column(2, IntTable.Type.STRING).column(3, IntTable.Type.STRING).column(4, IntTable.Type.REST)),
+
+	/** GenericDrink.psv, <code>itemId|name</code> keyed by item: columns ITEM_ID, NAME. */
+	GENERIC_DRINK("asmath.refdata.genericdrink.file", new IntTable.Schema("generic drink", 0).column(0,
+			IntTable.Type.INT).column(1, IntTable.Type.STRING)),
+
+	/**
+	 * itemPrice.psv,
+	 * <code>posCode|name|price|itemId|itemName|qty|menuId|source</code> keyed by
+	 * item, a row per POS code: columns POS_CODE, NAME, PRICE (ten-thousandths,
+	 * the file has 0.0001 prices), QTY, MENU_ID, SOURCE.
+	 */
+	ITEM_PRICE("asmath.refdata.itemprice.file", new IntTable.Schema("item price", 3).column(0, IntTable.Type.STRING)
+			.column(1, IntTable.Type.STRING).column(2, IntTable.Type.TEN_THOUSANDTHS).column(5, IntTable.Type.INT)
+			.column(6, IntTable.Type.INT).column(7, IntTable.Type.STRING)),
+
+	/** TimeSegment.psv, see {@link TimeSegments}. */
+	TIME_SEGMENT(StldTimeSegmentMapper.SEGMENT_FILE, TimeSegments.SCHEMA),
+
+	/** Comboitems.psv, handed out as {@link ComboItems}. */
+	COMBO_ITEMS(StldComboExpander.COMBO_FILE, ComboItems.SCHEMA) {
+		@Override
+		Object view(IntTable table) {
+			return new ComboItems(table);
+		}
+	},
+
+	/** primarytosecondary.psv, handed out as {@link PrimaryItems}. */
+	PRIMARY_ITEMS(StldItemNormalizer.PRIMARY_FILE, PrimaryItems.SCHEMA) {
+		@Override
+		Object view(IntTable table) {
+			return new PrimaryItems(table);
+		}
+	};
+
+	public static final int ALPHA_CODE = 0;
+	public static final int TERRITORY = 0;
+	public static final int POS_CODE = 0;
+	public static final int ITEM_ID = 0;
+	public static final int NAME = 1;
+	public static final int PRICE = 2;
+	public static final int SHORT_NAME = 2;
+	public static final int POS_NAME = 3;
+	public static final int QTY = 3;
+	public static final int MENU_ID = 4;
+	public static final int SOURCE = 5;
+
+	private final String confKey;
+	private final IntTable.Schema schema;
+
+	private ReferenceFile(String confKey, IntTable.Schema schema) {
+		this.confKey = confKey;
+		this.schema = schema;
+	}
+
+	/** The -D key giving the path of the file. */
+	public String getConfKey() {
+		return confKey;
+	}
+
+	public IntTable.Schema getSchema() {
+		return schema;
+	}
+
+	/** What ReferenceData hands out for the table. */
+	Object view(IntTable table) {
+		return table;
+	}
+
+}
@@ -0,0 +1,67 @@
+package com.asmath.mapreduce;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.avro.Schema;
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+
+import com.asmath.stld.StldItemRecord;
+
+/**
+ * Writes StldItemRecord values to Avro container files using the published
+ * com/asmath/stld/StldOrderItem.avsc schema. Keys are ignored. Blocks are
+ * compressed with the codec named by asmath.stld.avro.codec (deflate, snappy,
+ * bzip2 or null), deflate by default.
+ */
+public class StldAvroOutputFormat extends FileOutputFormat<Writable, StldItemRecord> {
+
+	public static final String CODEC = "asmath.stld.avro.codec";
+	public static final String DEFAULT_CODEC = "deflate";
+	public static final String SCHEMA_RESOURCE = "/com/asmath/stld/StldOrderItem.avsc";
+
+	private static Schema schema = null;
+
+	public static synchronized Schema getSchema() throws IOException {
+
+		if (schema == null) {
+			InputStream in = StldAvroOutputFormat.class.getResourceAsStream(SCHEMA_RESOURCE);
+			if (in == null) {
+				throw new IOException("Avro schema " + SCHEMA_RESOURCE + " not found on the classpath");
+			}
+			try {
+				schema = new Schema.Parser().parse(in);
+			} finally {
+				in.close();
+			}
+		}
+		return schema;
+	}
+
+	@Override
+	public RecordWriter<Writable, StldItemRecord> getRecordWriter(TaskAttemptContext context) throws IOException,
+			InterruptedException {
+
+		Configuration conf = context.getConfiguration();
+		Path file = getDefaultWorkFile(context, ".avro");
+		FSDataOutputStream out = file.getFileSystem(conf).create(file, false);
+
+		DataFileWriter<GenericRecord> writer = new DataFileWriter<GenericRecord>(new GenericDatumWriter<GenericRecord>(
+				getSchema()));
+		writer.setCodec(CodecFactory.fromString(conf.get(CODEC, DEFAULT_CODEC)));
+		writer.create(getSchema(), out);
+
+		return new StldAvroRecordWriter(writer, getSchema());
+	}
+
+}
@@ -0,0 +1,111 @@
+package com.asmath.mapreduce;
+
+import java.io.IOException;
+import java.text.ParseException;
+
+import org.apache.avro.Schema;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.util.Utf8;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+
+import com.asmath.stld.StldItemRecord;
+import com.asmath.util.ByteSlice;
+import com.asmath.util.StldDateFormatter;
+
+/**
+ * Converts StldItemRecord values to StldOrderItem Avro records. The record and
+ * its Utf8 strings are reused, dates are taken back to epoch milliseconds and
+ * amounts to ten-thousandths.
+ */
+public class StldAvroRecordWriter extends RecordWriter<Writable, StldItemRecord> {
+
+	private final DataFileWriter<GenericRecord> writer;
+	private final GenericData.Record record;
+	private final StldDateFormatter dateFormatter = StldDateFormatter.getInstance();
+
+	private final int businessDatePos;
+	private final int storeIdPos;
+	private final int orderKeyPos;
+	private final int saleTypePos;
+	private final int podPos;
+	private final int kindPos;
+	private final int orderTimestampPos;
+	private final int orderTotalAmountPos;
+	private final int itemCodePos;
+	private final int itemTypePos;
+	private final int itemQtyPos;
+	private final int itemLevelPos;
+	private final int itemTotalPricePos;
+	private final int productNamePos;
+
+	private final Utf8 orderKey = new Utf8();
+	private final Utf8 saleType = new Utf8();
+	private final Utf8 pod = new Utf8();
+	private final Utf8 kind = new Utf8();
+	private final Utf8 itemType = new Utf8();
+	private final Utf8 productName = new Utf8();
+
+	public StldAvroRecordWriter(DataFileWriter<GenericRecord> writer, Schema schema) {
+
+		this.writer = writer;
+		record = new GenericData.Record(schema);
+
+		businessDatePos = schema.getField("businessDate").pos();
+		storeIdPos = schema.getField("storeId").pos();
+		orderKeyPos = schema.getField("orderKey").pos();
+		saleTypePos = schema.getField("saleType").pos();
+		podPos = schema.getField("pod").pos();
+		kindPos = schema.getField("kind").pos();
+		orderTimestampPos = schema.getField("orderTimestamp").pos();
+		orderTotalAmountPos = schema.getField("orderTotalAmount").pos();
+		itemCodePos = schema.getField("itemCode").pos();
+		itemTypePos = schema.getField("itemType").pos();
+		itemQtyPos = schema.getField("itemQty").pos();
+		itemLevelPos = schema.getField("itemLevel").pos();
+		itemTotalPricePos = schema.getField("itemTotalPrice").pos();
+		productNamePos = schema.getField("productName").pos();
+	}
+
+	@Override
+	public void write(Writable key, StldItemRecord value) throws IOException, InterruptedException {
+
+		try {
+			record.put(businessDatePos, value.businessDateMillis(dateFormatter));
+			record.put(orderTimestampPos, value.orderTimestampMillis(dateFormatter));
+		} catch (ParseException ex) {
+			throw new IOException(ex);
+		}
+
+		record.put(storeIdPos, value.storeId.parseInt());
+		record.put(orderKeyPos, utf8(orderKey, value.orderKey));
+		record.put(saleTypePos, utf8(saleType, value.saleType));
+		record.put(podPos, utf8(pod, value.pod));
+		record.put(kindPos, utf8(kind, value.kind));
+		record.put(orderTotalAmountPos, value.orderTotalScaled());
+		record.put(itemCodePos, value.itemCode.parseInt());
+		record.put(itemTypePos, utf8(itemType, value.itemType));
+		record.put(itemQtyPos, value.itemQty);
+		record.put(itemLevelPos, value.itemLevelValue());
+		record.put(itemTotalPricePos, value.itemTotalScaled());
+		record.put(productNamePos, value.hasProductName ? utf8(productName, value.productName) : null);
+
+		writer.append(record);
+	}
+
+	@Override
+	public void close(TaskAttemptContext context) throws IOException, InterruptedException {
+		writer.close();
+	}
+
+	private static Utf8 utf8(Utf8 target, ByteSlice source) {
+
+		target.setByteLength(source.getLength());
+		System.arraycopy(source.getBytes(), 0, target.getBytes(), 0, source.getLength());
+		return target;
+	}
+
+}
@@ -0,0 +1,122 @@
+package com.asmath.mapreduce;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+
+import com.asmath.stld.StldItemRecord;
+import com.asmath.util.ByteSlice;
+import com.asmath.util.ComboItems;
+
+/**
+ * Expands the combo items of the STLD extract into their components, given
+ * Comboitems.psv with -D asmath.stld.combo.file=&lt;path&gt;. Each combo row is
+ * followed by one PRODUCT row per component, one level below the combo, with
+ * the combo qty times the component qty and a zero price, the price staying
+ * on the combo row. With asmath.stld.combo.parent=drop only the component
+ * rows are written.
+ *
+ * <pre>
+ * if ( comboExpander.start(itemRecord) ) {
+ *     while ( comboExpander.next(itemRecord) ) { write the component row }
+ * }
+ * </pre>
+ */
+public class StldComboExpander {
+
+	public static final String COMBO_FILE = "asmath.stld.combo.file";
+	public static final String PARENT = "asmath.stld.combo.parent";
+	public static final String KEEP = "keep";
+	public static final String DROP = "drop";
+
+	public static enum Counters {
+		COMBOS_EXPANDED, COMPONENTS_WRITTEN
+	}
+
+	private static final byte[] PRODUCT = { 'P', 'R', 'O', 'D', 'U', 'C', 'T' };
+	private static final byte[] ZERO_PRICE = { '0', '.', '0', '0' };
+
+	private final ComboItems combos;
+	private boolean parentKept = true;
+	private Counter combosExpanded;
+	private Counter componentsWritten;
+
+	// the combo row, put back into the record after its components
+	private final ByteSlice comboCode = new ByteSlice();
+	private final ByteSlice comboType = new ByteSlice();
+	private final ByteSlice comboLevel = new ByteSlice();
+	private final ByteSlice comboPrice = new ByteSlice();
+	private int comboQty = 0;
+	private int componentLevel = 0;
+	private int position = 0;
+	private int end = 0;
+
+	public StldComboExpander(ComboItems combos) {
+		this.combos = combos;
+	}
+
+	public static boolean isEnabled(Configuration conf) {
+		return conf.get(COMBO_FILE) != null;
+	}
+
+	/** Expander over the combos of the task's reference data. */
+	public static StldComboExpander open(TaskInputOutputContext<?, ?, ?, ?> context, ReferenceData referenceData) {
+
+		StldComboExpander comboExpander = new StldComboExpander(referenceData.getComboItems());
+		comboExpander.parentKept = !DROP.equalsIgnoreCase(context.getConfiguration().get(PARENT, KEEP));
+		comboExpander.combosExpanded = context.getCounter(Counters.COMBOS_EXPANDED);
+		comboExpander.componentsWritten = context.getCounter(Counters.COMPONENTS_WRITTEN);
+		return comboExpander;
+	}
+
+	/** Whether the combo row itself is written before its components. */
+	public boolean isParentKept() {
+		return parentKept;
+	}
+
+	/** Starts on the components of the record's item, false when it is not a combo. */
+	public boolean start(StldItemRecord itemRecord) {
+
+		int combo = combos.find(itemRecord.itemCode);
+		if (combo < 0) {
+			return false;
+		}
+
+		comboCode.set(itemRecord.itemCode);
+		comboType.set(itemRecord.itemType);
+		comboLevel.set(itemRecord.itemLevel);
+		comboPrice.set(itemRecord.itemTotalPrice);
+		comboQty = itemRecord.itemQty;
+		componentLevel = itemRecord.itemLevelValue() + 1;
+		position = combos.start(combo);
+		end = combos.end(combo);
+		combosExpanded.increment(1);
+		return true;
+	}
+
+	/**
+	 * Turns the record into the next component row, or back into the combo
+	 * row and false when the components are done.
+	 */
+	public boolean next(StldItemRecord itemRecord) {
+
+		if (position == end) {
+			itemRecord.itemCode.set(comboCode);
+			itemRecord.itemType.set(comboType);
+			itemRecord.itemQty = comboQty;
+			itemRecord.itemLevel.set(comboLevel);
+			itemRecord.itemTotalPrice.set(comboPrice);
+			return false;
+		}
+
+		itemRecord.itemCode.setInt(combos.getComponentId(position));
+		itemRecord.itemType.set(PRODUCT, 0, PRODUCT.length);
+		itemRecord.itemQty = comboQty * combos.getQuantity(position);
+		itemRecord.itemLevel.setInt(componentLevel);
+		itemRecord.itemTotalPrice.set(ZERO_PRICE, 0, ZERO_PRICE.length);
+		position++;
+		componentsWritten.increment(1);
+		return true;
+	}
+
+}
@@ -0,0 +1,55 @@
+package com.asmath.mapreduce;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+
+import com.asmath.stld.StldItemRecord;
+import com.asmath.util.PrimaryItems;
+
+/**
+ * Replaces the secondary item codes of the STLD extract by their primary
+ * item, given primarytosecondary.psv with
+ * -D asmath.stld.primary.file=&lt;path&gt;, so 1001 is written as 1 and item
+ * level aggregates group on one code per product. The table comes from
+ * ReferenceData, read once per JVM and shared by the mapper threads and the
+ * tasks of a reused JVM.
+ */
+public class StldItemNormalizer {
+
+	public static final String PRIMARY_FILE = "asmath.stld.primary.file";
+
+	public static enum Counters {
+		ITEMS_REMAPPED
+	}
+
+	private final PrimaryItems primaryItems;
+	private Counter itemsRemapped;
+
+	public StldItemNormalizer(PrimaryItems primaryItems) {
+		this.primaryItems = primaryItems;
+	}
+
+	public static boolean isEnabled(Configuration conf) {
+		return conf.get(PRIMARY_FILE) != null;
+	}
+
+	/** Normalizer over the primary items of the task's reference data. */
+	public static StldItemNormalizer open(TaskInputOutputContext<?, ?, ?, ?> context, ReferenceData referenceData) {
+
+		StldItemNormalizer itemNormalizer = new StldItemNormalizer(referenceData.getPrimaryItems());
+		itemNormalizer.itemsRemapped = context.getCounter(Counters.ITEMS_REMAPPED);
+		return itemNormalizer;
+	}
+
+	/** Replaces the record's item code by its primary item, false when it is not a secondary item. */
+	public boolean normalize(StldItemRecord itemRecord) {
+
+		if (primaryItems.remap(itemRecord.itemCode)) {
+			itemsRemapped.increment(1);
+			return true;
+		}
+		return false;
+	}
+
+}
@@ -0,0 +1,144 @@
+package com.asmath.mapreduce;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.mapreduce.Partitioner;
+
+/**
+ * Key of the reduce side menu join: the storeId|itemCode key both mappers
+ * write, followed by a tag that sorts menu records ahead of STLD items.
+ * Serialized as the Text followed by the tag byte, so the comparators below
+ * work on the raw bytes without deserializing.
+ */
+public class StldJoinKey implements WritableComparable<StldJoinKey> {
+
+	public static final byte MENU = 0;
+	public static final byte STLD = 1;
+
+	private final Text joinKey = new Text();
+	private byte tag;
+
+	static {
+		WritableComparator.define(StldJoinKey.class, new Comparator());
+	}
+
+	public Text getJoinKey() {
+		return joinKey;
+	}
+
+	public byte getTag() {
+		return tag;
+	}
+
+	public void set(Text key, byte tag) {
+		joinKey.set(key);
+		this.tag = tag;
+	}
+
+	@Override
+	public void write(DataOutput out) throws IOException {
+		joinKey.write(out);
+		out.writeByte(tag);
+	}
+
+	@Override
+	public void readFields(DataInput in) throws IOException {
+		joinKey.readFields(in);
+		tag = in.readByte();
+	}
+
+	@Override
+	public int compareTo(StldJoinKey other) {
+
+		int cmp = joinKey.compareTo(other.joinKey);
+		return cmp != 0 ? cmp : tag - other.tag;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		return other instanceof StldJoinKey && compareTo((StldJoinKey) other) == 0;
+	}
+
+	@Override
+	public int hashCode() {
+		return joinKey.hashCode() * 31 + tag;
+	}
+
+	@Override
+	public String toString() {
+		return joinKey + "#" + tag;
+	}
+
+	private static int keyBytes(byte[] bytes, int offset) throws IOException {
+		return WritableUtils.decodeVIntSize(bytes[offset]) + WritableComparator.readVInt(bytes, offset);
+	}
+
+	/** Sorts by the join key bytes, then the tag. */
+	public static class Comparator extends WritableComparator {
+
+		public Comparator() {
+			super(StldJoinKey.class);
+		}
+
+		@Override
+		public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+
+			try {
+				int n1 = keyBytes(b1, s1);
+				int n2 = keyBytes(b2, s2);
+				int cmp = compareJoinKeys(b1, s1, n1, b2, s2, n2);
+				return cmp != 0 ? cmp : b1[s1 + n1] - b2[s2 + n2];
+			} catch (IOException ex) {
+				throw new IllegalArgumentException(ex);
+			}
+		}
+	}
+
+	/** Groups on the join key alone, so one reduce call sees the menu record and then its items. */
+	public static class GroupingComparator extends WritableComparator {
+
+		public GroupingComparator() {
+			super(StldJoinKey.class);
+		}
+
+		@Override
+		public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+
+			try {
+				return compareJoinKeys(b1, s1, keyBytes(b1, s1), b2, s2, keyBytes(b2, s2));
+			} catch (IOException ex) {
+				throw new IllegalArgumentException(ex);
+			}
+		}
+
+		@Override
+		@SuppressWarnings("rawtypes")
+		public int compare(WritableComparable a, WritableComparable b) {
+			return ((StldJoinKey) a).joinKey.compareTo(((StldJoinKey) b).joinKey);
+		}
+	}
+
+	/** Partitions on the join key alone, so both sides of a key meet in one reducer. */
+	public static class KeyPartitioner<V> extends Partitioner<StldJoinKey, V> {
+
+		@Override
+		public int getPartition(StldJoinKey key, V value, int numPartitions) {
+			return (key.joinKey.hashCode() & Integer.MAX_VALUE) % numPartitions;
+		}
+	}
+
+	// the bytes after each vint length, as Text.Comparator compares them
+	private static int compareJoinKeys(byte[] b1, int s1, int n1, byte[] b2, int s2, int n2) {
+
+		int v1 = WritableUtils.decodeVIntSize(b1[s1]);
+		int v2 = WritableUtils.decodeVIntSize(b2[s2]);
+		return WritableComparator.compareBytes(b1, s1 + v1, n1 - v1, b2, s2 + v2, n2 - v2);
+	}
+
+}
@@ -0,0 +1,130 @@
+package com.asmath.mapreduce;
+
+import java.io.IOException;
+
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.StatusReporter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+
+/**
+ * Runs AsterMenuItemMapper or AsterExtractSTLDMapper unchanged for the reduce
+ * side menu join and turns each storeId|itemCode key they write into an
+ * StldJoinKey tagged with the side it came from. Use {@link Menu} and
+ * {@link Stld} with MultipleInputs.
+ */
+public class StldJoinMapper extends Mapper<LongWritable, Text, StldJoinKey, StldJoinValue> {
+
+	private final Mapper<LongWritable, Text, Text, Writable> mapper;
+	private final byte tag;
+
+	private final StldJoinKey joinKey = new StldJoinKey();
+	private final StldJoinValue joinValue = new StldJoinValue();
+	private Context outer;
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	protected StldJoinMapper(Mapper mapper, byte tag) {
+		this.mapper = mapper;
+		this.tag = tag;
+	}
+
+	public static class Menu extends StldJoinMapper {
+		public Menu() {
+			super(new AsterMenuItemMapper(), StldJoinKey.MENU);
+		}
+	}
+
+	public static class Stld extends StldJoinMapper {
+		public Stld() {
+			super(new AsterExtractSTLDMapper(), StldJoinKey.STLD);
+		}
+	}
+
+	@Override
+	public void run(Context context) throws IOException, InterruptedException {
+
+		outer = context;
+		mapper.run(mapper.new Context(context.getConfiguration(), context.getTaskAttemptID(), new JoinReader(),
+				new JoinWriter(), context.getOutputCommitter(), new JoinReporter(), context.getInputSplit()));
+	}
+
+	private class JoinReader extends RecordReader<LongWritable, Text> {
+
+		@Override
+		public void initialize(InputSplit split, TaskAttemptContext context) {
+		}
+
+		@Override
+		public boolean nextKeyValue() throws IOException, InterruptedException {
+			return outer.nextKeyValue();
+		}
+
+		@Override
+		public LongWritable getCurrentKey() throws IOException, InterruptedException {
+			return outer.getCurrentKey();
+		}
+
+		@Override
+		public Text getCurrentValue() throws IOException, InterruptedException {
+			return outer.getCurrentValue();
+		}
+
+		@Override
+		public float getProgress() throws IOException, InterruptedException {
+			return outer.getProgress();
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	private class JoinWriter extends RecordWriter<Text, Writable> {
+
+		@Override
+		public void write(Text key, Writable value) throws IOException, InterruptedException {
+
+			joinKey.set(key, tag);
+			joinValue.set(value);
+			outer.write(joinKey, joinValue);
+		}
+
+		@Override
+		public void close(TaskAttemptContext context) {
+		}
+	}
+
+	private class JoinReporter extends StatusReporter {
+
+		@Override
+		public Counter getCounter(Enum<?> name) {
+			return outer.getCounter(name);
+		}
+
+		@Override
+		public Counter getCounter(String group, String name) {
+			return outer.getCounter(group, name);
+		}
+
+		@Override
+		public void progress() {
+			outer.progress();
+		}
+
+		public float getProgress() {
+			return outer.getProgress();
+		}
+
+		@Override
+		public void setStatus(String status) {
+			outer.setStatus(status);
+		}
+	}
+
+}
@@ -0,0 +1,61 @@
+package com.asmath.mapreduce;
+
+import java.io.IOException;
+
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapreduce.Reducer;
+
+import com.asmath.stld.StldItemRecord;
+
+/**
+ * Joins the STLD items of one storeId|itemCode with the menu record sorted
+ * ahead of them and writes the rows AsterExtractSTLDMenuItemMapper writes
+ * map side. Items without a menu record get an empty product name.
+ */
+public class StldJoinReducer extends Reducer<StldJoinKey, StldJoinValue, NullWritable, Writable> {
+
+	private static final byte[] COMMA = { ',' };
+
+	private Text mapValue = new Text();
+	private String productName = "";
+	private byte[] productNameBytes = new byte[0];
+
+	@Override
+	public void reduce(StldJoinKey key, Iterable<StldJoinValue> values, Context context) throws IOException,
+			InterruptedException {
+
+		setProductName("");
+
+		// the key moves along with the values, so its tag says which side each value is from
+		for (StldJoinValue value : values) {
+			Writable row = value.get();
+
+			if (key.getTag() == StldJoinKey.MENU) {
+				// same name as the menu HashMap gave: field 4 of storeId,productId,takePrice,eatInPrice,longName
+				String[] fields = row.toString().split(",");
+				setProductName(fields.length > 4 ? fields[4] : "");
+			} else if (row instanceof StldItemRecord) {
+				StldItemRecord itemRecord = (StldItemRecord) row;
+				itemRecord.hasProductName = true;
+				itemRecord.productName.set(productName);
+				context.write(NullWritable.get(), itemRecord);
+			} else {
+				mapValue.set((Text) row);
+				mapValue.append(COMMA, 0, 1);
+				mapValue.append(productNameBytes, 0, productNameBytes.length);
+				context.write(NullWritable.get(), mapValue);
+			}
+		}
+	}
+
+	private void setProductName(String name) throws IOException {
+
+		if (!name.equals(productName)) {
+			productName = name;
+			productNameBytes = name.getBytes("UTF-8");
+		}
+	}
+
+}
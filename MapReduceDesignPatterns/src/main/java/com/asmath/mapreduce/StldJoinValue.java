@@ -0,0 +1,23 @@
+package com.asmath.mapreduce;
+
+import org.apache.hadoop.io.GenericWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+
+import com.asmath.stld.StldItemRecord;
+
+/**
+ * Value of the reduce side menu join: a menu row or STLD CSV row as Text, or
+ * an StldItemRecord when the extract is written in one of the record formats.
+ */
+public class StldJoinValue extends GenericWritable {
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static final Class<? extends Writable>[] TYPES = new Class[] { Text.class, StldItemRecord.class };
+
+	@Override
+	protected Class<? extends Writable>[] getTypes() {
+		return TYPES;
+	}
+
+}
@@ -0,0 +1,202 @@
+package com.asmath.mapreduce;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.net.URI;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.filecache.DistributedCache;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+import org.apache.hadoop.util.bloom.BloomFilter;
+import org.apache.hadoop.util.bloom.Key;
+import org.apache.hadoop.util.hash.Hash;
+
+import com.asmath.stld.StldItemRecord;
+import com.asmath.util.ByteSlice;
+
+/**
+ * Bloom filter over the storeId|productId keys of the menu, built by
+ * MenuBloomFilterDriver. Given one with -D asmath.stld.bloom.filter=&lt;path&gt;,
+ * AsterExtractSTLDMapper checks each item against it before building the
+ * output row and drops the items no menu can match, or with
+ * asmath.stld.bloom.unmatched=route writes them to the STLDUnmatched named
+ * output instead of the map output. A false positive only means an item is
+ * kept that the join will not match.
+ *
+ * Routing needs a single threaded mapper: the workers of a
+ * MultithreadedStldMapper would each open their own writer on the task's
+ * STLDUnmatched file, so the driver refuses route with
+ * asmath.stld.mapper.threads above 1.
+ */
+public class StldMenuFilter {
+
+	public static final String FILTER = "asmath.stld.bloom.filter";
+	public static final String FP_RATE = "asmath.stld.bloom.fp.rate";
+	public static final float DEFAULT_FP_RATE = 0.01f;
+
+	public static final String UNMATCHED = "asmath.stld.bloom.unmatched";
+	public static final String SKIP = "skip";
+	public static final String ROUTE = "route";
+
+	public static enum Counters {
+		ITEMS_MATCHED, ITEMS_SKIPPED, ITEMS_ROUTED, BYTES_SAVED
+	}
+
+	private static final byte PIPE = '|';
+
+	private final BloomFilter filter;
+	private final Key key = new Key();
+	// Key hashes its whole array, so keep one array per key length
+	private byte[][] keyBuffers = new byte[32][];
+
+	private Counter itemsMatched;
+	private Counter itemsUnmatched;
+	private Counter bytesSaved;
+	private MultipleOutputs<Text, Writable> unmatchedOutputs = null;
+
+	public StldMenuFilter(BloomFilter filter) {
+		this.filter = filter;
+	}
+
+	public static boolean isEnabled(Configuration conf) {
+		return conf.get(FILTER) != null;
+	}
+
+	public static boolean isRouted(Configuration conf) {
+		return ROUTE.equalsIgnoreCase(conf.get(UNMATCHED, SKIP));
+	}
+
+	/** Null when the job can run the filter, else why not. */
+	public static String checkThreads(Configuration conf) {
+
+		if (isEnabled(conf) && isRouted(conf) && MultithreadedStldMapper.getThreads(conf) > 1) {
+			return UNMATCHED + "=" + ROUTE + " needs " + MultithreadedStldMapper.THREADS + "=1";
+		}
+		return null;
+	}
+
+	/** Filter sized for the expected number of keys at the asmath.stld.bloom.fp.rate false positive rate. */
+	public static BloomFilter newFilter(Configuration conf, long expectedKeys) {
+
+		double fpRate = conf.getFloat(FP_RATE, DEFAULT_FP_RATE);
+		double keys = Math.max(expectedKeys, 1);
+
+		int vectorSize = (int) Math.ceil(-keys * Math.log(fpRate) / (Math.log(2) * Math.log(2)));
+		int nbHash = Math.max(1, (int) Math.round(vectorSize / keys * Math.log(2)));
+		return new BloomFilter(vectorSize, nbHash, Hash.MURMUR_HASH);
+	}
+
+	/**
+	 * Ships the filter to the mappers and, when unmatched items are routed,
+	 * adds the STLDUnmatched named output with the job's output format and
+	 * value class. Call after the output classes are set.
+	 */
+	public static void configure(Job job) throws IOException, ClassNotFoundException {
+
+		Configuration conf = job.getConfiguration();
+		DistributedCache.addCacheFile(new Path(conf.get(FILTER)).toUri(), conf);
+
+		if (isRouted(conf)) {
+			MultipleOutputs.addNamedOutput(job, StldNamedOutputs.STLD_UNMATCHED, job.getOutputFormatClass(),
+					Text.class, job.getOutputValueClass());
+		}
+	}
+
+	/** Reads the filter from the task's cache files. */
+	public static StldMenuFilter open(TaskInputOutputContext<?, ?, Text, Writable> context) throws IOException {
+
+		Configuration conf = context.getConfiguration();
+		if (checkThreads(conf) != null) {
+			throw new IOException(checkThreads(conf));
+		}
+		String name = new Path(conf.get(FILTER)).getName();
+		URI[] cacheFiles = DistributedCache.getCacheFiles(conf);
+
+		for (int i = 0; cacheFiles != null && i < cacheFiles.length; i++) {
+			Path cacheFile = new Path(cacheFiles[i].getPath());
+			if (cacheFile.getName().equals(name)) {
+				BloomFilter filter = new BloomFilter();
+				DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(
+						cacheFile.toString())));
+				try {
+					filter.readFields(in);
+				} finally {
+					in.close();
+				}
+
+				StldMenuFilter menuFilter = new StldMenuFilter(filter);
+				menuFilter.itemsMatched = context.getCounter(Counters.ITEMS_MATCHED);
+				menuFilter.bytesSaved = context.getCounter(Counters.BYTES_SAVED);
+				if (isRouted(conf)) {
+					menuFilter.itemsUnmatched = context.getCounter(Counters.ITEMS_ROUTED);
+					menuFilter.unmatchedOutputs = new MultipleOutputs<Text, Writable>(context);
+				} else {
+					menuFilter.itemsUnmatched = context.getCounter(Counters.ITEMS_SKIPPED);
+				}
+				return menuFilter;
+			}
+		}
+		throw new IOException("Bloom filter " + name + " is not in the cache files");
+	}
+
+	public boolean mightContain(ByteSlice storeId, ByteSlice productId) {
+
+		int len = storeId.getLength() + 1 + productId.getLength();
+		if (len >= keyBuffers.length) {
+			byte[][] grown = new byte[len + 1][];
+			System.arraycopy(keyBuffers, 0, grown, 0, keyBuffers.length);
+			keyBuffers = grown;
+		}
+		byte[] bytes = keyBuffers[len];
+		if (bytes == null) {
+			bytes = keyBuffers[len] = new byte[len];
+		}
+
+		System.arraycopy(storeId.getBytes(), 0, bytes, 0, storeId.getLength());
+		bytes[storeId.getLength()] = PIPE;
+		System.arraycopy(productId.getBytes(), 0, bytes, storeId.getLength() + 1, productId.getLength());
+
+		key.set(bytes, 1.0);
+		return filter.membershipTest(key);
+	}
+
+	/**
+	 * Checks the item and counts it. Unmatched items count the CSV key and
+	 * row bytes kept out of the map output.
+	 */
+	public boolean matches(StldItemRecord itemRecord) {
+
+		if (mightContain(itemRecord.storeId, itemRecord.itemCode)) {
+			itemsMatched.increment(1);
+			return true;
+		}
+		itemsUnmatched.increment(1);
+		bytesSaved.increment(itemRecord.storeId.getLength() + 1 + itemRecord.itemCode.getLength()
+				+ itemRecord.csvLength());
+		return false;
+	}
+
+	public boolean isRouted() {
+		return unmatchedOutputs != null;
+	}
+
+	public void route(Text key, Writable value) throws IOException, InterruptedException {
+		StldNamedOutputs.write(unmatchedOutputs, StldNamedOutputs.STLD_UNMATCHED, key, value);
+	}
+
+	public void close() throws IOException, InterruptedException {
+
+		if (unmatchedOutputs != null) {
+			unmatchedOutputs.close();
+		}
+	}
+
+}
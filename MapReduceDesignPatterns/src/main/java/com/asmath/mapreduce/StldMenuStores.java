@@ -0,0 +1,179 @@
+package com.asmath.mapreduce;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+
+import com.asmath.util.ByteSlice;
+import com.asmath.util.ProductNameMap;
+
+/**
+ * Menus loaded a store at a time, with -D asmath.menu.lazy=true. A menu cache
+ * file whose name carries a store, e.g. POS_MenuItem_US_15960_20150226.xml,
+ * is only parsed when a record of that store is looked up or the split's own
+ * file name carries the store, so a task holds the menus of the stores it
+ * sees rather than of every store shipped. The tables of the last
+ * asmath.menu.lazy.stores stores are kept, least recently used dropped first.
+ * They are not put in the JvmCache, which would keep a dropped table alive,
+ * so the stores bound the heap the menus take; a dropped store seen again is
+ * parsed again. Files whose name carries no store are left to the caller to
+ * load up front.
+ */
+public class StldMenuStores {
+
+	public static final String LAZY = "asmath.menu.lazy";
+	public static final String MAX_STORES = "asmath.menu.lazy.stores";
+
+	public static enum Counters {
+		STORE_MENUS_LOADED, STORE_MENUS_DROPPED, STORES_WITHOUT_MENU
+	}
+
+	/** Parses one menu cache file into the names. */
+	public static abstract class MenuParser {
+
+		public abstract void parse(File menuFile, ProductNameMap names) throws Exception;
+	}
+
+	private final TaskInputOutputContext<?, ?, ?, ?> context;
+	private final MenuParser parser;
+	private final HashMap<String, List<URI>> filesByStore = new HashMap<String, List<URI>>();
+	private final LinkedHashMap<String, ProductNameMap> stores;
+	private final Counter storesWithoutMenu;
+
+	// the store of the previous lookup, records come grouped by store
+	private byte[] lastStore = null;
+	private ProductNameMap lastNames = null;
+
+	private StldMenuStores(TaskInputOutputContext<?, ?, ?, ?> context, MenuParser parser) {
+
+		final int maxStores = Math.max(context.getConfiguration().getInt(MAX_STORES, 8), 1);
+		final Counter dropped = context.getCounter(Counters.STORE_MENUS_DROPPED);
+
+		this.context = context;
+		this.parser = parser;
+		this.storesWithoutMenu = context.getCounter(Counters.STORES_WITHOUT_MENU);
+		this.stores = new LinkedHashMap<String, ProductNameMap>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, ProductNameMap> eldest) {
+				if (size() > maxStores) {
+					dropped.increment(1);
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	public static boolean isEnabled(Configuration conf) {
+		return conf.getBoolean(LAZY, false);
+	}
+
+	public static StldMenuStores open(TaskInputOutputContext<?, ?, ?, ?> context, MenuParser parser) {
+		return new StldMenuStores(context, parser);
+	}
+
+	/**
+	 * Store carried by a file name, the first part between underscores that is
+	 * all digits, null when there is none.
+	 */
+	public static String storeOf(String fileName) {
+
+		int start = 0;
+		while (start < fileName.length()) {
+			int end = fileName.indexOf('_', start);
+			if (end < 0) {
+				end = fileName.length();
+			}
+			int idx = start;
+			while (idx < end && fileName.charAt(idx) >= '0' && fileName.charAt(idx) <= '9') {
+				idx++;
+			}
+			if (idx == end && end > start) {
+				return fileName.substring(start, end);
+			}
+			start = end + 1;
+		}
+		return null;
+	}
+
+	/** Takes the menu file if its name carries a store, false when the caller loads it. */
+	public boolean add(URI cacheFile) {
+
+		String store = storeOf(new Path(cacheFile.getPath()).getName());
+		if (store == null) {
+			return false;
+		}
+
+		List<URI> files = filesByStore.get(store);
+		if (files == null) {
+			files = new ArrayList<URI>();
+			filesByStore.put(store, files);
+		}
+		files.add(cacheFile);
+		return true;
+	}
+
+	/** Names of the store's products, loaded on first use; null when no menu file carries the store. */
+	public ProductNameMap get(String storeId) throws IOException {
+
+		if (!stores.containsKey(storeId)) {
+			stores.put(storeId, load(storeId));
+		}
+		return stores.get(storeId);
+	}
+
+	public String getName(String storeId, String productId) throws IOException {
+
+		ProductNameMap names = get(storeId);
+		return names == null ? null : names.get(storeId, productId);
+	}
+
+	public String getName(ByteSlice storeId, ByteSlice productId) throws IOException {
+
+		if (lastStore == null || !storeId.equalsBytes(lastStore)) {
+			lastNames = get(storeId.toString());
+			lastStore = Arrays.copyOf(storeId.getBytes(), storeId.getLength());
+		}
+		return lastNames == null ? null : lastNames.get(storeId, productId);
+	}
+
+	private ProductNameMap load(String storeId) throws IOException {
+
+		List<URI> files = filesByStore.get(storeId);
+		if (files == null) {
+			storesWithoutMenu.increment(1);
+			return null;
+		}
+
+		ProductNameMap names = new ProductNameMap();
+		for (URI file : files) {
+			try {
+				parser.parse(localFile(file), names);
+			} catch (IOException ex) {
+				throw ex;
+			} catch (Exception ex) {
+				throw new IOException("Error loading menu file " + file, ex);
+			}
+		}
+		context.getCounter(Counters.STORE_MENUS_LOADED).increment(1);
+		return names;
+	}
+
+	private static File localFile(URI cacheFile) {
+		return new File(new Path(cacheFile.getPath()).toString());
+	}
+
+}
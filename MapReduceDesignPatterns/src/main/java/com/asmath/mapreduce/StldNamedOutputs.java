@@ -0,0 +1,37 @@
+package com.asmath.mapreduce;
+
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+
+/**
+ * Named outputs of the combined menu and STLD extract. When enabled the menu
+ * and STLD mappers write through MultipleOutputs rather than the task output,
+ * each named output into its own directory under the job output, e.g.
+ * <code>MenuItemPrice/part-m-00000</code>.
+ */
+public class StldNamedOutputs {
+
+	public static final String ENABLED = "asmath.stld.named.outputs";
+
+	/** storeId|productId|takeoutPrice|eatinPrice|longName, as MenuItemParser writes it. */
+	public static final String MENU_ITEM_PRICE = "MenuItemPrice";
+	/** storeId|itemCode key and item row, as AsterExtractSTLDDriver writes it. */
+	public static final String STLD_ITEM = "STLDItem";
+	/** Item row with the product name, as AsterExtractSTLDMenuItemDriver writes it. */
+	public static final String STLD_MENU_ITEM = "STLDMenuItem";
+	/** Items the menu Bloom filter rules out, when StldMenuFilter routes them. */
+	public static final String STLD_UNMATCHED = "STLDUnmatched";
+
+	public static boolean isEnabled(Configuration conf) {
+		return conf.getBoolean(ENABLED, false);
+	}
+
+	public static <K, V> void write(MultipleOutputs<?, ?> outputs, String name, K key, V value) throws IOException,
+			InterruptedException {
+
+		outputs.write(name, key, value, name + "/part");
+	}
+
+}
@@ -0,0 +1,92 @@
+package com.asmath.mapreduce;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.ql.io.orc.CompressionKind;
+import org.apache.hadoop.hive.ql.io.orc.OrcFile;
+import org.apache.hadoop.hive.ql.io.orc.Writer;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorFactory;
+import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+
+import com.asmath.stld.StldItemRecord;
+
+/**
+ * Writes StldItemRecord values to ORC files readable by a Hive table of
+ *
+ * <pre>
+ * business_date date, store_id int, order_key string, sale_type string, pod string,
+ * kind string, order_timestamp timestamp, order_total_amount bigint, item_code int,
+ * item_type string, item_qty int, item_level int, item_total_price bigint, product_name string
+ * </pre>
+ *
+ * Amounts are in ten-thousandths (StldItemRecord.TYPED_AMOUNT_SCALE), so the
+ * three decimal currencies are kept exactly; divide by 10000 for the amount.
+ * ORC keeps min/max statistics per stripe and per row group for every column,
+ * so filters on business_date, store_id and item_code skip data when
+ * hive.optimize.index.filter is on. Keys are ignored.
+ */
+public class StldOrcOutputFormat extends FileOutputFormat<Writable, StldItemRecord> {
+
+	public static final String COMPRESS = "asmath.stld.orc.compress";
+	public static final String STRIPE_SIZE = "asmath.stld.orc.stripe.size";
+	public static final String ROW_INDEX_STRIDE = "asmath.stld.orc.row.index.stride";
+
+	public static final String DEFAULT_COMPRESS = "ZLIB";
+	public static final long DEFAULT_STRIPE_SIZE = 64L * 1024 * 1024;
+	public static final int DEFAULT_ROW_INDEX_STRIDE = 10000;
+
+	public static final List<String> COLUMN_NAMES = Arrays.asList("business_date", "store_id", "order_key",
+			"sale_type", "pod", "kind", "order_timestamp", "order_total_amount", "item_code", "item_type", "item_qty",
+			"item_level", "item_total_price", "product_name");
+
+	public static StructObjectInspector getObjectInspector() {
+
+		List<ObjectInspector> inspectors = new ArrayList<ObjectInspector>();
+
+		inspectors.add(PrimitiveObjectInspectorFactory.writableDateObjectInspector);
+		inspectors.add(PrimitiveObjectInspectorFactory.writableIntObjectInspector);
+		inspectors.add(PrimitiveObjectInspectorFactory.writableStringObjectInspector);
+		inspectors.add(PrimitiveObjectInspectorFactory.writableStringObjectInspector);
+		inspectors.add(PrimitiveObjectInspectorFactory.writableStringObjectInspector);
+		inspectors.add(PrimitiveObjectInspectorFactory.writableStringObjectInspector);
+		inspectors.add(PrimitiveObjectInspectorFactory.writableTimestampObjectInspector);
+		inspectors.add(PrimitiveObjectInspectorFactory.writableLongObjectInspector);
+		inspectors.add(PrimitiveObjectInspectorFactory.writableIntObjectInspector);
+		inspectors.add(PrimitiveObjectInspectorFactory.writableStringObjectInspector);
+		inspectors.add(PrimitiveObjectInspectorFactory.writableIntObjectInspector);
+		inspectors.add(PrimitiveObjectInspectorFactory.writableIntObjectInspector);
+		inspectors.add(PrimitiveObjectInspectorFactory.writableLongObjectInspector);
+		inspectors.add(PrimitiveObjectInspectorFactory.writableStringObjectInspector);
+
+		return ObjectInspectorFactory.getStandardStructObjectInspector(COLUMN_NAMES, inspectors);
+	}
+
+	@Override
+	public RecordWriter<Writable, StldItemRecord> getRecordWriter(TaskAttemptContext context) throws IOException,
+			InterruptedException {
+
+		Configuration conf = context.getConfiguration();
+		Path file = getDefaultWorkFile(context, ".orc");
+
+		Writer writer = OrcFile.createWriter(file, OrcFile.writerOptions(conf)
+				.fileSystem(file.getFileSystem(conf))
+				.inspector(getObjectInspector())
+				.compress(CompressionKind.valueOf(conf.get(COMPRESS, DEFAULT_COMPRESS).toUpperCase()))
+				.stripeSize(conf.getLong(STRIPE_SIZE, DEFAULT_STRIPE_SIZE))
+				.rowIndexStride(conf.getInt(ROW_INDEX_STRIDE, DEFAULT_ROW_INDEX_STRIDE)));
+
+		return new StldOrcRecordWriter(writer);
+	}
+
+}
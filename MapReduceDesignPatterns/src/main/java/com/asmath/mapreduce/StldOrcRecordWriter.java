@@ -0,0 +1,98 @@
+package com.asmath.mapreduce;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.text.ParseException;
+
+import org.apache.hadoop.hive.ql.io.orc.Writer;
+import org.apache.hadoop.hive.serde2.io.DateWritable;
+import org.apache.hadoop.hive.serde2.io.TimestampWritable;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+
+import com.asmath.stld.StldItemRecord;
+import com.asmath.util.ByteSlice;
+import com.asmath.util.StldDateFormatter;
+
+/**
+ * Adds StldItemRecord values as rows of the StldOrcOutputFormat struct. The
+ * row and its writables, other than the date, are reused for every record.
+ */
+public class StldOrcRecordWriter extends RecordWriter<Writable, StldItemRecord> {
+
+	private final Writer writer;
+	private final StldDateFormatter dateFormatter = StldDateFormatter.getInstance();
+
+	private final IntWritable storeId = new IntWritable();
+	private final Text orderKey = new Text();
+	private final Text saleType = new Text();
+	private final Text pod = new Text();
+	private final Text kind = new Text();
+	private final Timestamp orderTime = new Timestamp(0);
+	private final TimestampWritable orderTimestamp = new TimestampWritable();
+	private final LongWritable orderTotalAmount = new LongWritable();
+	private final IntWritable itemCode = new IntWritable();
+	private final Text itemType = new Text();
+	private final IntWritable itemQty = new IntWritable();
+	private final IntWritable itemLevel = new IntWritable();
+	private final LongWritable itemTotalPrice = new LongWritable();
+	private final Text productName = new Text();
+
+	private final Object[] row = { null, storeId, orderKey, saleType, pod, kind, orderTimestamp,
+			orderTotalAmount, itemCode, itemType, itemQty, itemLevel, itemTotalPrice, productName };
+
+	private static final int BUSINESS_DATE = 0;
+	private static final int PRODUCT_NAME = 13;
+
+	public StldOrcRecordWriter(Writer writer) {
+		this.writer = writer;
+	}
+
+	@Override
+	public void write(Writable key, StldItemRecord value) throws IOException, InterruptedException {
+
+		try {
+			// hive 0.13 date statistics keep the DateWritable they were given as min/max, so it can't be reused
+			row[BUSINESS_DATE] = new DateWritable(value.businessDateEpochDay(dateFormatter));
+			orderTime.setTime(value.orderTimestampMillis(dateFormatter));
+			orderTimestamp.set(orderTime);
+		} catch (ParseException ex) {
+			throw new IOException(ex);
+		}
+
+		storeId.set(value.storeId.parseInt());
+		set(orderKey, value.orderKey);
+		set(saleType, value.saleType);
+		set(pod, value.pod);
+		set(kind, value.kind);
+		orderTotalAmount.set(value.orderTotalScaled());
+		itemCode.set(value.itemCode.parseInt());
+		set(itemType, value.itemType);
+		itemQty.set(value.itemQty);
+		itemLevel.set(value.itemLevelValue());
+		itemTotalPrice.set(value.itemTotalScaled());
+
+		if (value.hasProductName) {
+			set(productName, value.productName);
+			row[PRODUCT_NAME] = productName;
+		} else {
+			row[PRODUCT_NAME] = null;
+		}
+
+		writer.addRow(row);
+	}
+
+	@Override
+	public void close(TaskAttemptContext context) throws IOException, InterruptedException {
+		writer.close();
+	}
+
+	private static void set(Text text, ByteSlice slice) {
+		text.set(slice.getBytes(), 0, slice.getLength());
+	}
+
+}
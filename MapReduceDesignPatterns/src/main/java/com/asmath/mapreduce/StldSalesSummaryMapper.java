@@ -0,0 +1,147 @@
+package com.asmath.mapreduce;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Mapper;
+
+import com.asmath.stld.StldItem;
+import com.asmath.stld.StldItemHandler;
+import com.asmath.stld.StldParser;
+import com.asmath.stld.StldParsers;
+import com.asmath.stld.StldRowEncoder;
+import com.asmath.stld.StldSalesSummary;
+import com.asmath.util.ByteSlice;
+import com.asmath.util.Money;
+import com.asmath.util.StldDateFormatter;
+
+/**
+ * Sums the Paid TRX_Sale orders of each storeId,businessDate,POD,saleType in
+ * the mapper, the tranCount/tranTotalAmount logic the STLD mappers carry
+ * commented out. Sums are kept in a hash of at most
+ * asmath.stld.summary.max.entries keys, written out whenever it is full and
+ * at cleanup, so a task writes a handful of records per store rather than a
+ * row per item. Orders are read with a streaming engine, bytes unless
+ * asmath.stld.parser.engine asks for stax. Subclasses summarize by other keys
+ * through {@link #appendKey(StldItem, StldRowEncoder)}.
+ */
+public class StldSalesSummaryMapper extends Mapper<LongWritable, Text, Text, StldSalesSummary> implements
+		StldItemHandler {
+
+	public static final String MAX_ENTRIES = "asmath.stld.summary.max.entries";
+	public static final int DEFAULT_MAX_ENTRIES = 10000;
+
+	private static final byte COMMA = ',';
+	private static final byte[] MANAGER = { 'M', 'a', 'n', 'a', 'g', 'e', 'r' };
+	private static final byte[] CREW = { 'C', 'r', 'e', 'w' };
+
+	private StldParser stldParser = null;
+	private StldDateFormatter dateFormatter = StldDateFormatter.getInstance();
+	private StldRowEncoder keyEncoder = new StldRowEncoder();
+	protected ByteSlice storeId = new ByteSlice();
+	protected ByteSlice businessDate = new ByteSlice();
+
+	private HashMap<Text, StldSalesSummary> summaries = new HashMap<Text, StldSalesSummary>();
+	private Text mapKey = new Text();
+	private int maxEntries = DEFAULT_MAX_ENTRIES;
+	private Context taskContext = null;
+
+	@Override
+	public void setup(Context context) {
+
+		try {
+			Configuration conf = context.getConfiguration();
+			String engine = conf.get(StldParsers.ENGINE, StldParsers.BYTES);
+			if ( StldParsers.isDom(engine) ) {
+				engine = StldParsers.BYTES;
+			}
+			stldParser = StldParsers.newParser(engine);
+			maxEntries = conf.getInt(MAX_ENTRIES, DEFAULT_MAX_ENTRIES);
+			taskContext = context;
+		} catch (Exception ex) {
+			System.err.println("Error in initializing StldSalesSummaryMapper:");
+			System.err.println(ex.toString());
+			System.exit(8);
+		}
+	}
+
+	@Override
+	public void map(LongWritable key, Text value, Context context) throws IOException, InterruptedException {
+
+		try {
+			stldParser.parse(value.getBytes(), 0, value.getLength(), this);
+		} catch (Exception ex) {
+			System.err.println("Error in StldSalesSummaryMapper:");
+			ex.printStackTrace(System.err);
+			System.exit(8);
+		}
+	}
+
+	@Override
+	public void cleanup(Context context) throws IOException, InterruptedException {
+		flush(context);
+	}
+
+	@Override
+	public void tld(StldItem item) throws IOException, InterruptedException {
+
+		storeId.set(item.storeId);
+		try {
+			dateFormatter.formatBusinessDate(item.businessDate, businessDate);
+		} catch (ParseException ex) {
+			throw new IOException(ex);
+		}
+	}
+
+	@Override
+	public void order(StldItem item) throws IOException, InterruptedException {
+
+		if ( !appendKey(item, keyEncoder.reset()) ) {
+			return;
+		}
+		keyEncoder.copyTo(mapKey);
+
+		long netAmount = Money.subtract(Money.parse(item.totalAmount, Money.CURRENCY_SCALE),
+				Money.parse(item.nonProductAmount, Money.CURRENCY_SCALE));
+
+		StldSalesSummary summary = summaries.get(mapKey);
+		if ( summary == null ) {
+			if ( summaries.size() >= maxEntries ) {
+				flush(taskContext);
+			}
+			summary = new StldSalesSummary();
+			summaries.put(new Text(mapKey), summary);
+		}
+
+		if ( netAmount != 0 || !(item.kind.contains(MANAGER) || item.kind.contains(CREW)) ) {
+			summary.tranCount++;
+		}
+		summary.tranTotal = Money.add(summary.tranTotal, netAmount);
+	}
+
+	@Override
+	public void item(StldItem item) {
+	}
+
+	/** Appends the summary key of the order, false to leave the order out. */
+	protected boolean appendKey(StldItem item, StldRowEncoder key) throws IOException {
+
+		key.append(storeId).append(COMMA).append(businessDate).append(COMMA).append(item.pod).append(COMMA)
+				.append(item.saleType);
+		return true;
+	}
+
+	private void flush(Context context) throws IOException, InterruptedException {
+
+		for (Map.Entry<Text, StldSalesSummary> entry : summaries.entrySet()) {
+			context.write(entry.getKey(), entry.getValue());
+		}
+		summaries.clear();
+	}
+
+}
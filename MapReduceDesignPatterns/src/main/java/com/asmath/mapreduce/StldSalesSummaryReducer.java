@@ -0,0 +1,58 @@
+package com.asmath.mapreduce;
+
+import java.io.IOException;
+
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Reducer;
+
+import com.asmath.stld.StldItemRecord;
+import com.asmath.stld.StldSalesSummary;
+
+/**
+ * Adds up the StldSalesSummary of each key and writes the row
+ * <code>storeId,businessDate,pod,saleType,tranCount,tranTotalAmount</code>,
+ * the amount with the decimals of asmath.stld.amount.scale.
+ */
+public class StldSalesSummaryReducer extends Reducer<Text, StldSalesSummary, NullWritable, Text> {
+
+	private StldSalesSummary total = new StldSalesSummary();
+	private Text mapValue = new Text();
+	private int amountScale = StldItemRecord.AMOUNT_SCALE;
+
+	@Override
+	public void setup(Context context) {
+		amountScale = StldItemRecord.getAmountScale(context.getConfiguration());
+	}
+
+	@Override
+	public void reduce(Text key, Iterable<StldSalesSummary> values, Context context) throws IOException,
+			InterruptedException {
+
+		total.clear();
+		for (StldSalesSummary value : values) {
+			total.add(value);
+		}
+
+		mapValue.set(new StringBuffer(key.toString()).append(',').append(total.toString(amountScale)).toString());
+		context.write(NullWritable.get(), mapValue);
+	}
+
+	/** Adds up the summaries of several map outputs without changing the key. */
+	public static class Combiner extends Reducer<Text, StldSalesSummary, Text, StldSalesSummary> {
+
+		private StldSalesSummary total = new StldSalesSummary();
+
+		@Override
+		public void reduce(Text key, Iterable<StldSalesSummary> values, Context context) throws IOException,
+				InterruptedException {
+
+			total.clear();
+			for (StldSalesSummary value : values) {
+				total.add(value);
+			}
+			context.write(key, total);
+		}
+	}
+
+}
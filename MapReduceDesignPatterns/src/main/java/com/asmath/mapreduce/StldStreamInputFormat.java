@@ -0,0 +1,60 @@
+package com.asmath.mapreduce;
+
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+
+/**
+ * Line input format for STLD files whose lines are too big to hold twice. The
+ * lines are split the way TextInputFormat splits them, but each value is a
+ * {@link RecordInputStream} over the line instead of a Text holding it, so a
+ * streaming engine parses the line while it is read and a record costs the
+ * reader's buffer whatever its size. The key is the line's file offset.
+ *
+ * Drivers switch to it with -D asmath.stld.stream.input=true; the mappers
+ * take it with -D asmath.stld.parser.engine=stax and read the line into a
+ * Text for the other engines.
+ *
+ * A value is only valid until the reader moves to the next line, so it
+ * cannot be queued for a MultithreadedStldMapper worker: the driver refuses
+ * the format with asmath.stld.mapper.threads above 1.
+ */
+public class StldStreamInputFormat extends FileInputFormat<LongWritable, RecordInputStream> {
+
+	public static final String ENABLED = "asmath.stld.stream.input";
+
+	public static boolean isEnabled(Configuration conf) {
+		return conf.getBoolean(ENABLED, false);
+	}
+
+	/** Null when a job reading the format can run its mapper, else why not. */
+	public static String checkThreads(Configuration conf) {
+
+		if (MultithreadedStldMapper.getThreads(conf) > 1) {
+			return ENABLED + "=true needs " + MultithreadedStldMapper.THREADS + "=1";
+		}
+		return null;
+	}
+
+	@Override
+	public RecordReader<LongWritable, RecordInputStream> createRecordReader(InputSplit split,
+			TaskAttemptContext context) throws IOException, InterruptedException {
+
+		return new StldStreamRecordReader();
+	}
+
+	@Override
+	protected boolean isSplitable(JobContext context, Path file) {
+
+		return new CompressionCodecFactory(context.getConfiguration()).getCodec(file) == null;
+	}
+
+}
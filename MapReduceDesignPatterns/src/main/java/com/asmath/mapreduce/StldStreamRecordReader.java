@@ -0,0 +1,194 @@
+package com.asmath.mapreduce;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+
+/**
+ * Reads the lines of a byte range as {@link RecordInputStream}s. A line
+ * belongs to the split it starts in, as with LineRecordReader: a split that
+ * does not start the file skips its first, partial line and a split reads
+ * the line starting at its end. The bytes of a line go from the read buffer
+ * to the mapper as it asks for them and are never copied into a record.
+ */
+public class StldStreamRecordReader extends RecordReader<LongWritable, RecordInputStream> {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private long start;
+	private long end;
+	// file offset of buffer[bufferPos]
+	private long pos;
+
+	private InputStream in;
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+	private int bufferLength = 0;
+	private int bufferPos = 0;
+
+	private final LongWritable key = new LongWritable();
+	private final RecordInputStream value = new RecordInputStream(this);
+	private boolean inRecord = false;
+
+	@Override
+	public void initialize(InputSplit genericSplit, TaskAttemptContext context) throws IOException,
+			InterruptedException {
+
+		FileSplit split = FileSplits.getFileSplit(genericSplit);
+		Configuration conf = context.getConfiguration();
+
+		Path file = split.getPath();
+		FileSystem fs = file.getFileSystem(conf);
+		FSDataInputStream fileIn = fs.open(file);
+		CompressionCodec codec = new CompressionCodecFactory(conf).getCodec(file);
+
+		if (codec != null) {
+			in = codec.createInputStream(fileIn);
+			start = 0;
+			end = Long.MAX_VALUE;
+		} else {
+			start = split.getStart();
+			end = start + split.getLength();
+			fileIn.seek(start);
+			in = fileIn;
+		}
+		pos = start;
+
+		// the first line is the previous split's
+		if (start != 0) {
+			inRecord = true;
+			skipRecord();
+		}
+	}
+
+	@Override
+	public boolean nextKeyValue() throws IOException, InterruptedException {
+
+		skipRecord();
+		if (pos > end || !fill()) {
+			return false;
+		}
+		key.set(pos);
+		inRecord = true;
+		return true;
+	}
+
+	/** Next byte of the current line, -1 at its end. */
+	int readRecord() throws IOException {
+
+		if (!inRecord || !fill()) {
+			inRecord = false;
+			return -1;
+		}
+		pos++;
+		int b = buffer[bufferPos++] & 0xff;
+		if (b == '\n') {
+			inRecord = false;
+			return -1;
+		}
+		return b;
+	}
+
+	/** Copies bytes of the current line, at most the rest of the buffer; -1 at its end. */
+	int readRecord(byte[] bytes, int offset, int length) throws IOException {
+
+		if (length == 0) {
+			return 0;
+		}
+		if (!inRecord || !fill()) {
+			inRecord = false;
+			return -1;
+		}
+
+		int count = Math.min(length, bufferLength - bufferPos);
+		for (int idx = 0; idx < count; idx++) {
+			if (buffer[bufferPos + idx] == '\n') {
+				// the end of line is consumed, not returned
+				System.arraycopy(buffer, bufferPos, bytes, offset, idx);
+				bufferPos += idx + 1;
+				pos += idx + 1;
+				inRecord = false;
+				return idx == 0 ? -1 : idx;
+			}
+		}
+		System.arraycopy(buffer, bufferPos, bytes, offset, count);
+		bufferPos += count;
+		pos += count;
+		return count;
+	}
+
+	int availableInRecord() {
+		return inRecord ? bufferLength - bufferPos : 0;
+	}
+
+	/** Reads past the end of the current line. */
+	void skipRecord() throws IOException {
+
+		while (inRecord && fill()) {
+			int idx = bufferPos;
+			while (idx < bufferLength && buffer[idx] != '\n') {
+				idx++;
+			}
+			if (idx < bufferLength) {
+				inRecord = false;
+				idx++;
+			}
+			pos += idx - bufferPos;
+			bufferPos = idx;
+		}
+		inRecord = false;
+	}
+
+	// false at the end of the input
+	private boolean fill() throws IOException {
+
+		if (bufferPos < bufferLength) {
+			return true;
+		}
+		bufferLength = in.read(buffer, 0, buffer.length);
+		bufferPos = 0;
+		if (bufferLength <= 0) {
+			bufferLength = 0;
+			return false;
+		}
+		return true;
+	}
+
+	@Override
+	public LongWritable getCurrentKey() throws IOException, InterruptedException {
+		return key;
+	}
+
+	@Override
+	public RecordInputStream getCurrentValue() throws IOException, InterruptedException {
+		return value;
+	}
+
+	@Override
+	public float getProgress() throws IOException, InterruptedException {
+
+		if (end == Long.MAX_VALUE || end == start) {
+			return 0.0f;
+		}
+		return Math.min(1.0f, (pos - start) / (float) (end - start));
+	}
+
+	@Override
+	public void close() throws IOException {
+
+		if (in != null) {
+			in.close();
+		}
+	}
+
+}
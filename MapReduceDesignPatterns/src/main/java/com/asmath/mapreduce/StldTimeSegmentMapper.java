@@ -0,0 +1,75 @@
+package com.asmath.mapreduce;
+
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.Counter;
+
+import com.asmath.stld.StldItem;
+import com.asmath.stld.StldRowEncoder;
+import com.asmath.util.TimeSegments;
+
+/**
+ * Summarizes Paid orders per storeId,businessDate,segmentId, the segment
+ * being the TimeSegment.psv interval of the order Timestamp's time of day for
+ * the store's territory. TLDs without gdwTerrCd use
+ * asmath.stld.segment.territory. Orders of territories without segments, or
+ * with a Timestamp outside every segment, are counted and left out.
+ */
+public class StldTimeSegmentMapper extends StldSalesSummaryMapper {
+
+	public static final String SEGMENT_FILE = "asmath.stld.segment.file";
+	public static final String SEGMENT_TYPE = "asmath.stld.segment.type";
+	public static final String DEFAULT_SEGMENT_TYPE = "Half Hourly";
+	public static final String TERRITORY = "asmath.stld.segment.territory";
+	public static final int DEFAULT_TERRITORY = 840;
+
+	public static enum Counters {
+		ORDERS_WITHOUT_SEGMENT
+	}
+
+	private static final byte COMMA = ',';
+
+	private TimeSegments segments = null;
+	private TimeSegments.Intervals intervals = null;
+	private int defaultTerritory = DEFAULT_TERRITORY;
+	private Counter ordersWithoutSegment = null;
+
+	@Override
+	public void setup(Context context) {
+
+		super.setup(context);
+
+		try {
+			Configuration conf = context.getConfiguration();
+			defaultTerritory = conf.getInt(TERRITORY, DEFAULT_TERRITORY);
+			ordersWithoutSegment = context.getCounter(Counters.ORDERS_WITHOUT_SEGMENT);
+			segments = ReferenceData.open(context).getTimeSegments(conf.get(SEGMENT_TYPE, DEFAULT_SEGMENT_TYPE));
+		} catch (Exception ex) {
+			System.err.println("Error in initializing StldTimeSegmentMapper:");
+			System.err.println(ex.toString());
+			System.exit(8);
+		}
+	}
+
+	@Override
+	public void tld(StldItem item) throws IOException, InterruptedException {
+
+		super.tld(item);
+		intervals = segments.get(item.terrCd.isEmpty() ? defaultTerritory : item.terrCd.parseInt());
+	}
+
+	@Override
+	protected boolean appendKey(StldItem item, StldRowEncoder key) {
+
+		int segmentId = intervals == null ? -1 : intervals.find(TimeSegments.secondOfDay(item.timestamp));
+		if ( segmentId < 0 ) {
+			ordersWithoutSegment.increment(1);
+			return false;
+		}
+
+		key.append(storeId).append(COMMA).append(businessDate).append(COMMA).appendInt(segmentId);
+		return true;
+	}
+
+}
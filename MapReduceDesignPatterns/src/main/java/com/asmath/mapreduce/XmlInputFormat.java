@@ -0,0 +1,77 @@
+package com.asmath.mapreduce;
+
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+
+/**
+ * Splittable input format for XML documents such as STLD <code>&lt;TLD&gt;</code>
+ * or <code>&lt;MenuItem&gt;</code>. Each record is one document, from its start
+ * tag to its end tag, no matter how many lines it covers. A document belongs
+ * to the split its start tag begins in, so pretty-printed and concatenated
+ * files can be split by block. Compressed files are read whole.
+ *
+ * Drivers switch to it with -D asmath.xmlinput.enabled=true.
+ */
+public class XmlInputFormat extends FileInputFormat<LongWritable, Text> {
+
+	public static final String ENABLED = "asmath.xmlinput.enabled";
+	public static final String RECORD_TAG = "asmath.xmlinput.tag";
+
+	public static final String TLD_TAG = "TLD";
+	public static final String MENU_ITEM_TAG = "MenuItem";
+
+	public static boolean isEnabled(Configuration conf) {
+		return conf.getBoolean(ENABLED, false);
+	}
+
+	public static void setRecordTag(Job job, String tag) {
+		job.getConfiguration().set(RECORD_TAG, tag);
+	}
+
+	@Override
+	public RecordReader<LongWritable, Text> createRecordReader(InputSplit split, TaskAttemptContext context)
+			throws IOException, InterruptedException {
+
+		return new XmlRecordReader(getRecordTag(context.getConfiguration()));
+	}
+
+	protected String getRecordTag(Configuration conf) {
+		return conf.get(RECORD_TAG, TLD_TAG);
+	}
+
+	@Override
+	protected boolean isSplitable(JobContext context, Path file) {
+
+		return new CompressionCodecFactory(context.getConfiguration()).getCodec(file) == null;
+	}
+
+	/** Always reads <code>&lt;TLD&gt;</code> documents, for jobs that mix inputs with MultipleInputs. */
+	public static class Tld extends XmlInputFormat {
+
+		@Override
+		protected String getRecordTag(Configuration conf) {
+			return TLD_TAG;
+		}
+	}
+
+	/** Always reads <code>&lt;MenuItem&gt;</code> documents, for jobs that mix inputs with MultipleInputs. */
+	public static class MenuItem extends XmlInputFormat {
+
+		@Override
+		protected String getRecordTag(Configuration conf) {
+			return MENU_ITEM_TAG;
+		}
+	}
+
+}
@@ -0,0 +1,215 @@
+package com.asmath.mapreduce;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+
+/**
+ * Reads <code>&lt;tag ...&gt;</code> ... <code>&lt;/tag&gt;</code> records out of a
+ * byte range. The key is the file offset of the start tag and the value holds
+ * the raw bytes of the document, start and end tag included.
+ */
+public class XmlRecordReader extends RecordReader<LongWritable, Text> {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private byte[] startTag;
+	private byte[] endTag;
+
+	private long start;
+	private long end;
+	private long pos;
+
+	private InputStream in;
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+	private int bufferLength = 0;
+	private int bufferPos = 0;
+
+	private final DataOutputBuffer record = new DataOutputBuffer();
+	private final LongWritable key = new LongWritable();
+	private final Text value = new Text();
+
+	private final String tag;
+
+	public XmlRecordReader(String tag) {
+		this.tag = tag;
+	}
+
+	@Override
+	public void initialize(InputSplit genericSplit, TaskAttemptContext context) throws IOException,
+			InterruptedException {
+
+		FileSplit split = (FileSplit) genericSplit;
+		Configuration conf = context.getConfiguration();
+
+		startTag = ("<" + tag).getBytes("UTF-8");
+		endTag = ("</" + tag + ">").getBytes("UTF-8");
+
+		Path file = split.getPath();
+		FileSystem fs = file.getFileSystem(conf);
+		FSDataInputStream fileIn = fs.open(file);
+		CompressionCodec codec = new CompressionCodecFactory(conf).getCodec(file);
+
+		if (codec != null) {
+			in = codec.createInputStream(fileIn);
+			start = 0;
+			end = Long.MAX_VALUE;
+		} else {
+			start = split.getStart();
+			end = start + split.getLength();
+			fileIn.seek(start);
+			in = fileIn;
+		}
+		pos = start;
+	}
+
+	@Override
+	public boolean nextKeyValue() throws IOException, InterruptedException {
+
+		record.reset();
+
+		if (pos < end && readUntilStartTag()) {
+			key.set(pos - record.getLength());
+
+			if (readUntilEndTag()) {
+				value.set(record.getData(), 0, record.getLength());
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Scans for the next start tag that begins before the end of the split.
+	 * On success the record holds the tag name, e.g. "&lt;TLD", followed by
+	 * the byte that terminated the name.
+	 */
+	private boolean readUntilStartTag() throws IOException {
+
+		int matched = 0;
+
+		while (true) {
+			if (matched == 0 && pos >= end) {
+				return false;
+			}
+
+			int b = read();
+			if (b == -1) {
+				return false;
+			}
+
+			if (matched == startTag.length) {
+				if (b == '>' || b == '/' || Character.isWhitespace(b)) {
+					record.write(startTag);
+					record.write(b);
+					return true;
+				}
+				matched = 0;
+			}
+
+			if (matched > 0 && b == startTag[matched]) {
+				matched++;
+			} else if (b == startTag[0] && pos - 1 < end) {
+				// a tag is the split's only when its '<' is before the end
+				matched = 1;
+			} else {
+				matched = 0;
+			}
+		}
+	}
+
+	/**
+	 * Copies bytes into the record up to and including the end tag. A start
+	 * tag closed with "/&gt;" is a complete record on its own.
+	 */
+	private boolean readUntilEndTag() throws IOException {
+
+		int previous = record.getData()[record.getLength() - 1];
+		boolean inStartTag = previous != '>';
+		int matched = 0;
+
+		while (true) {
+			int b = read();
+			if (b == -1) {
+				return false;
+			}
+			record.write(b);
+
+			if (inStartTag) {
+				if (b == '>') {
+					if (previous == '/') {
+						return true;
+					}
+					inStartTag = false;
+				}
+				previous = b;
+				continue;
+			}
+
+			if (b == endTag[matched]) {
+				matched++;
+				if (matched == endTag.length) {
+					return true;
+				}
+			} else {
+				matched = (b == endTag[0]) ? 1 : 0;
+			}
+		}
+	}
+
+	private int read() throws IOException {
+
+		if (bufferPos == bufferLength) {
+			bufferLength = in.read(buffer, 0, buffer.length);
+			bufferPos = 0;
+
+			if (bufferLength <= 0) {
+				bufferLength = 0;
+				return -1;
+			}
+		}
+		pos++;
+		return buffer[bufferPos++] & 0xff;
+	}
+
+	@Override
+	public LongWritable getCurrentKey() throws IOException, InterruptedException {
+		return key;
+	}
+
+	@Override
+	public Text getCurrentValue() throws IOException, InterruptedException {
+		return value;
+	}
+
+	@Override
+	public float getProgress() throws IOException, InterruptedException {
+
+		if (end == Long.MAX_VALUE || end == start) {
+			return 0.0f;
+		}
+		return Math.min(1.0f, (pos - start) / (float) (end - start));
+	}
+
+	@Override
+	public void close() throws IOException {
+
+		if (in != null) {
+			in.close();
+		}
+	}
+
+}
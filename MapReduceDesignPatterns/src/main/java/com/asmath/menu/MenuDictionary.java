@@ -0,0 +1,411 @@
+package com.asmath.menu;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.asmath.util.ByteSlice;
+import com.asmath.util.Money;
+import com.asmath.util.ProductNameMap;
+
+/**
+ * Menus of a whole fleet in one heap. Every store's menu repeats the same
+ * product definitions, so a definition, the product's names, family group
+ * and class, is held once in a dictionary shared by all stores with the
+ * prices of the first store listing it. A store keeps per product only the
+ * product id and the index of its definition, sorted by product id, and a
+ * price of its own only where it differs from the definition's, in sparse
+ * arrays ordered by row. Prices are in cents.
+ *
+ * <pre>
+ * int row = dictionary.find(storeId, productId);
+ * if (row >= 0) { dictionary.getName(row), dictionary.getEatinPrice(row) }
+ * </pre>
+ */
+public final class MenuDictionary {
+
+	/** Price of a product without one or with one that is not in whole cents. */
+	public static final int NO_PRICE = Integer.MIN_VALUE;
+
+	// definitions
+	private final int[] productIds;
+	private final String[] names;
+	private final String[] shortNames;
+	private final String[] familyGroups;
+	private final String[] productClasses;
+	private final int[] eatinPrices;
+	private final int[] takeoutPrices;
+
+	// stores ascending, rows of a store from storeOffsets[store] with product ids ascending
+	private final int[] storeIds;
+	private final int[] storeOffsets;
+	private final int[] rowProducts;
+	private final int[] rowDefinitions;
+
+	// rows with prices of their own, ascending
+	private final int[] overrideRows;
+	private final int[] overrideEatinPrices;
+	private final int[] overrideTakeoutPrices;
+
+	private MenuDictionary(Builder builder, int[] storeIds, int[] storeOffsets, int[] rowProducts,
+			int[] rowDefinitions, int[] overrideRows, int[] overrideEatinPrices, int[] overrideTakeoutPrices) {
+
+		int count = builder.definitionCount;
+		this.productIds = Arrays.copyOf(builder.productIds, count);
+		this.names = Arrays.copyOf(builder.names, count);
+		this.shortNames = Arrays.copyOf(builder.shortNames, count);
+		this.familyGroups = Arrays.copyOf(builder.familyGroups, count);
+		this.productClasses = Arrays.copyOf(builder.productClasses, count);
+		this.eatinPrices = Arrays.copyOf(builder.eatinPrices, count);
+		this.takeoutPrices = Arrays.copyOf(builder.takeoutPrices, count);
+		this.storeIds = storeIds;
+		this.storeOffsets = storeOffsets;
+		this.rowProducts = rowProducts;
+		this.rowDefinitions = rowDefinitions;
+		this.overrideRows = overrideRows;
+		this.overrideEatinPrices = overrideEatinPrices;
+		this.overrideTakeoutPrices = overrideTakeoutPrices;
+	}
+
+	/** Row of the product on the store's menu, -1 when the store has no such product. */
+	public int find(int storeId, int productId) {
+
+		int store = Arrays.binarySearch(storeIds, storeId);
+		if (store < 0) {
+			return -1;
+		}
+		int row = Arrays.binarySearch(rowProducts, storeOffsets[store], storeOffsets[store + 1], productId);
+		return row < 0 ? -1 : row;
+	}
+
+	/** Row of the product, -1 also for ids that are not plain ints, which the dictionary does not hold. */
+	public int find(String storeId, String productId) {
+		return find(ProductNameMap.key(storeId, productId));
+	}
+
+	public int find(ByteSlice storeId, ByteSlice productId) {
+		return find(ProductNameMap.key(storeId, productId));
+	}
+
+	private int find(long key) {
+		return key == ProductNameMap.NO_KEY ? -1 : find((int) (key >>> 32), (int) key);
+	}
+
+	public int getProductId(int row) {
+		return rowProducts[row];
+	}
+
+	public String getName(int row) {
+		return names[rowDefinitions[row]];
+	}
+
+	public String getShortName(int row) {
+		return shortNames[rowDefinitions[row]];
+	}
+
+	public String getFamilyGroup(int row) {
+		return familyGroups[rowDefinitions[row]];
+	}
+
+	public String getProductClass(int row) {
+		return productClasses[rowDefinitions[row]];
+	}
+
+	/** Eat in price in cents, NO_PRICE when there is none. */
+	public int getEatinPrice(int row) {
+
+		int override = Arrays.binarySearch(overrideRows, row);
+		return override < 0 ? eatinPrices[rowDefinitions[row]] : overrideEatinPrices[override];
+	}
+
+	/** Take out price in cents, NO_PRICE when there is none. */
+	public int getTakeoutPrice(int row) {
+
+		int override = Arrays.binarySearch(overrideRows, row);
+		return override < 0 ? takeoutPrices[rowDefinitions[row]] : overrideTakeoutPrices[override];
+	}
+
+	public int storeCount() {
+		return storeIds.length;
+	}
+
+	/** Number of store and product pairs. */
+	public int rowCount() {
+		return rowProducts.length;
+	}
+
+	/** Number of distinct product definitions across the stores. */
+	public int definitionCount() {
+		return productIds.length;
+	}
+
+	/** Number of rows with prices of their own. */
+	public int overrideCount() {
+		return overrideRows.length;
+	}
+
+	/** Approximate bytes held, for the JVM cache. */
+	public long sizeInBytes() {
+
+		long bytes = 4L * (productIds.length * 7L + storeIds.length + storeOffsets.length + rowProducts.length * 2L
+				+ overrideRows.length * 3L);
+		HashMap<String, String> counted = new HashMap<String, String>();
+		for (String[] column : new String[][] { names, shortNames, familyGroups, productClasses }) {
+			for (String value : column) {
+				if (counted.put(value, value) == null) {
+					bytes += 40 + 2L * value.length();
+				}
+			}
+		}
+		return bytes;
+	}
+
+	/** Cents of a price such as 0.89, NO_PRICE when it is empty or not in whole cents. */
+	static int parseCents(String price) {
+
+		if (price == null || price.isEmpty()) {
+			return NO_PRICE;
+		}
+		try {
+			long cents = Money.parse(price);
+			return cents > Integer.MAX_VALUE || cents <= NO_PRICE ? NO_PRICE : (int) cents;
+		} catch (NumberFormatException ex) {
+			return NO_PRICE;
+		}
+	}
+
+	/**
+	 * Collects menu products store by store. A product added twice for a store
+	 * keeps the later definition and prices, as the menu HashMap did.
+	 */
+	public static final class Builder {
+
+		private final HashMap<String, String> strings = new HashMap<String, String>();
+		private final HashMap<Definition, Integer> definitionIndex = new HashMap<Definition, Integer>();
+		private final HashMap<Integer, StoreRows> stores = new HashMap<Integer, StoreRows>();
+
+		private int definitionCount = 0;
+		private int[] productIds = new int[256];
+		private String[] names = new String[256];
+		private String[] shortNames = new String[256];
+		private String[] familyGroups = new String[256];
+		private String[] productClasses = new String[256];
+		private int[] eatinPrices = new int[256];
+		private int[] takeoutPrices = new int[256];
+
+		/** Adds a product of a store's menu, false when the ids are not plain ints and nothing is added. */
+		public boolean add(String storeId, String productId, String name, String shortName, String familyGroup,
+				String productClass, String eatinPrice, String takeoutPrice) {
+
+			long key = ProductNameMap.key(storeId, productId);
+			if (key == ProductNameMap.NO_KEY) {
+				return false;
+			}
+			add((int) (key >>> 32), (int) key, name, shortName, familyGroup, productClass, parseCents(eatinPrice),
+					parseCents(takeoutPrice));
+			return true;
+		}
+
+		/** Adds every product of the other builder, as if added here after the products already added. */
+		public void addAll(Builder from) {
+
+			for (Map.Entry<Integer, StoreRows> store : from.stores.entrySet()) {
+				StoreRows rows = store.getValue();
+				for (int idx = 0; idx < rows.count; idx++) {
+					// in the order added, also when the rows were sorted by a build
+					int added = (int) rows.products[idx];
+					int definition = rows.definitions[added];
+					add(store.getKey().intValue(), (int) (rows.products[idx] >>> 32), from.names[definition],
+							from.shortNames[definition], from.familyGroups[definition],
+							from.productClasses[definition], rows.eatinPrices[added], rows.takeoutPrices[added]);
+				}
+			}
+		}
+
+		private void add(int storeId, int productId, String name, String shortName, String familyGroup,
+				String productClass, int eatinPrice, int takeoutPrice) {
+
+			Definition key = new Definition(productId, intern(name), intern(shortName), intern(familyGroup),
+					intern(productClass));
+			Integer definition = definitionIndex.get(key);
+			if (definition == null) {
+				definition = Integer.valueOf(addDefinition(key, eatinPrice, takeoutPrice));
+				definitionIndex.put(key, definition);
+			}
+
+			StoreRows rows = stores.get(Integer.valueOf(storeId));
+			if (rows == null) {
+				rows = new StoreRows();
+				stores.put(Integer.valueOf(storeId), rows);
+			}
+			rows.add(productId, definition.intValue(), eatinPrice, takeoutPrice);
+		}
+
+		private int addDefinition(Definition key, int eatinPrice, int takeoutPrice) {
+
+			if (definitionCount == productIds.length) {
+				int capacity = definitionCount * 2;
+				productIds = Arrays.copyOf(productIds, capacity);
+				names = Arrays.copyOf(names, capacity);
+				shortNames = Arrays.copyOf(shortNames, capacity);
+				familyGroups = Arrays.copyOf(familyGroups, capacity);
+				productClasses = Arrays.copyOf(productClasses, capacity);
+				eatinPrices = Arrays.copyOf(eatinPrices, capacity);
+				takeoutPrices = Arrays.copyOf(takeoutPrices, capacity);
+			}
+			productIds[definitionCount] = key.productId;
+			names[definitionCount] = key.name;
+			shortNames[definitionCount] = key.shortName;
+			familyGroups[definitionCount] = key.familyGroup;
+			productClasses[definitionCount] = key.productClass;
+			eatinPrices[definitionCount] = eatinPrice;
+			takeoutPrices[definitionCount] = takeoutPrice;
+			return definitionCount++;
+		}
+
+		private String intern(String value) {
+
+			if (value == null) {
+				value = "";
+			}
+			String interned = strings.get(value);
+			if (interned == null) {
+				strings.put(value, value);
+				interned = value;
+			}
+			return interned;
+		}
+
+		public MenuDictionary build() {
+
+			int[] storeIds = new int[stores.size()];
+			int pos = 0;
+			for (Integer storeId : stores.keySet()) {
+				storeIds[pos++] = storeId.intValue();
+			}
+			Arrays.sort(storeIds);
+
+			int rowCount = 0;
+			for (StoreRows rows : stores.values()) {
+				rowCount += rows.sort();
+			}
+
+			int[] storeOffsets = new int[storeIds.length + 1];
+			int[] rowProducts = new int[rowCount];
+			int[] rowDefinitions = new int[rowCount];
+			int[] overrideRows = new int[16];
+			int[] overrideEatinPrices = new int[16];
+			int[] overrideTakeoutPrices = new int[16];
+			int overrideCount = 0;
+			int row = 0;
+
+			for (int store = 0; store < storeIds.length; store++) {
+				storeOffsets[store] = row;
+				StoreRows rows = stores.get(Integer.valueOf(storeIds[store]));
+				for (int idx = 0; idx < rows.count; idx++) {
+					// of a product added more than once, the last, which sorts last
+					if (idx + 1 < rows.count && (rows.products[idx + 1] >>> 32) == (rows.products[idx] >>> 32)) {
+						continue;
+					}
+					int added = (int) rows.products[idx];
+					int definition = rows.definitions[added];
+					rowProducts[row] = (int) (rows.products[idx] >>> 32);
+					rowDefinitions[row] = definition;
+
+					if (rows.eatinPrices[added] != eatinPrices[definition]
+							|| rows.takeoutPrices[added] != takeoutPrices[definition]) {
+						if (overrideCount == overrideRows.length) {
+							overrideRows = Arrays.copyOf(overrideRows, overrideCount * 2);
+							overrideEatinPrices = Arrays.copyOf(overrideEatinPrices, overrideCount * 2);
+							overrideTakeoutPrices = Arrays.copyOf(overrideTakeoutPrices, overrideCount * 2);
+						}
+						overrideRows[overrideCount] = row;
+						overrideEatinPrices[overrideCount] = rows.eatinPrices[added];
+						overrideTakeoutPrices[overrideCount] = rows.takeoutPrices[added];
+						overrideCount++;
+					}
+					row++;
+				}
+			}
+			storeOffsets[storeIds.length] = row;
+
+			return new MenuDictionary(this, storeIds, storeOffsets, rowProducts, rowDefinitions,
+					Arrays.copyOf(overrideRows, overrideCount), Arrays.copyOf(overrideEatinPrices, overrideCount),
+					Arrays.copyOf(overrideTakeoutPrices, overrideCount));
+		}
+	}
+
+	private static final class Definition {
+
+		final int productId;
+		final String name;
+		final String shortName;
+		final String familyGroup;
+		final String productClass;
+
+		Definition(int productId, String name, String shortName, String familyGroup, String productClass) {
+			this.productId = productId;
+			this.name = name;
+			this.shortName = shortName;
+			this.familyGroup = familyGroup;
+			this.productClass = productClass;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+
+			if (!(other instanceof Definition)) {
+				return false;
+			}
+			Definition definition = (Definition) other;
+			return productId == definition.productId && name.equals(definition.name)
+					&& shortName.equals(definition.shortName) && familyGroup.equals(definition.familyGroup)
+					&& productClass.equals(definition.productClass);
+		}
+
+		@Override
+		public int hashCode() {
+			return (((productId * 31 + name.hashCode()) * 31 + shortName.hashCode()) * 31 + familyGroup.hashCode())
+					* 31 + productClass.hashCode();
+		}
+	}
+
+	// products of one store in the order added, product id high and add number low
+	private static final class StoreRows {
+
+		long[] products = new long[64];
+		int[] definitions = new int[64];
+		int[] eatinPrices = new int[64];
+		int[] takeoutPrices = new int[64];
+		int count = 0;
+
+		void add(int productId, int definition, int eatinPrice, int takeoutPrice) {
+
+			if (count == products.length) {
+				products = Arrays.copyOf(products, count * 2);
+				definitions = Arrays.copyOf(definitions, count * 2);
+				eatinPrices = Arrays.copyOf(eatinPrices, count * 2);
+				takeoutPrices = Arrays.copyOf(takeoutPrices, count * 2);
+			}
+			products[count] = ((long) productId << 32) | count;
+			definitions[count] = definition;
+			eatinPrices[count] = eatinPrice;
+			takeoutPrices[count] = takeoutPrice;
+			count++;
+		}
+
+		/** Sorts by product id and returns the number of distinct products. */
+		int sort() {
+
+			Arrays.sort(products, 0, count);
+			int distinct = 0;
+			for (int idx = 0; idx < count; idx++) {
+				if (idx + 1 == count || (products[idx + 1] >>> 32) != (products[idx] >>> 32)) {
+					distinct++;
+				}
+			}
+			return distinct;
+		}
+	}
+
+}
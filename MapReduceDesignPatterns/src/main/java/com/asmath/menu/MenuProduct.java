@@ -0,0 +1,20 @@
+package com.asmath.menu;
+
+/**
+ * Attributes of the current ProductInfo of a menu document and the storeId of
+ * its MenuItem, as the DOM code's getAttribute gives them: a missing
+ * attribute is "". The instance is reused for every product.
+ */
+public class MenuProduct {
+
+	public String storeId = "";
+
+	public String productId = "";
+	public String shortName = "";
+	public String longName = "";
+	public String familyGroup = "";
+	public String productClass = "";
+	public String eatinPrice = "";
+	public String takeoutPrice = "";
+
+}
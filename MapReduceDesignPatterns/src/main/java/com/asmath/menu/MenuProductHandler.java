@@ -0,0 +1,14 @@
+package com.asmath.menu;
+
+import java.io.IOException;
+
+/**
+ * Callback used by a {@link MenuProductParser}. The same {@link MenuProduct}
+ * instance is passed to every call and is only valid until the call returns.
+ */
+public interface MenuProductHandler {
+
+	/** Called once per ProductInfo of a MenuItem, in document order. */
+	void product(MenuProduct product) throws IOException, InterruptedException;
+
+}
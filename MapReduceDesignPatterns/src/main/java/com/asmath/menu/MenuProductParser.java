@@ -0,0 +1,136 @@
+package com.asmath.menu;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Single pass StAX reader of POS_MenuItem documents, selected with
+ * <code>-D asmath.menu.parser.engine=stax</code>; the default is the DOM code
+ * of the menu mappers. Reports the same products as
+ * getElementsByTagName("MenuItem") then "ProductInfo" without building a
+ * Document: each ProductInfo is handed over as soon as its start tag is read
+ * and its Parameter, Distribution, Production and SizeSelection children are
+ * skipped unread, so memory does not grow with the document. A ProductInfo
+ * nested in another one, which the menus never have, is skipped as well.
+ * One instance is reused for every record of a task, but not across threads.
+ */
+public class MenuProductParser {
+
+	public static final String ENGINE = "asmath.menu.parser.engine";
+
+	public static final String DOM = "dom";
+	public static final String STAX = "stax";
+
+	private final XMLInputFactory factory;
+	private final MenuProduct product = new MenuProduct();
+
+	public MenuProductParser() {
+
+		factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+	}
+
+	public static boolean isStreaming(String engine) {
+
+		if (engine == null || engine.isEmpty() || DOM.equalsIgnoreCase(engine)) {
+			return false;
+		}
+		if (STAX.equalsIgnoreCase(engine)) {
+			return true;
+		}
+		throw new IllegalArgumentException("Unknown " + ENGINE + " value: " + engine);
+	}
+
+	public void parse(byte[] bytes, int offset, int length, MenuProductHandler handler) throws Exception {
+
+		parse(new ByteArrayInputStream(bytes, offset, length), handler);
+	}
+
+	public void parse(InputStream in, MenuProductHandler handler) throws Exception {
+
+		XMLStreamReader reader = factory.createXMLStreamReader(in);
+		// nesting of MenuItem elements around the current element
+		int menuItems = 0;
+
+		try {
+			while (reader.hasNext()) {
+				int event = reader.next();
+
+				if (event == XMLStreamConstants.START_ELEMENT) {
+					String name = reader.getLocalName();
+					if (name.equals("MenuItem")) {
+						menuItems++;
+						product.storeId = attribute(reader, "storeId");
+					} else if (name.equals("ProductInfo") && menuItems > 0) {
+						readProduct(reader);
+						handler.product(product);
+						skipToEnd(reader);
+					}
+				} else if (event == XMLStreamConstants.END_ELEMENT && reader.getLocalName().equals("MenuItem")) {
+					menuItems--;
+				}
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+	private void readProduct(XMLStreamReader reader) {
+
+		product.productId = "";
+		product.shortName = "";
+		product.longName = "";
+		product.familyGroup = "";
+		product.productClass = "";
+		product.eatinPrice = "";
+		product.takeoutPrice = "";
+
+		for (int idx = 0; idx < reader.getAttributeCount(); idx++) {
+			String name = reader.getAttributeLocalName(idx);
+
+			if (name.equals("id")) {
+				product.productId = reader.getAttributeValue(idx);
+			} else if (name.equals("shortName")) {
+				product.shortName = reader.getAttributeValue(idx);
+			} else if (name.equals("longName")) {
+				product.longName = reader.getAttributeValue(idx);
+			} else if (name.equals("familyGroup")) {
+				product.familyGroup = reader.getAttributeValue(idx);
+			} else if (name.equals("class")) {
+				product.productClass = reader.getAttributeValue(idx);
+			} else if (name.equals("eatinPrice")) {
+				product.eatinPrice = reader.getAttributeValue(idx);
+			} else if (name.equals("takeoutPrice")) {
+				product.takeoutPrice = reader.getAttributeValue(idx);
+			}
+		}
+	}
+
+	private static String attribute(XMLStreamReader reader, String name) {
+
+		String value = reader.getAttributeValue(null, name);
+		return value == null ? "" : value;
+	}
+
+	// from a start element to its end element
+	private static void skipToEnd(XMLStreamReader reader) throws XMLStreamException {
+
+		int depth = 1;
+		while (depth > 0) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				depth++;
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,210 @@
+package com.asmath.menu;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+
+import com.asmath.util.ByteSlice;
+import com.asmath.util.ProductNameMap;
+
+/**
+ * Read only view of a menu snapshot written by {@link MenuSnapshotWriter}.
+ * The file is memory mapped, so opening it costs the same for one store or
+ * thousands: lookups binary search the sorted product keys in the mapping
+ * and decode a string the first time it is asked for.
+ *
+ * <pre>
+ * int magic, version, entryCount, otherCount, stringCount, stringBytes
+ * long[entryCount]                          ProductNameMap keys, ascending
+ * int[(entryCount + otherCount) * COLUMNS]  string index of each column
+ * int[otherCount]                           string index of storeId|productId
+ * int[stringCount + 1]                      offsets into the string bytes
+ * byte[stringBytes]                         UTF-8
+ * </pre>
+ */
+public final class MenuSnapshot {
+
+	public static final int MAGIC = 0x4D4E5553;
+	public static final int VERSION = 1;
+
+	public static final int NAME = 0;
+	public static final int FAMILY_GROUP = 1;
+	public static final int TAKEOUT_PRICE = 2;
+	public static final int EATIN_PRICE = 3;
+	static final int COLUMNS = 4;
+
+	static final int HEADER_BYTES = 24;
+
+	private final ByteBuffer buffer;
+	private final int entryCount;
+	private final LongBuffer keys;
+	private final IntBuffer columns;
+	private final IntBuffer stringOffsets;
+	private final int stringBase;
+	private final String[] strings;
+	private final HashMap<String, Integer> other = new HashMap<String, Integer>();
+
+	MenuSnapshot(ByteBuffer buffer) throws IOException {
+
+		this.buffer = buffer;
+
+		if (buffer.getInt(0) != MAGIC) {
+			throw new IOException("Not a menu snapshot");
+		}
+		if (buffer.getInt(4) != VERSION) {
+			throw new IOException("Unsupported menu snapshot version " + buffer.getInt(4));
+		}
+
+		entryCount = buffer.getInt(8);
+		int otherCount = buffer.getInt(12);
+		int stringCount = buffer.getInt(16);
+
+		int pos = HEADER_BYTES;
+		keys = slice(pos).asLongBuffer();
+		pos += entryCount * 8;
+		columns = slice(pos).asIntBuffer();
+		pos += (entryCount + otherCount) * COLUMNS * 4;
+		IntBuffer otherKeys = slice(pos).asIntBuffer();
+		pos += otherCount * 4;
+		stringOffsets = slice(pos).asIntBuffer();
+		pos += (stringCount + 1) * 4;
+		stringBase = pos;
+
+		strings = new String[stringCount];
+		for (int idx = 0; idx < otherCount; idx++) {
+			other.put(getString(otherKeys.get(idx)), Integer.valueOf(entryCount + idx));
+		}
+	}
+
+	/** Maps the snapshot read only; the mapping stays valid after the file is closed. */
+	public static MenuSnapshot open(File file) throws IOException {
+
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			return new MenuSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		} finally {
+			raf.close();
+		}
+	}
+
+	public static boolean isSnapshot(File file) throws IOException {
+
+		if (file.length() < HEADER_BYTES) {
+			return false;
+		}
+
+		DataInputStream in = new DataInputStream(new FileInputStream(file));
+		try {
+			return in.readInt() == MAGIC;
+		} finally {
+			in.close();
+		}
+	}
+
+	/** Number of products in the snapshot. */
+	public int size() {
+		return entryCount + other.size();
+	}
+
+	/** Entry of the product, -1 when the store has no such product. */
+	public int find(String storeId, String productId) {
+
+		long key = ProductNameMap.key(storeId, productId);
+
+		if (key == ProductNameMap.NO_KEY) {
+			return other.isEmpty() ? -1 : findOther(storeId + "|" + productId);
+		}
+		return find(key);
+	}
+
+	public int find(ByteSlice storeId, ByteSlice productId) {
+
+		long key = ProductNameMap.key(storeId, productId);
+
+		if (key == ProductNameMap.NO_KEY) {
+			return other.isEmpty() ? -1 : findOther(storeId + "|" + productId);
+		}
+		return find(key);
+	}
+
+	public int find(long key) {
+
+		int low = 0;
+		int high = entryCount - 1;
+
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			long midKey = keys.get(mid);
+			if (midKey < key) {
+				low = mid + 1;
+			} else if (midKey > key) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -1;
+	}
+
+	public String getName(int entry) {
+		return get(entry, NAME);
+	}
+
+	public String getFamilyGroup(int entry) {
+		return get(entry, FAMILY_GROUP);
+	}
+
+	public String getTakeoutPrice(int entry) {
+		return get(entry, TAKEOUT_PRICE);
+	}
+
+	public String getEatinPrice(int entry) {
+		return get(entry, EATIN_PRICE);
+	}
+
+	public String get(int entry, int column) {
+		return getString(columns.get(entry * COLUMNS + column));
+	}
+
+	private int findOther(String key) {
+
+		Integer entry = other.get(key);
+		return entry == null ? -1 : entry.intValue();
+	}
+
+	private String getString(int idx) {
+
+		String value = strings[idx];
+		if (value == null) {
+			int start = stringOffsets.get(idx);
+			byte[] bytes = new byte[stringOffsets.get(idx + 1) - start];
+			ByteBuffer source = buffer.duplicate();
+			source.position(stringBase + start);
+			source.get(bytes);
+			try {
+				value = new String(bytes, "UTF-8");
+			} catch (UnsupportedEncodingException ex) {
+				throw new IllegalStateException(ex);
+			}
+			strings[idx] = value;
+		}
+		return value;
+	}
+
+	private ByteBuffer slice(int pos) {
+
+		ByteBuffer view = buffer.duplicate();
+		view.position(pos);
+		return view.slice();
+	}
+
+}
@@ -0,0 +1,122 @@
+package com.asmath.menu;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.asmath.util.ProductNameMap;
+
+/**
+ * Collects menu products and writes them in the {@link MenuSnapshot} layout.
+ * A product added twice keeps the later columns, as the menu HashMap did.
+ * Column strings are written once however many products share them.
+ */
+public final class MenuSnapshotWriter {
+
+	private final TreeMap<Long, String[]> entries = new TreeMap<Long, String[]>();
+	private final LinkedHashMap<String, String[]> other = new LinkedHashMap<String, String[]>();
+
+	public void add(String storeId, String productId, String name, String familyGroup, String takeoutPrice,
+			String eatinPrice) {
+
+		String[] row = new String[MenuSnapshot.COLUMNS];
+		row[MenuSnapshot.NAME] = name;
+		row[MenuSnapshot.FAMILY_GROUP] = familyGroup;
+		row[MenuSnapshot.TAKEOUT_PRICE] = takeoutPrice;
+		row[MenuSnapshot.EATIN_PRICE] = eatinPrice;
+
+		long key = ProductNameMap.key(storeId, productId);
+		if (key == ProductNameMap.NO_KEY) {
+			other.put(storeId + "|" + productId, row);
+		} else {
+			entries.put(Long.valueOf(key), row);
+		}
+	}
+
+	public int size() {
+		return entries.size() + other.size();
+	}
+
+	public void write(OutputStream stream) throws IOException {
+
+		HashMap<String, Integer> stringIndex = new HashMap<String, Integer>();
+		List<byte[]> strings = new ArrayList<byte[]>();
+
+		int[] columns = new int[size() * MenuSnapshot.COLUMNS];
+		int pos = 0;
+		for (String[] row : entries.values()) {
+			for (String value : row) {
+				columns[pos++] = intern(value, stringIndex, strings);
+			}
+		}
+		for (String[] row : other.values()) {
+			for (String value : row) {
+				columns[pos++] = intern(value, stringIndex, strings);
+			}
+		}
+
+		int[] otherKeys = new int[other.size()];
+		pos = 0;
+		for (String key : other.keySet()) {
+			otherKeys[pos++] = intern(key, stringIndex, strings);
+		}
+
+		int stringBytes = 0;
+		for (byte[] value : strings) {
+			stringBytes += value.length;
+		}
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+		out.writeInt(MenuSnapshot.MAGIC);
+		out.writeInt(MenuSnapshot.VERSION);
+		out.writeInt(entries.size());
+		out.writeInt(other.size());
+		out.writeInt(strings.size());
+		out.writeInt(stringBytes);
+
+		for (Long key : entries.keySet()) {
+			out.writeLong(key.longValue());
+		}
+		for (int value : columns) {
+			out.writeInt(value);
+		}
+		for (int value : otherKeys) {
+			out.writeInt(value);
+		}
+
+		int offset = 0;
+		out.writeInt(offset);
+		for (byte[] value : strings) {
+			offset += value.length;
+			out.writeInt(offset);
+		}
+		for (byte[] value : strings) {
+			out.write(value);
+		}
+		out.flush();
+	}
+
+	private static int intern(String value, Map<String, Integer> stringIndex, List<byte[]> strings)
+			throws IOException {
+
+		if (value == null) {
+			value = "";
+		}
+
+		Integer idx = stringIndex.get(value);
+		if (idx == null) {
+			idx = Integer.valueOf(strings.size());
+			stringIndex.put(value, idx);
+			strings.add(value.getBytes("UTF-8"));
+		}
+		return idx.intValue();
+	}
+
+}
@@ -0,0 +1,523 @@
+package com.asmath.stld;
+
+import java.io.IOException;
+
+import com.asmath.util.ByteSlice;
+
+/**
+ * Byte level engine for the fixed, machine generated POS XML. Tags and
+ * attributes are located directly in the record bytes (e.g.
+ * Text.getBytes()/getLength()) and the values needed are copied into the
+ * reusable slices of {@link StldItem}; no String, DOM or StAX event is created
+ * per record.
+ *
+ * It follows the same rules as {@link StldStaxParser} but does not expand
+ * entity or character references and does not read DOCTYPEs. Records that
+ * contain a '&amp;' or that it cannot tokenize before the TLD start tag are
+ * handed to the StAX engine instead, which does full XML validation.
+ * Structural errors found later in a record are reported as an IOException.
+ */
+public class StldByteParser implements StldParser {
+
+	private static final byte[] TLD = bytes("TLD");
+	private static final byte[] NODE = bytes("Node");
+	private static final byte[] EVENT = bytes("Event");
+	private static final byte[] ITEM = bytes("Item");
+
+	private static final byte[] STORE_ID = bytes("storeId");
+	private static final byte[] BUSINESS_DATE = bytes("businessDate");
+	private static final byte[] TERR_CD = bytes("gdwTerrCd");
+	private static final byte[] TYPE_ATTRIBUTE = bytes("Type");
+	private static final byte[] STATUS = bytes("status");
+	private static final byte[] POD = bytes("POD");
+
+	private static final byte[] KEY = bytes("key");
+	private static final byte[] SALE_TYPE = bytes("saleType");
+	private static final byte[] KIND = bytes("kind");
+	private static final byte[] TIMESTAMP = bytes("Timestamp");
+	private static final byte[] TOTAL_AMOUNT = bytes("totalAmount");
+	private static final byte[] NON_PRODUCT_AMOUNT = bytes("nonProductAmount");
+
+	private static final byte[] TRX_SALE = bytes("TRX_Sale");
+	private static final byte[] PAID = bytes("Paid");
+	private static final byte[] SALE = bytes("Sale");
+
+	private static final int CODE = 0;
+	private static final int QTY = 1;
+	private static final int UNIT_PRICE = 2;
+	private static final int TOTAL_PRICE = 3;
+	private static final int LEVEL = 4;
+	private static final int QTY_PROMO = 5;
+	private static final int TYPE = 6;
+	private static final int ITEM_ATTRIBUTES = 7;
+
+	private static final byte[][] ITEM_ATTRIBUTE_NAMES = { bytes("code"), bytes("qty"), bytes("unitPrice"),
+			bytes("totalPrice"), bytes("level"), bytes("qtyPromo"), bytes("type") };
+
+	private static final byte[] PI_END = bytes("?>");
+	private static final byte[] COMMENT_START = bytes("<!--");
+	private static final byte[] COMMENT_END = bytes("-->");
+	private static final byte[] CDATA_START = bytes("<![CDATA[");
+	private static final byte[] CDATA_END = bytes("]]>");
+
+	private static final int START = 1;
+	private static final int END = 2;
+	private static final int EOF = 3;
+
+	private final StldItem item;
+	private final StldStaxParser fallback;
+	private long fallbackCount = 0;
+
+	// current record
+	private byte[] buf;
+	private int pos;
+	private int limit;
+	private boolean rootSeen;
+
+	// current tag
+	private int nameStart;
+	private int nameLength;
+	private boolean pendingEnd;
+	private int attributeCount;
+	private int[] attributeName = new int[32];
+	private int[] attributeNameLength = new int[32];
+	private int[] attributeValue = new int[32];
+	private int[] attributeValueLength = new int[32];
+
+	// first Item of an order, as offsets into the record
+	private final int[] firstItemStart = new int[ITEM_ATTRIBUTES];
+	private final int[] firstItemLength = new int[ITEM_ATTRIBUTES];
+	private final int[] currentItemStart = new int[ITEM_ATTRIBUTES];
+	private final int[] currentItemLength = new int[ITEM_ATTRIBUTES];
+
+	public StldByteParser() {
+
+		item = new StldItem();
+		fallback = new StldStaxParser(item);
+	}
+
+	/** Number of records handed to the StAX engine so far. */
+	public long getFallbackCount() {
+		return fallbackCount;
+	}
+
+	@Override
+	public void parse(byte[] bytes, int offset, int length, StldItemHandler handler) throws Exception {
+
+		if (ByteSlice.indexOf(bytes, offset, length, (byte) '&') >= 0) {
+			fallbackCount++;
+			fallback.parse(bytes, offset, length, handler);
+			return;
+		}
+
+		buf = bytes;
+		pos = offset;
+		limit = offset + length;
+		rootSeen = false;
+		pendingEnd = false;
+
+		try {
+			parseTld(handler);
+		} catch (UnsupportedRecordException ex) {
+			if (rootSeen) {
+				throw new IOException("Unsupported XML construct in STLD record at byte " + (pos - offset));
+			}
+			fallbackCount++;
+			fallback.parse(bytes, offset, length, handler);
+		} finally {
+			buf = null;
+		}
+	}
+
+	private void parseTld(StldItemHandler handler) throws IOException, InterruptedException,
+			UnsupportedRecordException {
+
+		if (next() != START || !nameIs(TLD)) {
+			return;
+		}
+		rootSeen = true;
+
+		copyAttribute(STORE_ID, item.storeId);
+		copyAttribute(BUSINESS_DATE, item.businessDate);
+		copyAttribute(TERR_CD, item.terrCd);
+		handler.tld(item);
+
+		while (nextChild()) {
+			if (nameIs(NODE)) {
+				parseNode(handler);
+			} else {
+				skipToEnd();
+			}
+		}
+	}
+
+	private void parseNode(StldItemHandler handler) throws IOException, InterruptedException,
+			UnsupportedRecordException {
+
+		while (nextChild()) {
+			if (nameIs(EVENT)) {
+				parseEvent(handler);
+			} else {
+				skipToEnd();
+			}
+		}
+	}
+
+	private void parseEvent(StldItemHandler handler) throws IOException, InterruptedException,
+			UnsupportedRecordException {
+
+		int type = findAttribute(TYPE_ATTRIBUTE);
+		if (type < 0 || !ByteSlice.equals(buf, attributeValue[type], attributeValueLength[type], TRX_SALE)) {
+			skipToEnd();
+			return;
+		}
+
+		if (!nextChild()) {
+			return;
+		}
+
+		copyAttribute(STATUS, item.status);
+		copyAttribute(POD, item.pod);
+
+		boolean inTrx = true;
+
+		if (item.status.equalsBytes(PAID)) {
+			if (nextChild()) {
+				parseOrder(handler);
+			} else {
+				inTrx = false;
+			}
+		}
+
+		if (inTrx) {
+			skipToEnd();
+		}
+		skipToEnd();
+	}
+
+	private void parseOrder(StldItemHandler handler) throws IOException, InterruptedException,
+			UnsupportedRecordException {
+
+		copyAttribute(KEY, item.orderKey);
+		copyAttribute(SALE_TYPE, item.saleType);
+		copyAttribute(KIND, item.kind);
+		copyAttribute(TIMESTAMP, item.timestamp);
+		copyAttribute(TOTAL_AMOUNT, item.totalAmount);
+		copyAttribute(NON_PRODUCT_AMOUNT, item.nonProductAmount);
+
+		handler.order(item);
+
+		if (!item.kind.contains(SALE)) {
+			skipToEnd();
+			return;
+		}
+
+		int itemCount = 0;
+		int depth = 1;
+
+		while (depth > 0) {
+			int token = next();
+
+			if (token == START) {
+				depth++;
+
+				if (nameIs(ITEM)) {
+					itemCount++;
+
+					if (itemCount == 1) {
+						readItem(firstItemStart, firstItemLength);
+					} else {
+						if (itemCount == 2) {
+							applyItem(firstItemStart, firstItemLength, handler);
+						}
+						readItem(currentItemStart, currentItemLength);
+						applyItem(currentItemStart, currentItemLength, handler);
+					}
+				}
+			} else if (token == END) {
+				depth--;
+			} else {
+				throw malformed();
+			}
+		}
+	}
+
+	private void readItem(int[] start, int[] length) {
+
+		for (int idx = 0; idx < ITEM_ATTRIBUTES; idx++) {
+			start[idx] = -1;
+		}
+
+		for (int attr = 0; attr < attributeCount; attr++) {
+			for (int idx = 0; idx < ITEM_ATTRIBUTES; idx++) {
+				if (ByteSlice.equals(buf, attributeName[attr], attributeNameLength[attr], ITEM_ATTRIBUTE_NAMES[idx])) {
+					start[idx] = attributeValue[attr];
+					length[idx] = attributeValueLength[attr];
+					break;
+				}
+			}
+		}
+	}
+
+	private void applyItem(int[] start, int[] length, StldItemHandler handler) throws IOException,
+			InterruptedException {
+
+		if (start[CODE] >= 0) {
+			item.itemCode.set(buf, start[CODE], length[CODE]);
+		}
+		if (start[QTY] >= 0) {
+			item.itemQty = ByteSlice.parseInt(buf, start[QTY], length[QTY]);
+		}
+		if (start[UNIT_PRICE] >= 0) {
+			item.unitPrice.set(buf, start[UNIT_PRICE], length[UNIT_PRICE]);
+		}
+		if (start[TOTAL_PRICE] >= 0) {
+			item.itemTotalPrice.set(buf, start[TOTAL_PRICE], length[TOTAL_PRICE]);
+		}
+		if (start[LEVEL] >= 0) {
+			item.itemLevel.set(buf, start[LEVEL], length[LEVEL]);
+		}
+		if (start[QTY_PROMO] >= 0) {
+			item.itemQtyPromo.set(buf, start[QTY_PROMO], length[QTY_PROMO]);
+		}
+		if (start[TYPE] >= 0) {
+			item.itemType.set(buf, start[TYPE], length[TYPE]);
+			handler.item(item);
+		}
+	}
+
+	private boolean nameIs(byte[] name) {
+		return ByteSlice.equals(buf, nameStart, nameLength, name);
+	}
+
+	private int findAttribute(byte[] name) {
+
+		for (int attr = 0; attr < attributeCount; attr++) {
+			if (ByteSlice.equals(buf, attributeName[attr], attributeNameLength[attr], name)) {
+				return attr;
+			}
+		}
+		return -1;
+	}
+
+	/** Copies the attribute value, or clears the slice when it is missing. */
+	private void copyAttribute(byte[] name, ByteSlice target) {
+
+		int attr = findAttribute(name);
+		if (attr < 0) {
+			target.clear();
+		} else {
+			target.set(buf, attributeValue[attr], attributeValueLength[attr]);
+		}
+	}
+
+	private boolean nextChild() throws IOException, UnsupportedRecordException {
+
+		int token = next();
+		if (token == EOF) {
+			throw malformed();
+		}
+		return token == START;
+	}
+
+	private void skipToEnd() throws IOException, UnsupportedRecordException {
+
+		int depth = 1;
+
+		while (depth > 0) {
+			int token = next();
+
+			if (token == START) {
+				depth++;
+			} else if (token == END) {
+				depth--;
+			} else {
+				throw malformed();
+			}
+		}
+	}
+
+	/**
+	 * Moves to the next start or end tag. A self-closing tag is reported as a
+	 * start tag followed by an end tag, like StAX does. Text, comments,
+	 * processing instructions and CDATA sections are skipped.
+	 */
+	private int next() throws IOException, UnsupportedRecordException {
+
+		if (pendingEnd) {
+			pendingEnd = false;
+			return END;
+		}
+
+		while (true) {
+			while (pos < limit && buf[pos] != '<') {
+				pos++;
+			}
+			if (pos + 1 >= limit) {
+				return EOF;
+			}
+
+			byte marker = buf[pos + 1];
+
+			if (marker == '/') {
+				pos = skipPast((byte) '>', pos + 2);
+				return END;
+			}
+			if (marker == '?') {
+				pos = skipPast(PI_END, pos + 2);
+				continue;
+			}
+			if (marker == '!') {
+				if (startsWith(COMMENT_START, pos)) {
+					pos = skipPast(COMMENT_END, pos + COMMENT_START.length);
+				} else if (startsWith(CDATA_START, pos)) {
+					pos = skipPast(CDATA_END, pos + CDATA_START.length);
+				} else {
+					throw new UnsupportedRecordException();
+				}
+				continue;
+			}
+
+			readStartTag();
+			return START;
+		}
+	}
+
+	private void readStartTag() throws IOException {
+
+		pos++;
+		nameStart = pos;
+		while (pos < limit && !isNameEnd(buf[pos])) {
+			pos++;
+		}
+		nameLength = pos - nameStart;
+		if (nameLength == 0) {
+			throw malformed();
+		}
+
+		attributeCount = 0;
+
+		while (true) {
+			while (pos < limit && isWhitespace(buf[pos])) {
+				pos++;
+			}
+			if (pos >= limit) {
+				throw malformed();
+			}
+
+			if (buf[pos] == '>') {
+				pos++;
+				return;
+			}
+			if (buf[pos] == '/') {
+				if (pos + 1 >= limit || buf[pos + 1] != '>') {
+					throw malformed();
+				}
+				pos += 2;
+				pendingEnd = true;
+				return;
+			}
+
+			int name = pos;
+			while (pos < limit && buf[pos] != '=' && !isNameEnd(buf[pos])) {
+				pos++;
+			}
+			int nameLen = pos - name;
+			while (pos < limit && isWhitespace(buf[pos])) {
+				pos++;
+			}
+			if (nameLen == 0 || pos >= limit || buf[pos] != '=') {
+				throw malformed();
+			}
+			pos++;
+			while (pos < limit && isWhitespace(buf[pos])) {
+				pos++;
+			}
+			if (pos >= limit || (buf[pos] != '"' && buf[pos] != '\'')) {
+				throw malformed();
+			}
+
+			byte quote = buf[pos++];
+			int value = pos;
+			while (pos < limit && buf[pos] != quote) {
+				pos++;
+			}
+			if (pos >= limit) {
+				throw malformed();
+			}
+			addAttribute(name, nameLen, value, pos - value);
+			pos++;
+		}
+	}
+
+	private void addAttribute(int name, int nameLen, int value, int valueLen) {
+
+		if (attributeCount == attributeName.length) {
+			attributeName = grow(attributeName);
+			attributeNameLength = grow(attributeNameLength);
+			attributeValue = grow(attributeValue);
+			attributeValueLength = grow(attributeValueLength);
+		}
+		attributeName[attributeCount] = name;
+		attributeNameLength[attributeCount] = nameLen;
+		attributeValue[attributeCount] = value;
+		attributeValueLength[attributeCount] = valueLen;
+		attributeCount++;
+	}
+
+	private boolean startsWith(byte[] prefix, int at) {
+		return at + prefix.length <= limit && ByteSlice.equals(buf, at, prefix.length, prefix);
+	}
+
+	private int skipPast(byte value, int from) throws IOException {
+
+		int idx = ByteSlice.indexOf(buf, from, limit - from, value);
+		if (idx < 0) {
+			throw malformed();
+		}
+		return from + idx + 1;
+	}
+
+	private int skipPast(byte[] value, int from) throws IOException {
+
+		int idx = ByteSlice.indexOf(buf, from, limit - from, value);
+		if (idx < 0) {
+			throw malformed();
+		}
+		return from + idx + value.length;
+	}
+
+	private IOException malformed() {
+		return new IOException("Malformed STLD record near byte " + pos);
+	}
+
+	private static boolean isWhitespace(byte b) {
+		return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+	}
+
+	private static boolean isNameEnd(byte b) {
+		return isWhitespace(b) || b == '>' || b == '/';
+	}
+
+	private static int[] grow(int[] values) {
+
+		int[] grown = new int[values.length * 2];
+		System.arraycopy(values, 0, grown, 0, values.length);
+		return grown;
+	}
+
+	private static byte[] bytes(String ascii) {
+
+		byte[] value = new byte[ascii.length()];
+		for (int idx = 0; idx < value.length; idx++) {
+			value[idx] = (byte) ascii.charAt(idx);
+		}
+		return value;
+	}
+
+	private static class UnsupportedRecordException extends Exception {
+
+		private static final long serialVersionUID = 1L;
+	}
+
+}
@@ -0,0 +1,38 @@
+package com.asmath.stld;
+
+import com.asmath.util.ByteSlice;
+
+/**
+ * Raw attribute values of the current TLD, order and item, as UTF-8 bytes
+ * exactly as they appear in the XML; formatting is left to the handler. The
+ * slices are reused for every record.
+ *
+ * Item fields are only overwritten by attributes that are present, so a
+ * missing attribute keeps the value from the previous item. This is how the
+ * DOM mappers behave with their instance fields and is kept on purpose.
+ */
+public class StldItem {
+
+	public final ByteSlice storeId = new ByteSlice();
+	public final ByteSlice businessDate = new ByteSlice();
+	public final ByteSlice terrCd = new ByteSlice();
+
+	public final ByteSlice status = new ByteSlice();
+	public final ByteSlice pod = new ByteSlice();
+
+	public final ByteSlice orderKey = new ByteSlice();
+	public final ByteSlice saleType = new ByteSlice();
+	public final ByteSlice kind = new ByteSlice();
+	public final ByteSlice timestamp = new ByteSlice();
+	public final ByteSlice totalAmount = new ByteSlice();
+	public final ByteSlice nonProductAmount = new ByteSlice();
+
+	public final ByteSlice itemCode = new ByteSlice();
+	public final ByteSlice itemType = new ByteSlice();
+	public int itemQty = 0;
+	public final ByteSlice itemLevel = new ByteSlice();
+	public final ByteSlice itemTotalPrice = new ByteSlice();
+	public final ByteSlice unitPrice = new ByteSlice();
+	public final ByteSlice itemQtyPromo = new ByteSlice();
+
+}
@@ -0,0 +1,20 @@
+package com.asmath.stld;
+
+import java.io.IOException;
+
+/**
+ * Callback used by a {@link StldParser}. The same {@link StldItem} instance is
+ * passed to every call and is only valid until the call returns.
+ */
+public interface StldItemHandler {
+
+	/** Called once per TLD document, after storeId and businessDate are read. */
+	void tld(StldItem item) throws IOException, InterruptedException;
+
+	/** Called once per Paid TRX_Sale order, before any of its items. */
+	void order(StldItem item) throws IOException, InterruptedException;
+
+	/** Called once per item row, in document order. */
+	void item(StldItem item) throws IOException, InterruptedException;
+
+}
@@ -0,0 +1,231 @@
+package com.asmath.stld;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.text.ParseException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+import com.asmath.util.ByteSlice;
+import com.asmath.util.Money;
+import com.asmath.util.StldDateFormatter;
+
+/**
+ * One STLD item row as written by AsterExtractSTLDMapper and
+ * AsterExtractSTLDMenuItemMapper. The CSV form is the one the extract has
+ * always produced:
+ *
+ * <pre>
+ * tldBusinessDate,businessDate,storeId,orderKey,saleType,pod,kind,orderTimestamp,
+ * orderTotalAmount,itemCode,itemType,itemQty,itemLevel,itemTotalPrice[,productName]
+ * </pre>
+ *
+ * The Writable form stores the same fields as length prefixed bytes with the
+ * quantity as a vint. Instances are meant to be reused.
+ */
+public class StldItemRecord implements Writable {
+
+	public static final String OUTPUT_FORMAT = "asmath.stld.output.format";
+	public static final String CSV = "csv";
+	public static final String BINARY = "binary";
+	public static final String AVRO = "avro";
+	public static final String ORC = "orc";
+
+	/** Text outputs write amounts with two decimals. */
+	public static final int AMOUNT_SCALE = Money.CENTS;
+
+	/** Typed outputs keep amounts as longs in ten-thousandths, which hold the amounts of every currency. */
+	public static final int TYPED_AMOUNT_SCALE = Money.CURRENCY_SCALE;
+
+	/** Fraction digits the summary rows write amounts with at least, AMOUNT_SCALE by default; 3 for e.g. KWD. */
+	public static final String SCALE = "asmath.stld.amount.scale";
+
+	private static final byte DELIMITER = ',';
+
+	public final ByteSlice tldBusinessDate = new ByteSlice();
+	public final ByteSlice businessDate = new ByteSlice();
+	public final ByteSlice storeId = new ByteSlice();
+	public final ByteSlice orderKey = new ByteSlice();
+	public final ByteSlice saleType = new ByteSlice();
+	public final ByteSlice pod = new ByteSlice();
+	public final ByteSlice kind = new ByteSlice();
+	public final ByteSlice orderTimestamp = new ByteSlice();
+	public final ByteSlice orderTotalAmount = new ByteSlice();
+	public final ByteSlice itemCode = new ByteSlice();
+	public final ByteSlice itemType = new ByteSlice();
+	public int itemQty = 0;
+	public final ByteSlice itemLevel = new ByteSlice();
+	public final ByteSlice itemTotalPrice = new ByteSlice();
+
+	/** Only written when hasProductName is set, as the menu extract does. */
+	public boolean hasProductName = false;
+	public final ByteSlice productName = new ByteSlice();
+
+	private final ByteSlice[] beforeQty = { tldBusinessDate, businessDate, storeId, orderKey, saleType, pod, kind,
+			orderTimestamp, orderTotalAmount, itemCode, itemType };
+	private final ByteSlice[] afterQty = { itemLevel, itemTotalPrice };
+	private final byte[] orderDigits = new byte[StldDateFormatter.ORDER_DATE_LENGTH];
+
+	public static int getAmountScale(Configuration conf) {
+		return conf.getInt(SCALE, AMOUNT_SCALE);
+	}
+
+	public static boolean isBinaryOutput(Configuration conf) {
+		return BINARY.equalsIgnoreCase(conf.get(OUTPUT_FORMAT, CSV));
+	}
+
+	public static boolean isAvroOutput(Configuration conf) {
+		return AVRO.equalsIgnoreCase(conf.get(OUTPUT_FORMAT, CSV));
+	}
+
+	public static boolean isOrcOutput(Configuration conf) {
+		return ORC.equalsIgnoreCase(conf.get(OUTPUT_FORMAT, CSV));
+	}
+
+	/** True when the mappers should emit StldItemRecord values rather than CSV Text. */
+	public static boolean isRecordOutput(Configuration conf) {
+		return isBinaryOutput(conf) || isAvroOutput(conf) || isOrcOutput(conf);
+	}
+
+	public long businessDateMillis(StldDateFormatter formatter) throws ParseException {
+		return formatter.businessDateMillis(tldBusinessDate.getBytes(), 0, tldBusinessDate.getLength());
+	}
+
+	public int businessDateEpochDay(StldDateFormatter formatter) throws ParseException {
+		return formatter.businessDateEpochDay(tldBusinessDate.getBytes(), 0, tldBusinessDate.getLength());
+	}
+
+	/**
+	 * The record holds the formatted yyyy-MM-dd HH:mm:ss.SSS timestamp, its
+	 * digits are the original yyyyMMddHHmmssSSS value.
+	 */
+	public long orderTimestampMillis(StldDateFormatter formatter) throws ParseException {
+
+		byte[] bytes = orderTimestamp.getBytes();
+		int digits = 0;
+
+		for (int idx = 0; idx < orderTimestamp.getLength() && digits < orderDigits.length; idx++) {
+			if (bytes[idx] >= '0' && bytes[idx] <= '9') {
+				orderDigits[digits++] = bytes[idx];
+			}
+		}
+		return formatter.orderDateMillis(orderDigits, 0, digits);
+	}
+
+	/** Amounts at TYPED_AMOUNT_SCALE; empty amounts and levels count as 0. */
+	public long orderTotalScaled() {
+		return Money.parse(orderTotalAmount, TYPED_AMOUNT_SCALE);
+	}
+
+	public long itemTotalScaled() {
+		return Money.parse(itemTotalPrice, TYPED_AMOUNT_SCALE);
+	}
+
+	public int itemLevelValue() {
+		return itemLevel.isEmpty() ? 0 : itemLevel.parseInt();
+	}
+
+	/** Bytes writeCsv would append, without encoding the row. */
+	public int csvLength() {
+
+		int len = beforeQty.length + afterQty.length;
+		for (int idx = 0; idx < beforeQty.length; idx++) {
+			len += beforeQty[idx].getLength();
+		}
+		for (int idx = 0; idx < afterQty.length; idx++) {
+			len += afterQty[idx].getLength();
+		}
+
+		long qty = itemQty;
+		if (qty < 0) {
+			len++;
+			qty = -qty;
+		}
+		do {
+			len++;
+			qty /= 10;
+		} while (qty != 0);
+
+		if (hasProductName) {
+			len += 1 + productName.getLength();
+		}
+		return len;
+	}
+
+	/** Appends the CSV row to the encoder. */
+	public void writeCsv(StldRowEncoder encoder) {
+
+		for (int idx = 0; idx < beforeQty.length; idx++) {
+			encoder.append(beforeQty[idx]).append(DELIMITER);
+		}
+		encoder.appendInt(itemQty);
+		for (int idx = 0; idx < afterQty.length; idx++) {
+			encoder.append(DELIMITER).append(afterQty[idx]);
+		}
+		if (hasProductName) {
+			encoder.append(DELIMITER).append(productName);
+		}
+	}
+
+	@Override
+	public void write(DataOutput out) throws IOException {
+
+		for (int idx = 0; idx < beforeQty.length; idx++) {
+			writeSlice(out, beforeQty[idx]);
+		}
+		WritableUtils.writeVInt(out, itemQty);
+		for (int idx = 0; idx < afterQty.length; idx++) {
+			writeSlice(out, afterQty[idx]);
+		}
+		out.writeBoolean(hasProductName);
+		if (hasProductName) {
+			writeSlice(out, productName);
+		}
+	}
+
+	@Override
+	public void readFields(DataInput in) throws IOException {
+
+		for (int idx = 0; idx < beforeQty.length; idx++) {
+			readSlice(in, beforeQty[idx]);
+		}
+		itemQty = WritableUtils.readVInt(in);
+		for (int idx = 0; idx < afterQty.length; idx++) {
+			readSlice(in, afterQty[idx]);
+		}
+		hasProductName = in.readBoolean();
+		if (hasProductName) {
+			readSlice(in, productName);
+		} else {
+			productName.clear();
+		}
+	}
+
+	/** The CSV row, so TextOutputFormat writes records as the extract does. */
+	@Override
+	public String toString() {
+
+		StldRowEncoder encoder = new StldRowEncoder();
+		writeCsv(encoder);
+		try {
+			return new String(encoder.getBytes(), 0, encoder.getLength(), "UTF-8");
+		} catch (UnsupportedEncodingException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+
+	private static void writeSlice(DataOutput out, ByteSlice slice) throws IOException {
+
+		WritableUtils.writeVInt(out, slice.getLength());
+		out.write(slice.getBytes(), 0, slice.getLength());
+	}
+
+	private static void readSlice(DataInput in, ByteSlice slice) throws IOException {
+		slice.readFully(in, WritableUtils.readVInt(in));
+	}
+
+}
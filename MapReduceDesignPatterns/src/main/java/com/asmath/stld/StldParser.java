@@ -0,0 +1,13 @@
+package com.asmath.stld;
+
+/**
+ * Extraction engine for a single STLD <code>&lt;TLD&gt;</code> document.
+ * Implementations walk the TLD/Node/Event/TRX/Order/Item hierarchy and report
+ * every item row to a {@link StldItemHandler}. Engines keep parse state in
+ * instance fields, so an instance must only be used by one thread.
+ */
+public interface StldParser {
+
+	void parse(byte[] bytes, int offset, int length, StldItemHandler handler) throws Exception;
+
+}
@@ -0,0 +1,35 @@
+package com.asmath.stld;
+
+/**
+ * Selects the STLD extraction engine for a job, e.g.
+ * <code>-D asmath.stld.parser.engine=stax</code> or <code>bytes</code>. The
+ * default engine is the DOM code inside the mappers themselves.
+ */
+public final class StldParsers {
+
+	public static final String ENGINE = "asmath.stld.parser.engine";
+
+	public static final String DOM = "dom";
+	public static final String STAX = "stax";
+	public static final String BYTES = "bytes";
+
+	private StldParsers() {
+	}
+
+	public static boolean isDom(String engine) {
+		return engine == null || engine.isEmpty() || DOM.equalsIgnoreCase(engine);
+	}
+
+	public static StldParser newParser(String engine) {
+
+		if (STAX.equalsIgnoreCase(engine)) {
+			return new StldStaxParser();
+		}
+		if (BYTES.equalsIgnoreCase(engine)) {
+			return new StldByteParser();
+		}
+
+		throw new IllegalArgumentException("Unknown " + ENGINE + " value: " + engine);
+	}
+
+}
@@ -0,0 +1,93 @@
+package com.asmath.stld;
+
+import org.apache.hadoop.io.Text;
+
+import com.asmath.util.ByteSlice;
+
+/**
+ * Builds an output row by appending UTF-8 bytes to a buffer that is reused
+ * for every row, so encoding a row does not allocate once the buffer has
+ * grown to the longest row.
+ */
+public final class StldRowEncoder {
+
+	private byte[] buffer;
+	private int length = 0;
+
+	private final byte[] digits = new byte[11];
+
+	public StldRowEncoder() {
+		this(256);
+	}
+
+	public StldRowEncoder(int capacity) {
+		buffer = new byte[capacity];
+	}
+
+	public StldRowEncoder reset() {
+		length = 0;
+		return this;
+	}
+
+	public byte[] getBytes() {
+		return buffer;
+	}
+
+	public int getLength() {
+		return length;
+	}
+
+	public StldRowEncoder append(byte value) {
+
+		ensureCapacity(1);
+		buffer[length++] = value;
+		return this;
+	}
+
+	public StldRowEncoder append(ByteSlice value) {
+		return append(value.getBytes(), 0, value.getLength());
+	}
+
+	public StldRowEncoder append(byte[] value, int offset, int len) {
+
+		ensureCapacity(len);
+		System.arraycopy(value, offset, buffer, length, len);
+		length += len;
+		return this;
+	}
+
+	/** Appends the decimal digits of <code>value</code>, as String.valueOf would. */
+	public StldRowEncoder appendInt(int value) {
+
+		if (value == Integer.MIN_VALUE) {
+			append((byte) '-').append((byte) '2');
+			value = 147483648;
+		} else if (value < 0) {
+			append((byte) '-');
+			value = -value;
+		}
+
+		int pos = digits.length;
+		do {
+			digits[--pos] = (byte) ('0' + value % 10);
+			value /= 10;
+		} while (value != 0);
+
+		return append(digits, pos, digits.length - pos);
+	}
+
+	/** Copies the row into <code>text</code>, reusing the Text's own buffer. */
+	public void copyTo(Text text) {
+		text.set(buffer, 0, length);
+	}
+
+	private void ensureCapacity(int extra) {
+
+		if (length + extra > buffer.length) {
+			byte[] grown = new byte[Math.max(length + extra, buffer.length * 2)];
+			System.arraycopy(buffer, 0, grown, 0, length);
+			buffer = grown;
+		}
+	}
+
+}
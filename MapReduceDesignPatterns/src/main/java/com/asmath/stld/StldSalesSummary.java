@@ -0,0 +1,65 @@
+package com.asmath.stld;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+import com.asmath.util.Money;
+
+/**
+ * Transaction count and net amount of the Paid TRX_Sale orders of one
+ * store, business date, POD and sale type. An order counts as a transaction
+ * unless it is a Manager or Crew order with a zero net amount; the net amount
+ * is totalAmount less nonProductAmount, kept at Money.CURRENCY_SCALE so the
+ * three decimal currencies add up exactly.
+ */
+public class StldSalesSummary implements Writable {
+
+	public long tranCount = 0;
+	public long tranTotal = 0;
+
+	public void clear() {
+		tranCount = 0;
+		tranTotal = 0;
+	}
+
+	public void add(StldSalesSummary other) {
+		tranCount += other.tranCount;
+		tranTotal = Money.add(tranTotal, other.tranTotal);
+	}
+
+	/** Net amount with at least two decimals, as the extract writes amounts. */
+	public String getTranTotalAmount() {
+		return getTranTotalAmount(StldItemRecord.AMOUNT_SCALE);
+	}
+
+	/** Net amount with at least scale decimals, more when the currency has them. */
+	public String getTranTotalAmount(int scale) {
+		return Money.toString(tranTotal, Money.CURRENCY_SCALE, scale);
+	}
+
+	@Override
+	public void write(DataOutput out) throws IOException {
+		WritableUtils.writeVLong(out, tranCount);
+		WritableUtils.writeVLong(out, tranTotal);
+	}
+
+	@Override
+	public void readFields(DataInput in) throws IOException {
+		tranCount = WritableUtils.readVLong(in);
+		tranTotal = WritableUtils.readVLong(in);
+	}
+
+	@Override
+	public String toString() {
+		return toString(StldItemRecord.AMOUNT_SCALE);
+	}
+
+	public String toString(int scale) {
+		return tranCount + "," + getTranTotalAmount(scale);
+	}
+
+}
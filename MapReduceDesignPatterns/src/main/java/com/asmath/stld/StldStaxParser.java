@@ -0,0 +1,302 @@
+package com.asmath.stld;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Single pass StAX engine. Produces the same rows as the DOM code in
+ * AsterExtractSTLDMapper.getSalesSummary without building a Document:
+ * <ul>
+ * <li>only Node children of TLD and Event children of Node are inspected,</li>
+ * <li>the TRX is the first element under a TRX_Sale Event and the order is
+ * the first element under a Paid TRX,</li>
+ * <li>items are all Item elements below an order whose kind contains "Sale",
+ * and nothing is emitted unless the order holds more than one Item,</li>
+ * <li>a row is emitted for every Item that carries a type attribute.</li>
+ * </ul>
+ * The first Item of an order is held back until a second one shows up, which
+ * is the only buffering done.
+ */
+public class StldStaxParser implements StldStreamParser {
+
+	private static final int CODE = 0;
+	private static final int QTY = 1;
+	private static final int UNIT_PRICE = 2;
+	private static final int TOTAL_PRICE = 3;
+	private static final int LEVEL = 4;
+	private static final int QTY_PROMO = 5;
+	private static final int TYPE = 6;
+	private static final int ITEM_ATTRIBUTES = 7;
+
+	private static final byte[] PAID = { 'P', 'a', 'i', 'd' };
+	private static final byte[] SALE = { 'S', 'a', 'l', 'e' };
+
+	private final XMLInputFactory factory;
+	private final StldItem item;
+
+	private final String[] firstItem = new String[ITEM_ATTRIBUTES];
+	private final String[] currentItem = new String[ITEM_ATTRIBUTES];
+
+	public StldStaxParser() {
+		this(new StldItem());
+	}
+
+	/**
+	 * Shares item state with another engine, so carried-over item fields stay
+	 * consistent when records are handed between engines.
+	 */
+	public StldStaxParser(StldItem item) {
+
+		this.item = item;
+		factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+	}
+
+	@Override
+	public void parse(byte[] bytes, int offset, int length, StldItemHandler handler) throws Exception {
+
+		parse(new ByteArrayInputStream(bytes, offset, length), handler);
+	}
+
+	@Override
+	public void parse(InputStream in, StldItemHandler handler) throws Exception {
+
+		XMLStreamReader reader = factory.createXMLStreamReader(in);
+
+		try {
+			if (nextStartElement(reader) && reader.getLocalName().equals("TLD")) {
+				item.storeId.set(attribute(reader, "storeId"));
+				item.businessDate.set(attribute(reader, "businessDate"));
+				item.terrCd.set(attribute(reader, "gdwTerrCd"));
+				handler.tld(item);
+
+				while (nextChild(reader)) {
+					if (reader.getLocalName().equals("Node")) {
+						parseNode(reader, handler);
+					} else {
+						skipToEnd(reader);
+					}
+				}
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+	private void parseNode(XMLStreamReader reader, StldItemHandler handler) throws Exception {
+
+		while (nextChild(reader)) {
+			if (reader.getLocalName().equals("Event")) {
+				parseEvent(reader, handler);
+			} else {
+				skipToEnd(reader);
+			}
+		}
+	}
+
+	private void parseEvent(XMLStreamReader reader, StldItemHandler handler) throws Exception {
+
+		if (!attribute(reader, "Type").equals("TRX_Sale")) {
+			skipToEnd(reader);
+			return;
+		}
+
+		if (!nextChild(reader)) {
+			return;
+		}
+
+		item.status.set(attribute(reader, "status"));
+		item.pod.set(attribute(reader, "POD"));
+
+		boolean inTrx = true;
+
+		if (item.status.equalsBytes(PAID)) {
+			if (nextChild(reader)) {
+				parseOrder(reader, handler);
+			} else {
+				inTrx = false;
+			}
+		}
+
+		if (inTrx) {
+			skipToEnd(reader);
+		}
+		skipToEnd(reader);
+	}
+
+	private void parseOrder(XMLStreamReader reader, StldItemHandler handler) throws Exception {
+
+		item.orderKey.clear();
+		item.saleType.clear();
+		item.kind.clear();
+		item.timestamp.clear();
+		item.totalAmount.clear();
+		item.nonProductAmount.clear();
+
+		for (int idx = 0; idx < reader.getAttributeCount(); idx++) {
+			String name = reader.getAttributeLocalName(idx);
+
+			if (name.equals("key")) {
+				item.orderKey.set(reader.getAttributeValue(idx));
+			} else if (name.equals("saleType")) {
+				item.saleType.set(reader.getAttributeValue(idx));
+			} else if (name.equals("kind")) {
+				item.kind.set(reader.getAttributeValue(idx));
+			} else if (name.equals("Timestamp")) {
+				item.timestamp.set(reader.getAttributeValue(idx));
+			} else if (name.equals("totalAmount")) {
+				item.totalAmount.set(reader.getAttributeValue(idx));
+			} else if (name.equals("nonProductAmount")) {
+				item.nonProductAmount.set(reader.getAttributeValue(idx));
+			}
+		}
+
+		handler.order(item);
+
+		if (!item.kind.contains(SALE)) {
+			skipToEnd(reader);
+			return;
+		}
+
+		int itemCount = 0;
+		int depth = 1;
+
+		while (depth > 0) {
+			int event = reader.next();
+
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				depth++;
+
+				if (reader.getLocalName().equals("Item")) {
+					itemCount++;
+
+					if (itemCount == 1) {
+						readItem(reader, firstItem);
+					} else {
+						if (itemCount == 2) {
+							applyItem(firstItem, handler);
+						}
+						readItem(reader, currentItem);
+						applyItem(currentItem, handler);
+					}
+				}
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
+			}
+		}
+	}
+
+	private void readItem(XMLStreamReader reader, String[] values) {
+
+		for (int idx = 0; idx < ITEM_ATTRIBUTES; idx++) {
+			values[idx] = null;
+		}
+
+		for (int idx = 0; idx < reader.getAttributeCount(); idx++) {
+			String name = reader.getAttributeLocalName(idx);
+
+			if (name.equals("code")) {
+				values[CODE] = reader.getAttributeValue(idx);
+			} else if (name.equals("qty")) {
+				values[QTY] = reader.getAttributeValue(idx);
+			} else if (name.equals("unitPrice")) {
+				values[UNIT_PRICE] = reader.getAttributeValue(idx);
+			} else if (name.equals("totalPrice")) {
+				values[TOTAL_PRICE] = reader.getAttributeValue(idx);
+			} else if (name.equals("level")) {
+				values[LEVEL] = reader.getAttributeValue(idx);
+			} else if (name.equals("qtyPromo")) {
+				values[QTY_PROMO] = reader.getAttributeValue(idx);
+			} else if (name.equals("type")) {
+				values[TYPE] = reader.getAttributeValue(idx);
+			}
+		}
+	}
+
+	private void applyItem(String[] values, StldItemHandler handler) throws Exception {
+
+		if (values[CODE] != null) {
+			item.itemCode.set(values[CODE]);
+		}
+		if (values[QTY] != null) {
+			item.itemQty = Integer.parseInt(values[QTY]);
+		}
+		if (values[UNIT_PRICE] != null) {
+			item.unitPrice.set(values[UNIT_PRICE]);
+		}
+		if (values[TOTAL_PRICE] != null) {
+			item.itemTotalPrice.set(values[TOTAL_PRICE]);
+		}
+		if (values[LEVEL] != null) {
+			item.itemLevel.set(values[LEVEL]);
+		}
+		if (values[QTY_PROMO] != null) {
+			item.itemQtyPromo.set(values[QTY_PROMO]);
+		}
+		if (values[TYPE] != null) {
+			item.itemType.set(values[TYPE]);
+			handler.item(item);
+		}
+	}
+
+	private static String attribute(XMLStreamReader reader, String name) {
+
+		String value = reader.getAttributeValue(null, name);
+		return value == null ? "" : value;
+	}
+
+	private static boolean nextStartElement(XMLStreamReader reader) throws XMLStreamException {
+
+		while (reader.hasNext()) {
+			if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Moves to the next child element of the current element. Returns false,
+	 * positioned on the parent's end tag, when there are no more children.
+	 */
+	private static boolean nextChild(XMLStreamReader reader) throws XMLStreamException {
+
+		while (true) {
+			int event = reader.next();
+
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				return true;
+			}
+			if (event == XMLStreamConstants.END_ELEMENT) {
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Consumes the rest of the element the reader is inside of, up to and
+	 * including its end tag. The reader is inside an element when positioned
+	 * on its start tag or on the end tag of one of its children.
+	 */
+	private static void skipToEnd(XMLStreamReader reader) throws XMLStreamException {
+
+		int depth = 1;
+
+		while (depth > 0) {
+			int event = reader.next();
+
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				depth++;
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
+			}
+		}
+	}
+}
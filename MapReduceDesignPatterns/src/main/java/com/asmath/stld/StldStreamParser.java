@@ -0,0 +1,14 @@
+package com.asmath.stld;
+
+import java.io.InputStream;
+
+/**
+ * Engine that parses a <code>&lt;TLD&gt;</code> document while reading it from
+ * a stream, so a record is never held whole in memory; only its read buffer
+ * and the state of the current order are kept.
+ */
+public interface StldStreamParser extends StldParser {
+
+	void parse(InputStream in, StldItemHandler handler) throws Exception;
+
+}
@@ -0,0 +1,245 @@
+package com.asmath.util;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+
+/**
+ * Reusable UTF-8 byte string. Values are copied into a buffer owned by the
+ * slice, which only grows, so setting a value does not allocate once the
+ * buffer is large enough and the value stays valid after the source record
+ * buffer is reused.
+ */
+public final class ByteSlice {
+
+	private byte[] bytes;
+	private int length = 0;
+
+	public ByteSlice() {
+		this(16);
+	}
+
+	public ByteSlice(int capacity) {
+		bytes = new byte[capacity];
+	}
+
+	public byte[] getBytes() {
+		return bytes;
+	}
+
+	public int getLength() {
+		return length;
+	}
+
+	public boolean isEmpty() {
+		return length == 0;
+	}
+
+	public void clear() {
+		length = 0;
+	}
+
+	public void set(byte[] source, int offset, int len) {
+
+		if (len > bytes.length) {
+			bytes = new byte[Math.max(len, bytes.length * 2)];
+		}
+		System.arraycopy(source, offset, bytes, 0, len);
+		length = len;
+	}
+
+	/**
+	 * Makes room for <code>capacity</code> bytes and returns the buffer to write
+	 * into directly; follow with {@link #setLength(int)}. The current value is
+	 * not kept.
+	 */
+	public byte[] reserve(int capacity) {
+
+		if (capacity > bytes.length) {
+			bytes = new byte[Math.max(capacity, bytes.length * 2)];
+		}
+		length = 0;
+		return bytes;
+	}
+
+	public void setLength(int len) {
+
+		if (len < 0 || len > bytes.length) {
+			throw new IndexOutOfBoundsException("length " + len + ", capacity " + bytes.length);
+		}
+		length = len;
+	}
+
+	public void readFully(DataInput in, int len) throws IOException {
+
+		in.readFully(reserve(len), 0, len);
+		length = len;
+	}
+
+	public void set(ByteSlice other) {
+		set(other.bytes, 0, other.length);
+	}
+
+	public void set(String value) {
+
+		int len = value.length();
+		if (len > bytes.length) {
+			bytes = new byte[Math.max(len, bytes.length * 2)];
+		}
+
+		for (int idx = 0; idx < len; idx++) {
+			char ch = value.charAt(idx);
+			if (ch >= 0x80) {
+				setEncoded(value);
+				return;
+			}
+			bytes[idx] = (byte) ch;
+		}
+		length = len;
+	}
+
+	/** Decimal digits of the value, as Integer.toString writes them. */
+	public void setInt(int value) {
+
+		if (value == Integer.MIN_VALUE) {
+			set("-2147483648");
+			return;
+		}
+
+		int len = value < 0 ? 2 : 1;
+		for (int rest = value / 10; rest != 0; rest /= 10) {
+			len++;
+		}
+		reserve(len);
+
+		int pos = len;
+		int rest = value < 0 ? -value : value;
+		do {
+			bytes[--pos] = (byte) ('0' + rest % 10);
+			rest /= 10;
+		} while (rest != 0);
+		if (value < 0) {
+			bytes[0] = '-';
+		}
+		length = len;
+	}
+
+	private void setEncoded(String value) {
+
+		try {
+			byte[] encoded = value.getBytes("UTF-8");
+			set(encoded, 0, encoded.length);
+		} catch (UnsupportedEncodingException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+
+	/** Compares against an ASCII or pre-encoded UTF-8 constant. */
+	public boolean equalsBytes(byte[] other) {
+		return equals(bytes, 0, length, other);
+	}
+
+	public boolean contains(byte[] other) {
+		return indexOf(bytes, 0, length, other) >= 0;
+	}
+
+	/** Same result as Integer.parseInt(toString()), without the String. */
+	public int parseInt() {
+		return parseInt(bytes, 0, length);
+	}
+
+	@Override
+	public String toString() {
+
+		try {
+			return new String(bytes, 0, length, "UTF-8");
+		} catch (UnsupportedEncodingException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+
+	public static boolean equals(byte[] bytes, int offset, int len, byte[] other) {
+
+		if (len != other.length) {
+			return false;
+		}
+		for (int idx = 0; idx < len; idx++) {
+			if (bytes[offset + idx] != other[idx]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public static int indexOf(byte[] bytes, int offset, int len, byte[] other) {
+
+		int last = offset + len - other.length;
+
+		for (int idx = offset; idx <= last; idx++) {
+			int match = 0;
+			while (match < other.length && bytes[idx + match] == other[match]) {
+				match++;
+			}
+			if (match == other.length) {
+				return idx - offset;
+			}
+		}
+		return -1;
+	}
+
+	public static int indexOf(byte[] bytes, int offset, int len, byte value) {
+
+		for (int idx = offset; idx < offset + len; idx++) {
+			if (bytes[idx] == value) {
+				return idx - offset;
+			}
+		}
+		return -1;
+	}
+
+	public static int parseInt(byte[] bytes, int offset, int len) {
+
+		if (len == 0) {
+			throw new NumberFormatException("For input string: \"\"");
+		}
+
+		int idx = offset;
+		int end = offset + len;
+		boolean negative = false;
+
+		if (bytes[idx] == '-' || bytes[idx] == '+') {
+			negative = bytes[idx] == '-';
+			idx++;
+			if (idx == end) {
+				throw numberFormat(bytes, offset, len);
+			}
+		}
+
+		// accumulate negatively so Integer.MIN_VALUE parses like Integer.parseInt
+		int limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+		int result = 0;
+
+		for (; idx < end; idx++) {
+			int digit = bytes[idx] - '0';
+			if (digit < 0 || digit > 9 || result < limit / 10) {
+				throw numberFormat(bytes, offset, len);
+			}
+			result *= 10;
+			if (result < limit + digit) {
+				throw numberFormat(bytes, offset, len);
+			}
+			result -= digit;
+		}
+		return negative ? result : -result;
+	}
+
+	private static NumberFormatException numberFormat(byte[] bytes, int offset, int len) {
+
+		try {
+			return new NumberFormatException("For input string: \"" + new String(bytes, offset, len, "UTF-8") + "\"");
+		} catch (UnsupportedEncodingException ex) {
+			return new NumberFormatException();
+		}
+	}
+
+}
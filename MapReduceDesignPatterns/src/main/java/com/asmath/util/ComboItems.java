@@ -0,0 +1,67 @@
+package com.asmath.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+
+/**
+ * Components of the combos of Comboitems.psv,
+ * <code>comboId|comboName|componentId|componentName|qty</code>, as a
+ * compressed adjacency list, an IntTable keyed by combo id: the components of
+ * the combo at index <code>c</code> are at positions <code>start(c)</code> to
+ * <code>end(c)</code> of the component id and quantity columns. Ids are
+ * compared as ints, so 0014 in the file is item 14.
+ */
+public final class ComboItems {
+
+	public static final IntTable.Schema SCHEMA = new IntTable.Schema("combo item", 0)
+			.column(2, IntTable.Type.INT).column(4, IntTable.Type.INT);
+
+	private static final int COMPONENT_ID = 0;
+	private static final int QUANTITY = 1;
+
+	private final IntTable table;
+
+	public ComboItems(IntTable table) {
+		this.table = table;
+	}
+
+	/** Reads the file; blank lines and a header line are skipped. */
+	public static ComboItems load(BufferedReader in) throws IOException {
+		return new ComboItems(IntTable.load(new PsvReader(in), SCHEMA));
+	}
+
+	/** Index of the combo, -1 when the item is not one. */
+	public int find(int itemCode) {
+		return table.find(itemCode);
+	}
+
+	/** Index of the combo with the item code in digits, -1 when it is not one or not an int. */
+	public int find(ByteSlice itemCode) {
+		return table.find(itemCode);
+	}
+
+	public int start(int combo) {
+		return table.start(combo);
+	}
+
+	public int end(int combo) {
+		return table.end(combo);
+	}
+
+	public int getComponentId(int position) {
+		return table.getInt(position, COMPONENT_ID);
+	}
+
+	public int getQuantity(int position) {
+		return table.getInt(position, QUANTITY);
+	}
+
+	public int size() {
+		return table.keyCount();
+	}
+
+	public int componentCount() {
+		return table.rowCount();
+	}
+
+}
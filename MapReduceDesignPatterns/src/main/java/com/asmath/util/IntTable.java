@@ -0,0 +1,330 @@
+package com.asmath.util;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Immutable rows of a PSV file keyed by an int column. Distinct keys are kept
+ * sorted in one int array with the offsets of their rows, rows of a key in
+ * file order, and each column is one primitive or String array over all the
+ * rows, so a lookup is a binary search and no object is kept per row.
+ */
+public final class IntTable {
+
+	public static enum Type {
+		/** int field */
+		INT,
+		/** decimal field as a long of hundredths, empty is 0 */
+		CENTS,
+		/** decimal field as a long of ten-thousandths, for prices below a cent, empty is 0 */
+		TEN_THOUSANDTHS,
+		/** HH:mm:ss field as an int of seconds since midnight */
+		TIME,
+		/** text field, trimmed */
+		STRING,
+		/** text of the field and every field after it */
+		REST
+	}
+
+	/**
+	 * Key field and columns of a PSV file, columns numbered in the order they
+	 * are added. Immutable, each column makes a new schema.
+	 */
+	public static final class Schema {
+
+		private final String name;
+		private final int keyField;
+		private final int[] fields;
+		private final Type[] types;
+
+		public Schema(String name, int keyField) {
+			this(name, keyField, new int[0], new Type[0]);
+		}
+
+		private Schema(String name, int keyField, int[] fields, Type[] types) {
+			this.name = name;
+			this.keyField = keyField;
+			this.fields = fields;
+			this.types = types;
+		}
+
+		/** Schema with a column read from the field added. */
+		public Schema column(int field, Type type) {
+
+			int[] moreFields = Arrays.copyOf(fields, fields.length + 1);
+			Type[] moreTypes = Arrays.copyOf(types, types.length + 1);
+			moreFields[fields.length] = field;
+			moreTypes[types.length] = type;
+			return new Schema(name, keyField, moreFields, moreTypes);
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public int getKeyField() {
+			return keyField;
+		}
+
+		public int getColumnCount() {
+			return fields.length;
+		}
+
+		public Type getType(int column) {
+			return types[column];
+		}
+	}
+
+	private final Schema schema;
+	private final int[] keys;
+	private final int[] offsets;
+	private final Object[] columns;
+
+	private IntTable(Schema schema, int[] keys, int[] offsets, Object[] columns) {
+		this.schema = schema;
+		this.keys = keys;
+		this.offsets = offsets;
+		this.columns = columns;
+	}
+
+	/**
+	 * Reads the rows of the schema. Blank lines and a first line whose key
+	 * field is not a number, the header, are skipped.
+	 */
+	public static IntTable load(PsvReader in, Schema schema) throws IOException {
+
+		int columnCount = schema.fields.length;
+		Object[] columns = new Object[columnCount];
+		// one long per row, key high and row number low, sorted to group the keys
+		long[] rows = new long[256];
+		int count = 0;
+		HashMap<String, String> strings = new HashMap<String, String>();
+
+		for (int column = 0; column < columnCount; column++) {
+			columns[column] = newColumn(schema.types[column], rows.length);
+		}
+
+		while (in.next()) {
+			if (in.getLineNumber() == 1
+					&& (schema.keyField >= in.getFieldCount() || !in.isNumeric(schema.keyField))) {
+				continue;
+			}
+
+			if (count == rows.length) {
+				rows = Arrays.copyOf(rows, count * 2);
+				for (int column = 0; column < columnCount; column++) {
+					columns[column] = grow(columns[column], count * 2);
+				}
+			}
+
+			try {
+				rows[count] = ((long) in.getInt(schema.keyField) << 32) | count;
+				for (int column = 0; column < columnCount; column++) {
+					int field = schema.fields[column];
+					switch (schema.types[column]) {
+					case INT:
+						((int[]) columns[column])[count] = in.getInt(field);
+						break;
+					case CENTS:
+						((long[]) columns[column])[count] = in.getScaledLong(field, 2);
+						break;
+					case TEN_THOUSANDTHS:
+						((long[]) columns[column])[count] = in.getScaledLong(field, 4);
+						break;
+					case TIME:
+						((int[]) columns[column])[count] = in.getSecondOfDay(field);
+						break;
+					case STRING:
+						((String[]) columns[column])[count] = intern(strings, in.getString(field));
+						break;
+					case REST:
+						((String[]) columns[column])[count] = intern(strings, in.getRest(field));
+						break;
+					}
+				}
+			} catch (IllegalArgumentException ex) {
+				throw new IOException("Bad " + schema.name + " at line " + in.getLineNumber() + ": " + in.getLine(), ex);
+			}
+			count++;
+		}
+
+		Arrays.sort(rows, 0, count);
+
+		int keyCount = 0;
+		for (int idx = 0; idx < count; idx++) {
+			if (idx == 0 || (rows[idx] >> 32) != (rows[idx - 1] >> 32)) {
+				keyCount++;
+			}
+		}
+
+		int[] keys = new int[keyCount];
+		int[] offsets = new int[keyCount + 1];
+		int[] order = new int[count];
+		int key = -1;
+
+		for (int idx = 0; idx < count; idx++) {
+			int value = (int) (rows[idx] >> 32);
+			if (key < 0 || keys[key] != value) {
+				keys[++key] = value;
+				offsets[key] = idx;
+			}
+			order[idx] = (int) rows[idx];
+		}
+		offsets[keyCount] = count;
+
+		Object[] sorted = new Object[columnCount];
+		for (int column = 0; column < columnCount; column++) {
+			sorted[column] = permute(columns[column], order);
+		}
+		return new IntTable(schema, keys, offsets, sorted);
+	}
+
+	private static Object newColumn(Type type, int size) {
+
+		switch (type) {
+		case CENTS:
+		case TEN_THOUSANDTHS:
+			return new long[size];
+		case STRING:
+		case REST:
+			return new String[size];
+		default:
+			return new int[size];
+		}
+	}
+
+	private static Object grow(Object column, int size) {
+
+		if (column instanceof int[]) {
+			return Arrays.copyOf((int[]) column, size);
+		}
+		if (column instanceof long[]) {
+			return Arrays.copyOf((long[]) column, size);
+		}
+		return Arrays.copyOf((String[]) column, size);
+	}
+
+	private static Object permute(Object column, int[] order) {
+
+		if (column instanceof int[]) {
+			int[] from = (int[]) column;
+			int[] to = new int[order.length];
+			for (int idx = 0; idx < order.length; idx++) {
+				to[idx] = from[order[idx]];
+			}
+			return to;
+		}
+		if (column instanceof long[]) {
+			long[] from = (long[]) column;
+			long[] to = new long[order.length];
+			for (int idx = 0; idx < order.length; idx++) {
+				to[idx] = from[order[idx]];
+			}
+			return to;
+		}
+		String[] from = (String[]) column;
+		String[] to = new String[order.length];
+		for (int idx = 0; idx < order.length; idx++) {
+			to[idx] = from[order[idx]];
+		}
+		return to;
+	}
+
+	// names repeat across rows, a combo's name on each of its components
+	private static String intern(HashMap<String, String> strings, String value) {
+
+		String interned = strings.get(value);
+		if (interned == null) {
+			strings.put(value, value);
+			interned = value;
+		}
+		return interned;
+	}
+
+	public Schema getSchema() {
+		return schema;
+	}
+
+	/** Index of the key, -1 when no row has it. */
+	public int find(int key) {
+		int idx = Arrays.binarySearch(keys, key);
+		return idx < 0 ? -1 : idx;
+	}
+
+	/** Index of a key given in digits, -1 when no row has it or it is not an int. */
+	public int find(ByteSlice key) {
+
+		byte[] bytes = key.getBytes();
+		int len = key.getLength();
+		if (len == 0 || len > 9) {
+			return -1;
+		}
+
+		int value = 0;
+		for (int idx = 0; idx < len; idx++) {
+			int digit = bytes[idx] - '0';
+			if (digit < 0 || digit > 9) {
+				return -1;
+			}
+			value = value * 10 + digit;
+		}
+		return find(value);
+	}
+
+	public int getKey(int keyIndex) {
+		return keys[keyIndex];
+	}
+
+	/** First row of the key at the index. */
+	public int start(int keyIndex) {
+		return offsets[keyIndex];
+	}
+
+	/** Row after the last row of the key at the index. */
+	public int end(int keyIndex) {
+		return offsets[keyIndex + 1];
+	}
+
+	public int getInt(int row, int column) {
+		return ((int[]) columns[column])[row];
+	}
+
+	public long getLong(int row, int column) {
+		return ((long[]) columns[column])[row];
+	}
+
+	public String getString(int row, int column) {
+		return ((String[]) columns[column])[row];
+	}
+
+	public int keyCount() {
+		return keys.length;
+	}
+
+	public int rowCount() {
+		return offsets[keys.length];
+	}
+
+	/** Approximate bytes held by the arrays of the table. */
+	public long sizeInBytes() {
+
+		long bytes = 4L * keys.length + 4L * offsets.length;
+		for (int column = 0; column < columns.length; column++) {
+			Object values = columns[column];
+			if (values instanceof int[]) {
+				bytes += 4L * ((int[]) values).length;
+			} else if (values instanceof long[]) {
+				bytes += 8L * ((long[]) values).length;
+			} else {
+				String[] strings = (String[]) values;
+				bytes += 4L * strings.length;
+				for (int idx = 0; idx < strings.length; idx++) {
+					bytes += 2L * strings[idx].length();
+				}
+			}
+		}
+		return bytes;
+	}
+
+}
@@ -0,0 +1,283 @@
+package com.asmath.util;
+
+import java.io.UnsupportedEncodingException;
+
+/**
+ * Fixed point amounts held in a long as the value times 10^scale, so 12.50 at
+ * the extract's scale of 2 is 1250 cents. Amounts are parsed straight from
+ * the bytes or characters of an attribute, add, subtract and multiply are
+ * exact and throw ArithmeticException on overflow, and formatting writes the
+ * plain decimal with scale fraction digits, as BigDecimal.toPlainString does,
+ * so an amount round trips without a BigDecimal per value.
+ *
+ * A scale drops no digit only if the currency has no more fraction digits:
+ * 1.255 Kuwaiti dinars does not parse at CENTS. Amounts of any territory are
+ * parsed at CURRENCY_SCALE and written at the scale the output wants with
+ * {@link #toString(long, int, int)}. The ByteSlice and String overloads
+ * count an empty amount as 0; the byte and character overloads reject it.
+ */
+public final class Money {
+
+	/** Scale of the STLD amounts, hundredths. */
+	public static final int CENTS = 2;
+
+	/** Most fraction digits of an ISO 4217 currency, an amount of any territory parses at it. */
+	public static final int CURRENCY_SCALE = 4;
+
+	private static final long[] POWERS = new long[19];
+
+	static {
+		POWERS[0] = 1;
+		for (int idx = 1; idx < POWERS.length; idx++) {
+			POWERS[idx] = POWERS[idx - 1] * 10;
+		}
+	}
+
+	private Money() {
+	}
+
+	/** Amount in cents, 0 when empty. */
+	public static long parse(ByteSlice amount) {
+		return parse(amount, CENTS);
+	}
+
+	/** Amount times 10^scale, 0 when empty. */
+	public static long parse(ByteSlice amount, int scale) {
+		return amount.isEmpty() ? 0 : parse(amount.getBytes(), 0, amount.getLength(), scale);
+	}
+
+	/** Amount in cents, 0 when null or empty. */
+	public static long parse(String amount) {
+		return parse(amount, CENTS);
+	}
+
+	/** Amount times 10^scale, 0 when null or empty. */
+	public static long parse(String amount, int scale) {
+		return amount == null || amount.isEmpty() ? 0 : parse(amount, 0, amount.length(), scale);
+	}
+
+	/**
+	 * Parses a decimal such as <code>-12.5</code> into a long holding the value
+	 * times 10^scale, so 12.5 at scale 2 is 1250. Fraction digits beyond the
+	 * scale must be zero, the value is never rounded.
+	 */
+	public static long parse(byte[] bytes, int offset, int len, int scale) {
+
+		checkScale(scale);
+		int idx = offset;
+		int end = offset + len;
+		boolean negative = false;
+
+		if (idx < end && (bytes[idx] == '-' || bytes[idx] == '+')) {
+			negative = bytes[idx] == '-';
+			idx++;
+		}
+
+		long result = 0;
+		int digits = 0;
+		int fraction = -1;
+
+		for (; idx < end; idx++) {
+			if (bytes[idx] == '.' && fraction < 0) {
+				fraction = 0;
+				continue;
+			}
+			int digit = bytes[idx] - '0';
+			if (digit < 0 || digit > 9) {
+				throw numberFormat(bytes, offset, len);
+			}
+			digits++;
+			if (fraction >= 0 && ++fraction > scale) {
+				if (digit != 0) {
+					throw numberFormat(bytes, offset, len);
+				}
+				continue;
+			}
+			if (result > (Long.MAX_VALUE - digit) / 10) {
+				throw numberFormat(bytes, offset, len);
+			}
+			result = result * 10 + digit;
+		}
+		if (digits == 0) {
+			throw numberFormat(bytes, offset, len);
+		}
+
+		long unit = POWERS[scale - Math.max(Math.min(fraction, scale), 0)];
+		if (result > Long.MAX_VALUE / unit) {
+			throw numberFormat(bytes, offset, len);
+		}
+		result *= unit;
+		return negative ? -result : result;
+	}
+
+	/** As {@link #parse(byte[], int, int, int)}, over the characters from start to end. */
+	public static long parse(CharSequence chars, int start, int end, int scale) {
+
+		checkScale(scale);
+		int idx = start;
+		boolean negative = false;
+
+		if (idx < end && (chars.charAt(idx) == '-' || chars.charAt(idx) == '+')) {
+			negative = chars.charAt(idx) == '-';
+			idx++;
+		}
+
+		long result = 0;
+		int digits = 0;
+		int fraction = -1;
+
+		for (; idx < end; idx++) {
+			char ch = chars.charAt(idx);
+			if (ch == '.' && fraction < 0) {
+				fraction = 0;
+				continue;
+			}
+			int digit = ch - '0';
+			if (digit < 0 || digit > 9) {
+				throw numberFormat(chars, start, end);
+			}
+			digits++;
+			if (fraction >= 0 && ++fraction > scale) {
+				if (digit != 0) {
+					throw numberFormat(chars, start, end);
+				}
+				continue;
+			}
+			if (result > (Long.MAX_VALUE - digit) / 10) {
+				throw numberFormat(chars, start, end);
+			}
+			result = result * 10 + digit;
+		}
+		if (digits == 0) {
+			throw numberFormat(chars, start, end);
+		}
+
+		long unit = POWERS[scale - Math.max(Math.min(fraction, scale), 0)];
+		if (result > Long.MAX_VALUE / unit) {
+			throw numberFormat(chars, start, end);
+		}
+		result *= unit;
+		return negative ? -result : result;
+	}
+
+	public static long add(long amount, long other) {
+
+		long result = amount + other;
+		// overflow when both operands have the sign the result lacks
+		if (((amount ^ result) & (other ^ result)) < 0) {
+			throw new ArithmeticException("Amount overflow: " + amount + " + " + other);
+		}
+		return result;
+	}
+
+	public static long subtract(long amount, long other) {
+
+		long result = amount - other;
+		if (((amount ^ other) & (amount ^ result)) < 0) {
+			throw new ArithmeticException("Amount overflow: " + amount + " - " + other);
+		}
+		return result;
+	}
+
+	/** Amount times a whole factor such as an item quantity, at the amount's scale. */
+	public static long multiply(long amount, long factor) {
+
+		long result = amount * factor;
+		if (((Math.abs(amount) | Math.abs(factor)) >>> 31) != 0) {
+			if ((factor != 0 && result / factor != amount) || (amount == Long.MIN_VALUE && factor == -1)) {
+				throw new ArithmeticException("Amount overflow: " + amount + " * " + factor);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Amount at another scale, e.g. ten-thousandths to cents. Going to a
+	 * smaller scale must not drop non zero digits.
+	 */
+	public static long rescale(long amount, int scale, int newScale) {
+
+		checkScale(scale);
+		checkScale(newScale);
+		if (newScale >= scale) {
+			return multiply(amount, POWERS[newScale - scale]);
+		}
+		long unit = POWERS[scale - newScale];
+		if (amount % unit != 0) {
+			throw new ArithmeticException("Amount " + toString(amount, scale) + " has digits beyond scale " + newScale);
+		}
+		return amount / unit;
+	}
+
+	/** Cents with two decimals, as the extract writes amounts. */
+	public static String toString(long amount) {
+		return toString(amount, CENTS);
+	}
+
+	public static String toString(long amount, int scale) {
+		return append(new StringBuilder(24), amount, scale).toString();
+	}
+
+	/**
+	 * Amount at the given scale written with at least minScale fraction
+	 * digits, trailing zeros beyond them dropped: 12500 at scale 4 is 1.25
+	 * with minScale 2, 12550 is 1.255.
+	 */
+	public static String toString(long amount, int scale, int minScale) {
+
+		checkScale(minScale);
+		while (scale > minScale && amount % 10 == 0) {
+			amount /= 10;
+			scale--;
+		}
+		if (scale < minScale) {
+			amount = rescale(amount, scale, minScale);
+			scale = minScale;
+		}
+		return toString(amount, scale);
+	}
+
+	/** Appends the amount with scale fraction digits, e.g. -0.05 for -5 at scale 2. */
+	public static StringBuilder append(StringBuilder out, long amount, int scale) {
+
+		checkScale(scale);
+		if (scale == 0) {
+			return out.append(amount);
+		}
+
+		long unit = POWERS[scale];
+		long whole = amount / unit;
+		long fraction = amount % unit;
+		if (amount < 0) {
+			out.append('-');
+			whole = -whole;
+			fraction = -fraction;
+		}
+		out.append(whole).append('.');
+		for (long pad = unit / 10; pad > fraction && pad > 1; pad /= 10) {
+			out.append('0');
+		}
+		return out.append(fraction);
+	}
+
+	private static void checkScale(int scale) {
+
+		if (scale < 0 || scale >= POWERS.length) {
+			throw new IllegalArgumentException("Scale " + scale + " is not between 0 and " + (POWERS.length - 1));
+		}
+	}
+
+	private static NumberFormatException numberFormat(byte[] bytes, int offset, int len) {
+
+		try {
+			return new NumberFormatException("For input string: \"" + new String(bytes, offset, len, "UTF-8") + "\"");
+		} catch (UnsupportedEncodingException ex) {
+			return new NumberFormatException();
+		}
+	}
+
+	private static NumberFormatException numberFormat(CharSequence chars, int start, int end) {
+		return new NumberFormatException("For input string: \"" + chars.subSequence(start, end) + "\"");
+	}
+
+}
@@ -0,0 +1,88 @@
+package com.asmath.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Primary menu item of each secondary item of primarytosecondary.psv,
+ * <code>primaryId|primaryName|primaryPosName|secondaryId|secondaryName|secondaryPosName</code>,
+ * as a dense int array indexed by the secondary item number. Item numbers
+ * are small, under 10000 in the file, so a lookup is one array read.
+ */
+public final class PrimaryItems {
+
+	public static final IntTable.Schema SCHEMA = new IntTable.Schema("primary to secondary item", 3).column(0,
+			IntTable.Type.INT);
+
+	public static final int NONE = -1;
+
+	private static final int PRIMARY_ID = 0;
+
+	private final int[] primaries;
+	private final int size;
+
+	/** Dense table of the rows keyed by secondary item; a secondary item listed twice keeps its last primary. */
+	public PrimaryItems(IntTable table) {
+
+		int keyCount = table.keyCount();
+		if (keyCount > 0 && table.getKey(0) < 0) {
+			throw new IllegalArgumentException("Negative secondary item " + table.getKey(0));
+		}
+
+		primaries = new int[keyCount == 0 ? 0 : table.getKey(keyCount - 1) + 1];
+		Arrays.fill(primaries, NONE);
+		for (int key = 0; key < keyCount; key++) {
+			primaries[table.getKey(key)] = table.getInt(table.end(key) - 1, PRIMARY_ID);
+		}
+		size = keyCount;
+	}
+
+	/** Reads the file; blank lines and the header line are skipped. */
+	public static PrimaryItems load(BufferedReader in) throws IOException {
+		return new PrimaryItems(IntTable.load(new PsvReader(in), SCHEMA));
+	}
+
+	/** Primary item of the item, NONE when it is not a secondary item. */
+	public int get(int item) {
+		return item >= 0 && item < primaries.length ? primaries[item] : NONE;
+	}
+
+	/**
+	 * Replaces an item code in digits by its primary item, false when it is
+	 * not a secondary item and is left as it is.
+	 */
+	public boolean remap(ByteSlice itemCode) {
+
+		byte[] bytes = itemCode.getBytes();
+		int len = itemCode.getLength();
+		if (len == 0 || len > 9) {
+			return false;
+		}
+
+		int item = 0;
+		for (int idx = 0; idx < len; idx++) {
+			int digit = bytes[idx] - '0';
+			if (digit < 0 || digit > 9) {
+				return false;
+			}
+			item = item * 10 + digit;
+			if (item >= primaries.length) {
+				return false;
+			}
+		}
+
+		int primary = primaries[item];
+		if (primary == NONE || primary == item) {
+			return false;
+		}
+		itemCode.setInt(primary);
+		return true;
+	}
+
+	/** Number of secondary items. */
+	public int size() {
+		return size;
+	}
+
+}
@@ -0,0 +1,249 @@
+package com.asmath.util;
+
+import java.util.HashMap;
+
+/**
+ * Product names of the menu cache by store id and product id. Numeric ids are
+ * packed into one long key of an open addressing table whose values index a
+ * dictionary of distinct names, so a lookup builds no String and a name shared
+ * by many stores is held once. Ids that do not survive a round trip through an
+ * int, such as "007", fall back to a HashMap keyed by storeId|productId.
+ */
+public final class ProductNameMap {
+
+	/** Key of ids that are not plain non negative ints. */
+	public static final long NO_KEY = -1L;
+
+	private static final int NONE = -1;
+	private static final int MIN_CAPACITY = 16;
+
+	private long[] keys;
+	// dictionary index + 1, 0 marks an empty slot
+	private int[] values;
+	private int mask;
+	private int size = 0;
+
+	private String[] names = new String[64];
+	private int nameCount = 0;
+	private final HashMap<String, Integer> nameIndex = new HashMap<String, Integer>();
+
+	private final HashMap<String, String> other = new HashMap<String, String>();
+
+	public ProductNameMap() {
+		this(1024);
+	}
+
+	public ProductNameMap(int expected) {
+
+		int capacity = MIN_CAPACITY;
+		while (capacity < expected * 2) {
+			capacity <<= 1;
+		}
+		allocate(capacity);
+	}
+
+	public static long key(int storeId, int productId) {
+		return ((long) storeId << 32) | (productId & 0xffffffffL);
+	}
+
+	public static long key(String storeId, String productId) {
+
+		int store = parseId(storeId);
+		int product = parseId(productId);
+		return store == NONE || product == NONE ? NO_KEY : key(store, product);
+	}
+
+	public static long key(ByteSlice storeId, ByteSlice productId) {
+
+		int store = parseId(storeId.getBytes(), 0, storeId.getLength());
+		int product = parseId(productId.getBytes(), 0, productId.getLength());
+		return store == NONE || product == NONE ? NO_KEY : key(store, product);
+	}
+
+	/** Adds or replaces the name of a product, like HashMap.put. */
+	public void put(String storeId, String productId, String name) {
+
+		long key = key(storeId, productId);
+
+		if (key == NO_KEY) {
+			other.put(storeId + "|" + productId, name);
+		} else {
+			put(key, intern(name));
+		}
+	}
+
+	/** Name of the product, null when the store has no such product. */
+	public String get(String storeId, String productId) {
+
+		long key = key(storeId, productId);
+
+		if (key == NO_KEY) {
+			return other.isEmpty() ? null : other.get(storeId + "|" + productId);
+		}
+		return get(key);
+	}
+
+	public String get(ByteSlice storeId, ByteSlice productId) {
+
+		long key = key(storeId, productId);
+
+		if (key == NO_KEY) {
+			return other.isEmpty() ? null : other.get(storeId + "|" + productId);
+		}
+		return get(key);
+	}
+
+	/** Adds or replaces the names of every product of the other map. */
+	public void putAll(ProductNameMap from) {
+
+		for (int idx = 0; idx < from.keys.length; idx++) {
+			if (from.values[idx] != 0) {
+				put(from.keys[idx], intern(from.names[from.values[idx] - 1]));
+			}
+		}
+		other.putAll(from.other);
+	}
+
+	public String get(long key) {
+
+		int slot = slot(key);
+		while (values[slot] != 0) {
+			if (keys[slot] == key) {
+				return names[values[slot] - 1];
+			}
+			slot = (slot + 1) & mask;
+		}
+		return null;
+	}
+
+	public int size() {
+		return size + other.size();
+	}
+
+	/** Number of distinct names held. */
+	public int nameCount() {
+		return nameCount;
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/** Approximate bytes held, for the JVM cache. */
+	public long sizeInBytes() {
+
+		long bytes = 12L * keys.length + 4L * names.length;
+		for (int idx = 0; idx < nameCount; idx++) {
+			// the name and its nameIndex entry
+			bytes += 2L * names[idx].length() + 48;
+		}
+		for (String key : other.keySet()) {
+			bytes += 2L * (key.length() + other.get(key).length()) + 48;
+		}
+		return bytes;
+	}
+
+	private void put(long key, int name) {
+
+		if ((size + 1) * 2 > keys.length) {
+			rehash(keys.length * 2);
+		}
+
+		int slot = slot(key);
+		while (values[slot] != 0) {
+			if (keys[slot] == key) {
+				values[slot] = name + 1;
+				return;
+			}
+			slot = (slot + 1) & mask;
+		}
+		keys[slot] = key;
+		values[slot] = name + 1;
+		size++;
+	}
+
+	private int intern(String name) {
+
+		Integer idx = nameIndex.get(name);
+		if (idx != null) {
+			return idx.intValue();
+		}
+
+		if (nameCount == names.length) {
+			String[] grown = new String[names.length * 2];
+			System.arraycopy(names, 0, grown, 0, nameCount);
+			names = grown;
+		}
+		names[nameCount] = name;
+		nameIndex.put(name, Integer.valueOf(nameCount));
+		return nameCount++;
+	}
+
+	private void allocate(int capacity) {
+
+		keys = new long[capacity];
+		values = new int[capacity];
+		mask = capacity - 1;
+	}
+
+	private void rehash(int capacity) {
+
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+
+		allocate(capacity);
+		for (int idx = 0; idx < oldKeys.length; idx++) {
+			if (oldValues[idx] != 0) {
+				int slot = slot(oldKeys[idx]);
+				while (values[slot] != 0) {
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = oldKeys[idx];
+				values[slot] = oldValues[idx];
+			}
+		}
+	}
+
+	private int slot(long key) {
+
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32)) & mask;
+	}
+
+	/** Non negative int written without sign or leading zeros, NONE otherwise. */
+	static int parseId(String value) {
+
+		int len = value.length();
+		if (len == 0 || len > 10 || (len > 1 && value.charAt(0) == '0')) {
+			return NONE;
+		}
+
+		long result = 0;
+		for (int idx = 0; idx < len; idx++) {
+			int digit = value.charAt(idx) - '0';
+			if (digit < 0 || digit > 9) {
+				return NONE;
+			}
+			result = result * 10 + digit;
+		}
+		return result > Integer.MAX_VALUE ? NONE : (int) result;
+	}
+
+	static int parseId(byte[] bytes, int offset, int len) {
+
+		if (len == 0 || len > 10 || (len > 1 && bytes[offset] == '0')) {
+			return NONE;
+		}
+
+		long result = 0;
+		for (int idx = offset; idx < offset + len; idx++) {
+			int digit = bytes[idx] - '0';
+			if (digit < 0 || digit > 9) {
+				return NONE;
+			}
+			result = result * 10 + digit;
+		}
+		return result > Integer.MAX_VALUE ? NONE : (int) result;
+	}
+
+}
@@ -0,0 +1,195 @@
+package com.asmath.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Reads pipe separated lines a field at a time. The field bounds of a line
+ * are found in one pass into reused offset arrays and fields are parsed in
+ * place, so reading a line does not split it into substrings. Fields are
+ * trimmed, the PSV files pad names with blanks.
+ */
+public final class PsvReader {
+
+	private static final char PIPE = '|';
+
+	private final BufferedReader in;
+	private String line = null;
+	private int lineNumber = 0;
+	private int fieldCount = 0;
+	private int[] starts = new int[16];
+	private int[] ends = new int[16];
+
+	public PsvReader(BufferedReader in) {
+		this.in = in;
+	}
+
+	/** Moves to the next line that is not blank, false at the end of the input. */
+	public boolean next() throws IOException {
+
+		while ((line = in.readLine()) != null) {
+			lineNumber++;
+			if (split()) {
+				return true;
+			}
+		}
+		fieldCount = 0;
+		return false;
+	}
+
+	private boolean split() {
+
+		int len = line.length();
+		int start = 0;
+		fieldCount = 0;
+
+		for (int idx = 0; idx <= len; idx++) {
+			if (idx == len || line.charAt(idx) == PIPE) {
+				if (fieldCount == starts.length) {
+					starts = Arrays.copyOf(starts, fieldCount * 2);
+					ends = Arrays.copyOf(ends, fieldCount * 2);
+				}
+				int from = start;
+				int to = idx;
+				while (from < to && line.charAt(from) <= ' ') {
+					from++;
+				}
+				while (to > from && line.charAt(to - 1) <= ' ') {
+					to--;
+				}
+				starts[fieldCount] = from;
+				ends[fieldCount] = to;
+				fieldCount++;
+				start = idx + 1;
+			}
+		}
+		return fieldCount > 1 || ends[0] > starts[0];
+	}
+
+	public String getLine() {
+		return line;
+	}
+
+	public int getLineNumber() {
+		return lineNumber;
+	}
+
+	public int getFieldCount() {
+		return fieldCount;
+	}
+
+	public boolean isEmpty(int field) {
+		return ends[check(field)] == starts[field];
+	}
+
+	/** True when the field starts with a digit or sign, false for a header or label. */
+	public boolean isNumeric(int field) {
+
+		check(field);
+		if (ends[field] == starts[field]) {
+			return false;
+		}
+		char ch = line.charAt(starts[field]);
+		return (ch >= '0' && ch <= '9') || ch == '-' || ch == '+';
+	}
+
+	public String getString(int field) {
+		return line.substring(starts[check(field)], ends[field]);
+	}
+
+	/** The field and every field after it, for a last column whose text may hold a pipe. */
+	public String getRest(int field) {
+		return line.substring(starts[check(field)], ends[fieldCount - 1]);
+	}
+
+	/** Same result as Integer.parseInt of the trimmed field. */
+	public int getInt(int field) {
+
+		int from = starts[check(field)];
+		int to = ends[field];
+		if (from == to) {
+			throw numberFormat(field);
+		}
+
+		boolean negative = false;
+		char first = line.charAt(from);
+		if (first == '-' || first == '+') {
+			negative = first == '-';
+			if (++from == to) {
+				throw numberFormat(field);
+			}
+		}
+
+		long value = 0;
+		for (int idx = from; idx < to; idx++) {
+			int digit = line.charAt(idx) - '0';
+			if (digit < 0 || digit > 9) {
+				throw numberFormat(field);
+			}
+			value = value * 10 + digit;
+			if (value > (negative ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE)) {
+				throw numberFormat(field);
+			}
+		}
+		return (int) (negative ? -value : value);
+	}
+
+	/**
+	 * Decimal field times 10^scale, so 5.39 at scale 2 is 539; an empty field
+	 * is 0. Fraction digits beyond the scale must be zero.
+	 */
+	public long getScaledLong(int field, int scale) {
+
+		int from = starts[check(field)];
+		int to = ends[field];
+		if (from == to) {
+			return 0;
+		}
+		try {
+			return Money.parse(line, from, to, scale);
+		} catch (NumberFormatException ex) {
+			throw numberFormat(field);
+		}
+	}
+
+	/** HH:mm:ss field as seconds since midnight. */
+	public int getSecondOfDay(int field) {
+
+		int from = starts[check(field)];
+		int to = ends[field];
+		int seconds = 0;
+		int part = 0;
+		int parts = 1;
+
+		for (int idx = from; idx < to; idx++) {
+			char ch = line.charAt(idx);
+			if (ch == ':') {
+				seconds = seconds * 60 + part;
+				part = 0;
+				parts++;
+			} else if (ch >= '0' && ch <= '9') {
+				part = part * 10 + (ch - '0');
+			} else {
+				throw new NumberFormatException("Not HH:mm:ss: " + getString(field));
+			}
+		}
+		if (parts != 3 || from == to || line.charAt(to - 1) == ':') {
+			throw new NumberFormatException("Not HH:mm:ss: " + getString(field));
+		}
+		return seconds * 60 + part;
+	}
+
+	private int check(int field) {
+
+		if (field < 0 || field >= fieldCount) {
+			throw new NumberFormatException("No field " + field + " in " + fieldCount + " fields");
+		}
+		return field;
+	}
+
+	private NumberFormatException numberFormat(int field) {
+		return new NumberFormatException("For input string: \"" + getString(field) + "\"");
+	}
+
+}
@@ -0,0 +1,340 @@
+package com.asmath.util;
+
+import java.io.UnsupportedEncodingException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * Converts the fixed width STLD dates without SimpleDateFormat:
+ * <ul>
+ * <li>businessDate <code>yyyyMMdd</code> to <code>yyyy-MM-dd</code>,</li>
+ * <li>order Timestamp <code>yyyyMMddHHmmssSSS</code> to
+ * <code>yyyy-MM-dd HH:mm:ss.SSS</code>,</li>
+ * </ul>
+ * and optionally to epoch milliseconds. The result is the same as the mappers'
+ * getFormatedBusinessDate/getFormatedOrderDate. Values are only handled
+ * directly when they are exactly 8 or 17 digits, form a valid Gregorian date
+ * and time after 1600 and are not within a day of a time zone offset change.
+ * Everything else (short or long input, rolled-over fields, DST transition
+ * days, ...) goes through the lenient SimpleDateFormat path as before.
+ *
+ * Instances hold no mutable state and are safe to share between threads.
+ */
+public final class StldDateFormatter {
+
+	public static final int BUSINESS_DATE_LENGTH = 8;
+	public static final int ORDER_DATE_LENGTH = 17;
+
+	public static final int FORMATTED_BUSINESS_DATE_LENGTH = 10;
+	public static final int FORMATTED_ORDER_DATE_LENGTH = 23;
+
+	// room for anything the lenient legacy path can produce
+	private static final int MAX_FORMATTED_LENGTH = 64;
+
+	private static final String BUSINESS_DATE_PATTERN = "yyyyMMdd";
+	private static final String ORDER_DATE_PATTERN = "yyyyMMddHHmmssSSS";
+	private static final String FORMATTED_BUSINESS_DATE_PATTERN = "yyyy-MM-dd";
+	private static final String FORMATTED_ORDER_DATE_PATTERN = "yyyy-MM-dd HH:mm:ss.SSS";
+
+	private static final long MILLIS_PER_DAY = 86400000L;
+	private static final int MIN_YEAR = 1600;
+
+	// returned by the field checks when the value has to take the SimpleDateFormat path
+	private static final long INVALID = Long.MIN_VALUE;
+
+	private static final StldDateFormatter DEFAULT = new StldDateFormatter();
+
+	private final TimeZone zone;
+
+	public StldDateFormatter() {
+		this(TimeZone.getDefault());
+	}
+
+	public StldDateFormatter(TimeZone zone) {
+		this.zone = (TimeZone) zone.clone();
+	}
+
+	/** Shared instance for the JVM default time zone. */
+	public static StldDateFormatter getInstance() {
+		return DEFAULT;
+	}
+
+	public String formatBusinessDate(String date) throws ParseException {
+
+		if (date.length() == BUSINESS_DATE_LENGTH && localMillis(date, BUSINESS_DATE_LENGTH) != INVALID) {
+			char[] out = new char[FORMATTED_BUSINESS_DATE_LENGTH];
+			copyDate(date, out);
+			return new String(out);
+		}
+		return legacyFormat(date, BUSINESS_DATE_PATTERN, FORMATTED_BUSINESS_DATE_PATTERN);
+	}
+
+	public String formatOrderDate(String date) throws ParseException {
+
+		if (date.length() == ORDER_DATE_LENGTH && localMillis(date, ORDER_DATE_LENGTH) != INVALID) {
+			char[] out = new char[FORMATTED_ORDER_DATE_LENGTH];
+			copyDate(date, out);
+			out[10] = ' ';
+			out[11] = date.charAt(8);
+			out[12] = date.charAt(9);
+			out[13] = ':';
+			out[14] = date.charAt(10);
+			out[15] = date.charAt(11);
+			out[16] = ':';
+			out[17] = date.charAt(12);
+			out[18] = date.charAt(13);
+			out[19] = '.';
+			out[20] = date.charAt(14);
+			out[21] = date.charAt(15);
+			out[22] = date.charAt(16);
+			return new String(out);
+		}
+		return legacyFormat(date, ORDER_DATE_PATTERN, FORMATTED_ORDER_DATE_PATTERN);
+	}
+
+	/**
+	 * Writes the formatted business date into <code>dst</code> and returns the
+	 * number of bytes written (10 unless the legacy path rolled the date over
+	 * into a longer year).
+	 */
+	public int formatBusinessDate(byte[] src, int offset, int length, byte[] dst, int dstOffset)
+			throws ParseException {
+
+		if (length == BUSINESS_DATE_LENGTH && localMillis(src, offset, BUSINESS_DATE_LENGTH) != INVALID) {
+			copyDate(src, offset, dst, dstOffset);
+			return FORMATTED_BUSINESS_DATE_LENGTH;
+		}
+		return legacyFormat(src, offset, length, dst, dstOffset, BUSINESS_DATE_PATTERN,
+				FORMATTED_BUSINESS_DATE_PATTERN);
+	}
+
+	/** Writes the formatted order date into <code>dst</code>, see formatBusinessDate. */
+	public int formatOrderDate(byte[] src, int offset, int length, byte[] dst, int dstOffset)
+			throws ParseException {
+
+		if (length == ORDER_DATE_LENGTH && localMillis(src, offset, ORDER_DATE_LENGTH) != INVALID) {
+			copyDate(src, offset, dst, dstOffset);
+			dst[dstOffset + 10] = ' ';
+			dst[dstOffset + 11] = src[offset + 8];
+			dst[dstOffset + 12] = src[offset + 9];
+			dst[dstOffset + 13] = ':';
+			dst[dstOffset + 14] = src[offset + 10];
+			dst[dstOffset + 15] = src[offset + 11];
+			dst[dstOffset + 16] = ':';
+			dst[dstOffset + 17] = src[offset + 12];
+			dst[dstOffset + 18] = src[offset + 13];
+			dst[dstOffset + 19] = '.';
+			dst[dstOffset + 20] = src[offset + 14];
+			dst[dstOffset + 21] = src[offset + 15];
+			dst[dstOffset + 22] = src[offset + 16];
+			return FORMATTED_ORDER_DATE_LENGTH;
+		}
+		return legacyFormat(src, offset, length, dst, dstOffset, ORDER_DATE_PATTERN, FORMATTED_ORDER_DATE_PATTERN);
+	}
+
+	public void formatBusinessDate(ByteSlice date, ByteSlice formatted) throws ParseException {
+		formatted.setLength(formatBusinessDate(date.getBytes(), 0, date.getLength(),
+				formatted.reserve(MAX_FORMATTED_LENGTH), 0));
+	}
+
+	public void formatOrderDate(ByteSlice date, ByteSlice formatted) throws ParseException {
+		formatted.setLength(formatOrderDate(date.getBytes(), 0, date.getLength(),
+				formatted.reserve(MAX_FORMATTED_LENGTH), 0));
+	}
+
+	/** Epoch milliseconds of a <code>yyyyMMdd</code> business date in this formatter's zone. */
+	public long businessDateMillis(byte[] src, int offset, int length) throws ParseException {
+		return toMillis(src, offset, length, BUSINESS_DATE_LENGTH, BUSINESS_DATE_PATTERN);
+	}
+
+	/** Days since 1970-01-01 of a <code>yyyyMMdd</code> business date, as Hive stores a DATE. */
+	public int businessDateEpochDay(byte[] src, int offset, int length) throws ParseException {
+
+		long millis = businessDateMillis(src, offset, length);
+		long local = millis + zone.getOffset(millis);
+		return (int) (local >= 0 ? local / MILLIS_PER_DAY : (local - MILLIS_PER_DAY + 1) / MILLIS_PER_DAY);
+	}
+
+	/** Epoch milliseconds of a <code>yyyyMMddHHmmssSSS</code> timestamp in this formatter's zone. */
+	public long orderDateMillis(byte[] src, int offset, int length) throws ParseException {
+		return toMillis(src, offset, length, ORDER_DATE_LENGTH, ORDER_DATE_PATTERN);
+	}
+
+	private long toMillis(byte[] src, int offset, int length, int expected, String pattern)
+			throws ParseException {
+
+		if (length == expected) {
+			long local = localMillis(src, offset, expected);
+			if (local != INVALID) {
+				return local - zone.getOffset(local - zone.getRawOffset());
+			}
+		}
+		return legacyParser(pattern).parse(decode(src, offset, length)).getTime();
+	}
+
+	/**
+	 * Validates 8 or 17 digit input and returns its wall clock time as
+	 * milliseconds since 1970-01-01 in UTC, or INVALID when the value must
+	 * take the legacy path.
+	 */
+	private long localMillis(byte[] src, int offset, int length) {
+
+		for (int idx = offset; idx < offset + length; idx++) {
+			if (src[idx] < '0' || src[idx] > '9') {
+				return INVALID;
+			}
+		}
+
+		int year = digits(src, offset, 4);
+		int month = digits(src, offset + 4, 2);
+		int day = digits(src, offset + 6, 2);
+
+		if (length == BUSINESS_DATE_LENGTH) {
+			return localMillis(year, month, day, 0, 0, 0, 0);
+		}
+		return localMillis(year, month, day, digits(src, offset + 8, 2), digits(src, offset + 10, 2),
+				digits(src, offset + 12, 2), digits(src, offset + 14, 3));
+	}
+
+	private long localMillis(String src, int length) {
+
+		for (int idx = 0; idx < length; idx++) {
+			if (src.charAt(idx) < '0' || src.charAt(idx) > '9') {
+				return INVALID;
+			}
+		}
+
+		int year = digits(src, 0, 4);
+		int month = digits(src, 4, 2);
+		int day = digits(src, 6, 2);
+
+		if (length == BUSINESS_DATE_LENGTH) {
+			return localMillis(year, month, day, 0, 0, 0, 0);
+		}
+		return localMillis(year, month, day, digits(src, 8, 2), digits(src, 10, 2), digits(src, 12, 2),
+				digits(src, 14, 3));
+	}
+
+	private long localMillis(int year, int month, int day, int hour, int minute, int second, int millis) {
+
+		if (year < MIN_YEAR || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)
+				|| hour > 23 || minute > 59 || second > 59) {
+			return INVALID;
+		}
+
+		long local = epochDay(year, month, day) * MILLIS_PER_DAY + hour * 3600000L + minute * 60000L
+				+ second * 1000L + millis;
+
+		// a wall clock time near an offset change may not exist or be ambiguous
+		long instant = local - zone.getRawOffset();
+		int offset = zone.getOffset(instant);
+		if (zone.getOffset(instant - MILLIS_PER_DAY) != offset || zone.getOffset(instant + MILLIS_PER_DAY) != offset) {
+			return INVALID;
+		}
+		return local;
+	}
+
+	private static int daysInMonth(int year, int month) {
+
+		switch (month) {
+		case 2:
+			boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+			return leap ? 29 : 28;
+		case 4:
+		case 6:
+		case 9:
+		case 11:
+			return 30;
+		default:
+			return 31;
+		}
+	}
+
+	/** Days since 1970-01-01 of a proleptic Gregorian date. */
+	private static long epochDay(int year, int month, int day) {
+
+		int y = month <= 2 ? year - 1 : year;
+		int era = y / 400;
+		int yearOfEra = y - era * 400;
+		int monthIndex = month > 2 ? month - 3 : month + 9;
+		int dayOfYear = (153 * monthIndex + 2) / 5 + day - 1;
+		int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		return era * 146097L + dayOfEra - 719468L;
+	}
+
+	private static int digits(byte[] src, int offset, int count) {
+
+		int value = 0;
+		for (int idx = offset; idx < offset + count; idx++) {
+			value = value * 10 + (src[idx] - '0');
+		}
+		return value;
+	}
+
+	private static int digits(String src, int offset, int count) {
+
+		int value = 0;
+		for (int idx = offset; idx < offset + count; idx++) {
+			value = value * 10 + (src.charAt(idx) - '0');
+		}
+		return value;
+	}
+
+	private static void copyDate(String src, char[] out) {
+
+		src.getChars(0, 4, out, 0);
+		out[4] = '-';
+		src.getChars(4, 6, out, 5);
+		out[7] = '-';
+		src.getChars(6, 8, out, 8);
+	}
+
+	private static void copyDate(byte[] src, int offset, byte[] dst, int dstOffset) {
+
+		System.arraycopy(src, offset, dst, dstOffset, 4);
+		dst[dstOffset + 4] = '-';
+		dst[dstOffset + 5] = src[offset + 4];
+		dst[dstOffset + 6] = src[offset + 5];
+		dst[dstOffset + 7] = '-';
+		dst[dstOffset + 8] = src[offset + 6];
+		dst[dstOffset + 9] = src[offset + 7];
+	}
+
+	private SimpleDateFormat legacyParser(String pattern) {
+
+		SimpleDateFormat format = new SimpleDateFormat(pattern);
+		format.setTimeZone(zone);
+		return format;
+	}
+
+	private String legacyFormat(String date, String inputPattern, String outputPattern) throws ParseException {
+
+		Date parsed = legacyParser(inputPattern).parse(date);
+		return legacyParser(outputPattern).format(parsed);
+	}
+
+	private int legacyFormat(byte[] src, int offset, int length, byte[] dst, int dstOffset, String inputPattern,
+			String outputPattern) throws ParseException {
+
+		String formatted = legacyFormat(decode(src, offset, length), inputPattern, outputPattern);
+		try {
+			byte[] encoded = formatted.getBytes("UTF-8");
+			System.arraycopy(encoded, 0, dst, dstOffset, encoded.length);
+			return encoded.length;
+		} catch (UnsupportedEncodingException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+
+	private static String decode(byte[] src, int offset, int length) {
+
+		try {
+			return new String(src, offset, length, "UTF-8");
+		} catch (UnsupportedEncodingException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+
+}
@@ -0,0 +1,132 @@
+package com.asmath.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Day segments of TimeSegment.psv, <code>id|HH:mm:ss|HH:mm:ss|territory|type</code>,
+ * kept per territory as arrays of start and end seconds sorted by start, so
+ * the segment of a time is a binary search over ints.
+ */
+public final class TimeSegments {
+
+	private final HashMap<Integer, Intervals> territories = new HashMap<Integer, Intervals>();
+
+	/** Segments of one territory. */
+	public static final class Intervals {
+
+		private final int[] starts;
+		private final int[] ends;
+		private final int[] ids;
+
+		Intervals(int[] starts, int[] ends, int[] ids) {
+			this.starts = starts;
+			this.ends = ends;
+			this.ids = ids;
+		}
+
+		/** Id of the segment holding the second of the day, -1 when none does. */
+		public int find(int secondOfDay) {
+
+			int low = 0;
+			int high = starts.length - 1;
+			int found = -1;
+
+			while (low <= high) {
+				int mid = (low + high) >>> 1;
+				if (starts[mid] <= secondOfDay) {
+					found = mid;
+					low = mid + 1;
+				} else {
+					high = mid - 1;
+				}
+			}
+			return found >= 0 && secondOfDay <= ends[found] ? ids[found] : -1;
+		}
+
+		public int size() {
+			return ids.length;
+		}
+	}
+
+	public static final IntTable.Schema SCHEMA = new IntTable.Schema("time segment", 3)
+			.column(0, IntTable.Type.INT).column(1, IntTable.Type.TIME).column(2, IntTable.Type.TIME)
+			.column(4, IntTable.Type.STRING);
+
+	private static final int ID = 0;
+	private static final int START = 1;
+	private static final int END = 2;
+	private static final int TYPE = 3;
+
+	/** The segments of the given type, e.g. "Half Hourly", of a table read with SCHEMA. */
+	public TimeSegments(IntTable table, String type) {
+
+		for (int key = 0; key < table.keyCount(); key++) {
+			List<int[]> list = new ArrayList<int[]>();
+			for (int row = table.start(key); row < table.end(key); row++) {
+				if (table.getString(row, TYPE).equalsIgnoreCase(type)) {
+					list.add(new int[] { table.getInt(row, START), table.getInt(row, END), table.getInt(row, ID) });
+				}
+			}
+			if (list.isEmpty()) {
+				continue;
+			}
+
+			Collections.sort(list, new Comparator<int[]>() {
+				public int compare(int[] a, int[] b) {
+					return a[0] < b[0] ? -1 : (a[0] == b[0] ? 0 : 1);
+				}
+			});
+
+			int[] starts = new int[list.size()];
+			int[] ends = new int[list.size()];
+			int[] ids = new int[list.size()];
+			for (int idx = 0; idx < list.size(); idx++) {
+				starts[idx] = list.get(idx)[0];
+				ends[idx] = list.get(idx)[1];
+				ids[idx] = list.get(idx)[2];
+			}
+			territories.put(Integer.valueOf(table.getKey(key)), new Intervals(starts, ends, ids));
+		}
+	}
+
+	/** Reads the segments of the given type, e.g. "Half Hourly"; blank lines are skipped. */
+	public static TimeSegments load(BufferedReader in, String type) throws IOException {
+		return new TimeSegments(IntTable.load(new PsvReader(in), SCHEMA), type);
+	}
+
+	/** Segments of the territory, null when the file has none. */
+	public Intervals get(int territory) {
+		return territories.get(Integer.valueOf(territory));
+	}
+
+	/**
+	 * Seconds since midnight of an STLD Timestamp such as 20150226180623596,
+	 * read from the HHmmss digits without parsing the date; -1 when too short
+	 * or not digits.
+	 */
+	public static int secondOfDay(ByteSlice timestamp) {
+
+		if (timestamp.getLength() < 14) {
+			return -1;
+		}
+
+		byte[] bytes = timestamp.getBytes();
+		int seconds = 0;
+		for (int idx = 8; idx < 14; idx += 2) {
+			int tens = bytes[idx] - '0';
+			int units = bytes[idx + 1] - '0';
+			if (tens < 0 || tens > 9 || units < 0 || units > 9) {
+				return -1;
+			}
+			seconds = seconds * 60 + tens * 10 + units;
+		}
+		return seconds;
+	}
+
+}
@@ -0,0 +1,153 @@
+package com.asmath.mapreduce;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.junit.After;
+import org.junit.Test;
+
+public class StldStreamRecordReaderTest {
+
+	// a line with children, a self-closing TLD, an empty line and a last line without end of line
+	private static final String LINES = "<TLD id=\"1\"><Order/></TLD>\n<TLD id=\"2\"/>\n\n<TLD id=\"3\">x</TLD>";
+
+	private File file;
+
+	@After
+	public void tearDown() {
+		if (file != null) {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void readsWholeFile() throws Exception {
+
+		write(LINES);
+		assertEquals(Arrays.asList("0:<TLD id=\"1\"><Order/></TLD>", "27:<TLD id=\"2\"/>", "41:", "42:<TLD id=\"3\">x</TLD>"),
+				read(0, file.length(), -1));
+	}
+
+	@Test
+	public void lineStartingAtSplitEndGoesToFirstSplit() throws Exception {
+
+		// as with LineRecordReader, a split reads the line starting at its end and the next split skips it
+		write(LINES);
+		assertEquals(2, read(0, 27, -1).size());
+		assertEquals(2, read(27, file.length() - 27, -1).size());
+		assertSplitsMatchWholeFile(27);
+	}
+
+	@Test
+	public void lineStraddlingSplitEndGoesToFirstSplit() throws Exception {
+
+		write(LINES);
+		List<String> first = read(0, 33, -1);
+		assertEquals(2, first.size());
+		assertEquals("27:<TLD id=\"2\"/>", first.get(1));
+		assertSplitsMatchWholeFile(33);
+	}
+
+	@Test
+	public void selfClosingLineAtSplitEnd() throws Exception {
+
+		write(LINES);
+		assertEquals(Arrays.asList("41:", "42:<TLD id=\"3\">x</TLD>"), read(28, file.length() - 28, -1));
+		assertSplitsMatchWholeFile(40);
+	}
+
+	@Test
+	public void everySplitPointReadsEachLineOnce() throws Exception {
+
+		write(LINES);
+		// FileInputFormat makes no empty split at 0, which like LineRecordReader would read the first line
+		for (long split = 1; split <= file.length(); split++) {
+			assertSplitsMatchWholeFile(split);
+		}
+	}
+
+	@Test
+	public void unreadBytesAreSkipped() throws Exception {
+
+		write(LINES);
+		assertEquals(Arrays.asList("0:<TL", "27:<TL", "41:", "42:<TL"), read(0, file.length(), 3));
+	}
+
+	@Test
+	public void linesLongerThanTheBuffer() throws Exception {
+
+		char[] big = new char[150 * 1024];
+		Arrays.fill(big, 'x');
+		String line = "<TLD>" + new String(big) + "</TLD>";
+		write(line + "\n" + line + "\n<TLD/>\n");
+
+		List<String> records = read(0, file.length(), -1);
+		assertEquals(3, records.size());
+		assertEquals("0:" + line, records.get(0));
+		for (long split : new long[] { 1, 64 * 1024, line.length(), line.length() + 1, 2 * line.length() + 2 }) {
+			assertSplitsMatchWholeFile(split);
+		}
+	}
+
+	private void assertSplitsMatchWholeFile(long split) throws Exception {
+
+		List<String> records = read(0, split, -1);
+		records.addAll(read(split, file.length() - split, -1));
+		assertEquals("split at " + split, read(0, file.length(), -1), records);
+	}
+
+	private void write(String text) throws IOException {
+
+		file = File.createTempFile("StldStreamRecordReaderTest", ".txt");
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(text.getBytes("UTF-8"));
+		} finally {
+			out.close();
+		}
+	}
+
+	/** Records of the split as offset:line, reading at most maxBytes of each line when not -1. */
+	private List<String> read(long start, long length, int maxBytes) throws IOException, InterruptedException {
+
+		Configuration conf = new Configuration();
+		TaskAttemptContext context = new TaskAttemptContext(conf, new TaskAttemptID());
+		StldStreamRecordReader reader = new StldStreamRecordReader();
+		List<String> records = new ArrayList<String>();
+		byte[] chunk = new byte[1000];
+
+		reader.initialize(new FileSplit(new Path(file.toURI()), start, length, null), context);
+		try {
+			while (reader.nextKeyValue()) {
+				RecordInputStream in = reader.getCurrentValue();
+				ByteArrayOutputStream line = new ByteArrayOutputStream();
+				if (maxBytes < 0) {
+					for (int read = in.read(chunk, 0, chunk.length); read != -1; read = in.read(chunk, 0, chunk.length)) {
+						line.write(chunk, 0, read);
+					}
+				} else {
+					for (int idx = 0, b = in.read(); idx < maxBytes && b != -1; idx++, b = in.read()) {
+						line.write(b);
+					}
+				}
+				records.add(reader.getCurrentKey().get() + ":" + line.toString("UTF-8"));
+			}
+		} finally {
+			reader.close();
+		}
+		return records;
+	}
+
+}
@@ -0,0 +1,113 @@
+package com.asmath.mapreduce;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class XmlRecordReaderTest {
+
+	// a partial "<TL" right before a tag, a self-closing tag and a tag with children
+	private static final String DOCUMENT = "<Root><TL<TLD id=\"1\"/>\n<TLD id=\"2\"><Order/></TLD>\n<TLDX/><TLD id=\"3\">x</TLD>\n</Root>";
+
+	private File file;
+
+	@Before
+	public void setUp() throws IOException {
+
+		file = File.createTempFile("XmlRecordReaderTest", ".xml");
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(DOCUMENT.getBytes("UTF-8"));
+		} finally {
+			out.close();
+		}
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+
+	@Test
+	public void readsWholeFile() throws Exception {
+
+		List<String> records = read(0, file.length());
+		assertEquals(3, records.size());
+		assertEquals("9:<TLD id=\"1\"/>", records.get(0));
+		assertEquals("23:<TLD id=\"2\"><Order/></TLD>", records.get(1));
+		assertEquals("57:<TLD id=\"3\">x</TLD>", records.get(2));
+	}
+
+	@Test
+	public void recordStartingAtSplitEndGoesToNextSplit() throws Exception {
+
+		// the '<' of the first TLD is the first byte after the split, right after a partial "<TL"
+		assertEquals(0, read(0, 9).size());
+		assertEquals(3, read(9, file.length() - 9).size());
+		assertSplitsMatchWholeFile(9);
+	}
+
+	@Test
+	public void recordStraddlingSplitEndGoesToFirstSplit() throws Exception {
+
+		List<String> first = read(0, 30);
+		assertEquals(2, first.size());
+		assertEquals("23:<TLD id=\"2\"><Order/></TLD>", first.get(1));
+		assertSplitsMatchWholeFile(30);
+	}
+
+	@Test
+	public void selfClosingTagAtSplitEnd() throws Exception {
+
+		assertEquals(1, read(0, 10).size());
+		assertEquals(2, read(10, file.length() - 10).size());
+		assertSplitsMatchWholeFile(10);
+	}
+
+	@Test
+	public void everySplitPointReadsEachRecordOnce() throws Exception {
+
+		for (long split = 0; split <= file.length(); split++) {
+			assertSplitsMatchWholeFile(split);
+		}
+	}
+
+	private void assertSplitsMatchWholeFile(long split) throws Exception {
+
+		List<String> records = read(0, split);
+		records.addAll(read(split, file.length() - split));
+		assertEquals("split at " + split, read(0, file.length()), records);
+	}
+
+	private List<String> read(long start, long length) throws IOException, InterruptedException {
+
+		Configuration conf = new Configuration();
+		TaskAttemptContext context = new TaskAttemptContext(conf, new TaskAttemptID());
+		XmlRecordReader reader = new XmlRecordReader(XmlInputFormat.TLD_TAG);
+		List<String> records = new ArrayList<String>();
+
+		reader.initialize(new FileSplit(new Path(file.toURI()), start, length, null), context);
+		try {
+			while (reader.nextKeyValue()) {
+				records.add(reader.getCurrentKey().get() + ":" + reader.getCurrentValue().toString());
+			}
+		} finally {
+			reader.close();
+		}
+		return records;
+	}
+
+}
@@ -0,0 +1,212 @@
+package com.asmath.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.UnsupportedEncodingException;
+import java.math.BigDecimal;
+
+import org.junit.Test;
+
+public class MoneyTest {
+
+	@Test
+	public void parsesSign() {
+
+		assertEquals(-5, Money.parse("-0.05"));
+		assertEquals(310, Money.parse("+3.10"));
+		assertEquals(0, Money.parse("-0"));
+		assertEquals(-1250, parseBytes("-12.5", Money.CENTS));
+	}
+
+	@Test
+	public void parsesWithoutFractionOrWholeDigits() {
+
+		assertEquals(1200, Money.parse("12"));
+		assertEquals(1200, Money.parse("12."));
+		assertEquals(50, Money.parse(".5"));
+		assertEquals(7, Money.parse("7", 0));
+	}
+
+	@Test
+	public void acceptsTrailingZerosBeyondTheScale() {
+
+		assertEquals(150, Money.parse("1.500"));
+		assertEquals(150, parseBytes("1.50000000", Money.CENTS));
+		assertEquals(15000, Money.parse("1.500", Money.CURRENCY_SCALE));
+	}
+
+	@Test
+	public void rejectsDigitsBeyondTheScale() {
+
+		assertParseFails("0.001", Money.CENTS);
+		assertParseFails("1.00001", Money.CURRENCY_SCALE);
+	}
+
+	@Test
+	public void parsesThreeDecimalCurrencies() {
+
+		assertEquals(12550, Money.parse("1.255", Money.CURRENCY_SCALE));
+		assertEquals(12550, parseBytes("1.255", Money.CURRENCY_SCALE));
+		assertParseFails("1.255", Money.CENTS);
+	}
+
+	@Test
+	public void emptySlicesAndStringsCountAsZero() {
+
+		assertEquals(0, Money.parse(new ByteSlice()));
+		assertEquals(0, Money.parse(new ByteSlice(), Money.CURRENCY_SCALE));
+		assertEquals(0, Money.parse(""));
+		assertEquals(0, Money.parse((String) null));
+	}
+
+	@Test
+	public void emptyBytesAndCharactersAreRejected() {
+
+		assertParseFails("", Money.CENTS);
+		assertParseFails("-", Money.CENTS);
+		assertParseFails(".", Money.CENTS);
+	}
+
+	@Test
+	public void rejectsOtherCharacters() {
+
+		assertParseFails("1,50", Money.CENTS);
+		assertParseFails("1.5.0", Money.CENTS);
+		assertParseFails(" 1.50", Money.CENTS);
+		assertParseFails("--1", Money.CENTS);
+	}
+
+	@Test
+	public void parsesSlices() {
+
+		ByteSlice slice = new ByteSlice();
+		slice.set("19.99");
+		assertEquals(1999, Money.parse(slice));
+		assertEquals(199900, Money.parse(slice, Money.CURRENCY_SCALE));
+	}
+
+	@Test
+	public void rejectsAmountsTheScaleOverflows() {
+
+		assertEquals(Long.MAX_VALUE, Money.parse("9223372036854775807", 0));
+		assertParseFails("9223372036854775808", 0);
+		// fits as a whole number but not times 10^4
+		assertParseFails("922337203685477.5808", Money.CURRENCY_SCALE);
+		assertEquals(9223372036854775807L, Money.parse("922337203685477.5807", Money.CURRENCY_SCALE));
+		assertParseFails("99999999999999999999", Money.CENTS);
+	}
+
+	@Test
+	public void rejectsScalesOutOfRange() {
+
+		try {
+			Money.parse("1", -1);
+			fail("scale -1 was accepted");
+		} catch (IllegalArgumentException expected) {
+		}
+		try {
+			Money.toString(1, 19);
+			fail("scale 19 was accepted");
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
+	@Test
+	public void arithmeticThrowsOnOverflow() {
+
+		assertEquals(300, Money.add(100, 200));
+		assertEquals(-100, Money.subtract(100, 200));
+		assertEquals(-600, Money.multiply(200, -3));
+		assertArithmeticFails(Long.MAX_VALUE, 1, '+');
+		assertArithmeticFails(Long.MIN_VALUE, 1, '-');
+		assertArithmeticFails(Long.MAX_VALUE / 2 + 1, 2, '*');
+		assertArithmeticFails(Long.MIN_VALUE, -1, '*');
+	}
+
+	@Test
+	public void rescales() {
+
+		assertEquals(125, Money.rescale(12500, Money.CURRENCY_SCALE, Money.CENTS));
+		assertEquals(12500, Money.rescale(125, Money.CENTS, Money.CURRENCY_SCALE));
+		try {
+			Money.rescale(12550, Money.CURRENCY_SCALE, Money.CENTS);
+			fail("1.255 was rescaled to cents");
+		} catch (ArithmeticException expected) {
+		}
+	}
+
+	@Test
+	public void formatsAtTheScale() {
+
+		assertEquals("12.50", Money.toString(1250));
+		assertEquals("-0.05", Money.toString(-5));
+		assertEquals("0.00", Money.toString(0));
+		assertEquals("1.0005", Money.toString(10005, Money.CURRENCY_SCALE));
+		assertEquals("42", Money.toString(42, 0));
+	}
+
+	@Test
+	public void formatsWithAMinimumScale() {
+
+		assertEquals("1.25", Money.toString(12500, Money.CURRENCY_SCALE, Money.CENTS));
+		assertEquals("1.255", Money.toString(12550, Money.CURRENCY_SCALE, Money.CENTS));
+		assertEquals("1.2555", Money.toString(12555, Money.CURRENCY_SCALE, Money.CENTS));
+		assertEquals("-5.00", Money.toString(-50000, Money.CURRENCY_SCALE, Money.CENTS));
+		assertEquals("0.00", Money.toString(0, Money.CURRENCY_SCALE, Money.CENTS));
+		assertEquals("1.234500", Money.toString(12345, Money.CURRENCY_SCALE, 6));
+	}
+
+	@Test
+	public void roundTripsLikeBigDecimal() {
+
+		String[] amounts = { "0.00", "0.01", "-0.01", "1.10", "-1234567.89", "0.0001", "-0.0999", "92233720368547.7580" };
+		for (String amount : amounts) {
+			BigDecimal expected = new BigDecimal(amount).setScale(Money.CURRENCY_SCALE);
+			long parsed = Money.parse(amount, Money.CURRENCY_SCALE);
+			assertEquals(amount, expected.unscaledValue().longValue(), parsed);
+			assertEquals(amount, expected.toPlainString(), Money.toString(parsed, Money.CURRENCY_SCALE));
+		}
+	}
+
+	private static long parseBytes(String amount, int scale) {
+
+		try {
+			byte[] bytes = ("x" + amount + "x").getBytes("UTF-8");
+			return Money.parse(bytes, 1, bytes.length - 2, scale);
+		} catch (UnsupportedEncodingException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+
+	// the byte and character parsers must agree on what they reject
+	private static void assertParseFails(String amount, int scale) {
+
+		try {
+			parseBytes(amount, scale);
+			fail("bytes \"" + amount + "\" parsed at scale " + scale);
+		} catch (NumberFormatException expected) {
+		}
+		try {
+			Money.parse(amount, 0, amount.length(), scale);
+			fail("characters \"" + amount + "\" parsed at scale " + scale);
+		} catch (NumberFormatException expected) {
+		}
+	}
+
+	private static void assertArithmeticFails(long amount, long other, char operator) {
+
+		try {
+			if (operator == '+') {
+				Money.add(amount, other);
+			} else if (operator == '-') {
+				Money.subtract(amount, other);
+			} else {
+				Money.multiply(amount, other);
+			}
+			fail(amount + " " + operator + " " + other + " did not overflow");
+		} catch (ArithmeticException expected) {
+		}
+	}
+
+}